@@ -0,0 +1,82 @@
+package smarthome.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import smarthome.ActionPlan;
+import smarthome.AutomationMode;
+import smarthome.DeviceStateStore;
+import smarthome.MovieMode;
+import smarthome.NightMode;
+import smarthome.SimulationScheduler;
+import smarthome.SmartHomeController;
+import smarthome.VacationMode;
+
+/**
+ * Applying and compiling the automation modes on homes of 10 to 100,000 devices.
+ * {@code apply} runs the cached plan of the mode; {@code compile} measures the
+ * one-off scan that builds a plan after the topology changed. Every mode also runs
+ * over a home whose devices are {@link DeviceStateStore} views; setup applies the
+ * mode once, so a mode that cannot handle a kind of device fails before measuring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutomationModeBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int homeSize;
+
+    @Param({"night", "movie", "vacation"})
+    public String mode;
+
+    @Param({"objects", "store"})
+    public String storage;
+
+    private SmartHomeController controller;
+    private AutomationMode automationMode;
+
+    @Setup
+    public void setUp() {
+        HomeFixture.populate(homeSize, storage.equals("store") ? new DeviceStateStore() : null);
+        controller = SmartHomeController.getInstance();
+        automationMode = switch (mode) {
+            case "night" -> new NightMode();
+            case "movie" -> new MovieMode();
+            // Simulated clock: the occupancy simulation never fires during the run
+            case "vacation" -> new VacationMode(new SimulationScheduler(0, 42), new Random(42));
+            default -> throw new IllegalArgumentException("Unknown mode: " + mode);
+        };
+        controller.setAutomationMode(automationMode);
+    }
+
+    @TearDown
+    public void tearDown() {
+        controller.setAutomationMode(null);
+    }
+
+    @Benchmark
+    public void apply() {
+        automationMode.apply(controller);
+    }
+
+    @Benchmark
+    public ActionPlan compile() {
+        return automationMode.compile(controller);
+    }
+}
@@ -0,0 +1,106 @@
+package smarthome.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import smarthome.ClusterNode;
+import smarthome.ClusterRouter;
+import smarthome.ConsoleOutput;
+import smarthome.DeviceFactory;
+import smarthome.HomeRegistry;
+import smarthome.SmartHomeController;
+
+/**
+ * Cost of routing a device command to a cluster node over loopback TCP, next to
+ * the same command called directly on a controller and submitted to a local shard.
+ * The difference between routedCommand and shardCommand is the routing overhead:
+ * the ring lookup, encoding and one round trip.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClusterBenchmark {
+    private static final int DEVICES_PER_HOME = 20;
+
+    @Param({"3"})
+    public int nodes;
+
+    @Param({"300"})
+    public int homes;
+
+    private final List<ClusterNode> clusterNodes = new ArrayList<>();
+    private ClusterRouter router;
+    private HomeRegistry registry;
+    private SmartHomeController controller;
+    private String[] homeIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ConsoleOutput.quiet();
+        router = new ClusterRouter();
+        for (int n = 0; n < nodes; n++) {
+            ClusterNode node = new ClusterNode(0, 1);
+            clusterNodes.add(node);
+            router.addNode("node-" + n, node.getAddress());
+        }
+        registry = new HomeRegistry(1);
+        homeIds = new String[homes];
+        for (int h = 0; h < homes; h++) {
+            homeIds[h] = "home-" + h;
+            router.createHome(homeIds[h]);
+            SmartHomeController home = registry.createHome(homeIds[h]);
+            for (int d = 0; d < DEVICES_PER_HOME; d++) {
+                router.addDevice(homeIds[h], DeviceFactory.createDevice("light", "Light " + d));
+                home.addDevice(DeviceFactory.createDevice("light", "Light " + d));
+            }
+        }
+        controller = registry.getHome(homeIds[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        router.close();
+        for (ClusterNode node : clusterNodes) {
+            node.close();
+        }
+        registry.close();
+    }
+
+    @Benchmark
+    public boolean localCommand() {
+        return controller.turnOnDevice("Light " + ThreadLocalRandom.current().nextInt(DEVICES_PER_HOME));
+    }
+
+    @Benchmark
+    public boolean shardCommand() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String device = "Light " + random.nextInt(DEVICES_PER_HOME);
+        return registry.submit(homeIds[random.nextInt(homes)], home -> home.turnOnDevice(device)).join();
+    }
+
+    @Benchmark
+    public boolean routedCommand() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return router.turnOnDevice(homeIds[random.nextInt(homes)], "Light " + random.nextInt(DEVICES_PER_HOME));
+    }
+}
@@ -0,0 +1,118 @@
+package smarthome.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import smarthome.CommandLog;
+import smarthome.SmartHomeController;
+
+/**
+ * Durable command throughput with the write-ahead command log.
+ * Every command returns only once it has been forced to disk, so a single thread is
+ * bound by the fsync latency; with many threads, commands share fsyncs and the score
+ * should grow with the thread count. The tear-down prints the average number of
+ * records per fsync. Pass {@code -t N} to try other thread counts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandLogBenchmark {
+    /**
+     * The shared home and its command log.
+     */
+    @State(Scope.Benchmark)
+    public static class Home {
+        @Param({"0", "200"})
+        public int commitDelayMicros;
+
+        String[] names;
+        final AtomicInteger threads = new AtomicInteger();
+        private Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            names = HomeFixture.populate(10_000);
+            directory = Files.createTempDirectory("command-log-benchmark");
+            SmartHomeController.getInstance().openCommandLog(directory, Duration.ofNanos(commitDelayMicros * 1000L));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            SmartHomeController controller = SmartHomeController.getInstance();
+            CommandLog log = controller.getCommandLog();
+            System.out.printf("%n%d records in %d fsyncs (%.1f per fsync)%n", log.getRecordCount(),
+                    log.getCommitCount(), (double) log.getRecordCount() / Math.max(1, log.getCommitCount()));
+            controller.closeCommandLog();
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * The devices one thread toggles, disjoint from the other threads' devices.
+     */
+    @State(Scope.Thread)
+    public static class Slice {
+        private SmartHomeController controller;
+        private String[] names;
+        private int offset;
+        private int next;
+
+        @Setup
+        public void setUp(Home home) {
+            controller = SmartHomeController.getInstance();
+            names = home.names;
+            offset = home.threads.getAndIncrement() * 64 % names.length;
+        }
+
+        boolean toggle() {
+            int index = next++;
+            String name = names[offset + (index >>> 1) % 64];
+            return (index & 1) == 0 ? controller.turnOnDevice(name) : controller.turnOffDevice(name);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean toggleOneThread(Slice slice) {
+        return slice.toggle();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean toggleSixteenThreads(Slice slice) {
+        return slice.toggle();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean toggleSixtyFourThreads(Slice slice) {
+        return slice.toggle();
+    }
+}
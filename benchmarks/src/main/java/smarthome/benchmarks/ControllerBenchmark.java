@@ -0,0 +1,70 @@
+package smarthome.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import smarthome.SmartHomeController;
+
+/**
+ * Single-device and whole-home commands on homes of different sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControllerBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int homeSize;
+
+    private SmartHomeController controller;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        names = HomeFixture.populate(homeSize);
+        controller = SmartHomeController.getInstance();
+    }
+
+    /**
+     * Turns one device on, walking through the home so every call hits another device.
+     */
+    @Benchmark
+    public boolean turnOnDevice() {
+        int index = next;
+        next = index + 1 == names.length ? 0 : index + 1;
+        return controller.turnOnDevice(names[index]);
+    }
+
+    /**
+     * Turns one device off, walking through the home so every call hits another device.
+     */
+    @Benchmark
+    public boolean turnOffDevice() {
+        int index = next;
+        next = index + 1 == names.length ? 0 : index + 1;
+        return controller.turnOffDevice(names[index]);
+    }
+
+    /**
+     * Turns every device of the home off and reports them as one batch.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void turnOffAllDevices() {
+        controller.turnOffAllDevices();
+    }
+}
@@ -0,0 +1,88 @@
+package smarthome.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import smarthome.SmartHomeController;
+
+/**
+ * Multi-threaded throughput of {@code turnOnDevice}/{@code turnOffDevice}.
+ * Each thread commands its own slice of the home, so threads never contend on a
+ * device lock and the score should grow close to linearly with the thread count.
+ * Compare the single-thread score against the {@code Threads.MAX} score, or pass
+ * {@code -t N} to run every method with N threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControllerThroughputBenchmark {
+    /**
+     * The shared home.
+     */
+    @State(Scope.Benchmark)
+    public static class Home {
+        @Param({"10000"})
+        public int homeSize;
+
+        String[] names;
+        final AtomicInteger threads = new AtomicInteger();
+
+        @Setup
+        public void setUp() {
+            names = HomeFixture.populate(homeSize);
+        }
+    }
+
+    /**
+     * The slice of the home one thread works on.
+     */
+    @State(Scope.Thread)
+    public static class Slice {
+        private SmartHomeController controller;
+        private String[] names;
+        private int offset;
+        private int length;
+        private int next;
+
+        @Setup
+        public void setUp(Home home) {
+            controller = SmartHomeController.getInstance();
+            names = home.names;
+            offset = home.threads.getAndIncrement() * 64 % names.length;
+            length = Math.min(64, names.length - offset);
+        }
+
+        boolean toggle() {
+            int index = next++;
+            String name = names[offset + (index >>> 1) % length];
+            return (index & 1) == 0 ? controller.turnOnDevice(name) : controller.turnOffDevice(name);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean toggleOneThread(Slice slice) {
+        return slice.toggle();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean toggleAllThreads(Slice slice) {
+        return slice.toggle();
+    }
+}
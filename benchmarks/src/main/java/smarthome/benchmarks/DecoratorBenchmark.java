@@ -0,0 +1,73 @@
+package smarthome.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import smarthome.ConsoleOutput;
+import smarthome.Device;
+import smarthome.DeviceFactory;
+import smarthome.EnergySaverDecorator;
+import smarthome.MotionSensorDecorator;
+import smarthome.SimulationScheduler;
+
+/**
+ * Call overhead of the decorator chain: the same light plain, with one decorator,
+ * and with both decorators.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoratorBenchmark {
+    @Param({"plain", "energySaver", "motionSensor", "smart"})
+    public String chain;
+
+    private Device device;
+
+    @Setup
+    public void setUp() {
+        ConsoleOutput.quiet();
+        SimulationScheduler scheduler = new SimulationScheduler(0, 42);
+        Device light = DeviceFactory.createDevice("light", "Bench Light");
+        device = switch (chain) {
+            case "plain" -> light;
+            case "energySaver" -> new EnergySaverDecorator(light);
+            case "motionSensor" -> new MotionSensorDecorator(light, 60, scheduler);
+            case "smart" -> DeviceFactory.createSmartDevice("light", "Bench Light", 60, scheduler);
+            default -> throw new IllegalArgumentException("Unknown chain: " + chain);
+        };
+    }
+
+    /**
+     * Turns the device on and off again through the whole chain.
+     */
+    @Benchmark
+    public boolean toggle() {
+        device.turnOn();
+        device.turnOff();
+        return device.isOn();
+    }
+
+    @Benchmark
+    public boolean isOn() {
+        return device.isOn();
+    }
+
+    @Benchmark
+    public String getName() {
+        return device.getName();
+    }
+}
@@ -0,0 +1,66 @@
+package smarthome.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import smarthome.ConsoleOutput;
+import smarthome.Device;
+import smarthome.DeviceFactory;
+import smarthome.DeviceStateStore;
+import smarthome.SimulationScheduler;
+
+/**
+ * Device creation through the factory, plain and fully decorated.
+ * The GC profiler's {@code gc.alloc.rate.norm} shows the bytes per device.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeviceFactoryBenchmark {
+    @Param({"light", "ac", "door"})
+    public String type;
+
+    private SimulationScheduler scheduler;
+    private DeviceStateStore store;
+
+    @Setup
+    public void setUp() {
+        ConsoleOutput.quiet();
+        scheduler = new SimulationScheduler(0, 42);
+    }
+
+    @Setup(Level.Iteration)
+    public void newStore() {
+        store = new DeviceStateStore(); // Keeps the store from growing without bound
+    }
+
+    @Benchmark
+    public Device createDevice() {
+        return DeviceFactory.createDevice(type, "Bench Device");
+    }
+
+    @Benchmark
+    public Device createSmartDevice() {
+        return DeviceFactory.createSmartDevice(type, "Bench Device", 60, scheduler);
+    }
+
+    @Benchmark
+    public Device createStoreDevice() {
+        return DeviceFactory.createDevice(type, "Bench Device", store);
+    }
+}
@@ -0,0 +1,92 @@
+package smarthome.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import smarthome.ConsoleOutput;
+import smarthome.Device;
+import smarthome.DeviceFactory;
+import smarthome.DeviceStateStore;
+import smarthome.EnergySaverDecorator;
+import smarthome.MotionSensorDecorator;
+import smarthome.SmartHomeController;
+
+/**
+ * Builds homes of a given size for the benchmarks.
+ *
+ * Devices are spread round-robin over a fixed set of rooms and cycle through lights,
+ * air conditioners and doors. Every tenth light is a night light and every fourth
+ * device is a smart device (motion sensor and energy saver), so every branch of the
+ * automation modes has work to do. Devices keep their own state, or are views over a
+ * {@link DeviceStateStore} when one is given. Console output is switched off, since
+ * printing would dominate every measurement.
+ */
+final class HomeFixture {
+    static final String[] ROOMS = {"Living Room", "Bedroom", "Kitchen", "Bathroom", "Hallway"};
+    private static final String[] TYPES = {"light", "ac", "door"};
+    private static final String[] LABELS = {"Light", "AC", "Door"};
+
+    private HomeFixture() {
+    }
+
+    /**
+     * Replaces the contents of the shared controller with a home of the given size.
+     * @param size The number of devices.
+     * @return The names of all devices, in creation order.
+     */
+    static String[] populate(int size) {
+        return populate(size, null);
+    }
+
+    /**
+     * Replaces the contents of the shared controller with a home of the given size.
+     * @param size The number of devices.
+     * @param store The store that holds the devices' state, or null for standalone devices.
+     * @return The names of all devices, in creation order.
+     */
+    static String[] populate(int size, DeviceStateStore store) {
+        ConsoleOutput.quiet();
+        SmartHomeController controller = SmartHomeController.getInstance();
+        for (Device device : controller.getAllDevices()) {
+            controller.removeDevice(device.getName());
+        }
+        for (String room : ROOMS) {
+            if (controller.getRoom(room) == null) {
+                controller.createRoom(room);
+            }
+        }
+
+        String[] names = new String[size];
+        for (int i = 0; i < size; i++) {
+            Device device = createDevice(i, store);
+            controller.addDevice(device);
+            controller.addDeviceToRoom(device.getName(), ROOMS[i % ROOMS.length]);
+            names[i] = device.getName();
+        }
+        return names;
+    }
+
+    /**
+     * Creates standalone devices with the same mix as {@link #populate(int)}.
+     * @param size The number of devices.
+     * @return The devices.
+     */
+    static List<Device> devices(int size) {
+        List<Device> devices = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            devices.add(createDevice(i, null));
+        }
+        return devices;
+    }
+
+    private static Device createDevice(int i, DeviceStateStore store) {
+        String type = TYPES[i % TYPES.length];
+        String name = ROOMS[i % ROOMS.length] + (type.equals("light") && i % 10 == 0 ? " Night " : " ")
+                + LABELS[i % LABELS.length] + " " + i;
+        if (store == null) {
+            return i % 4 == 0 ? DeviceFactory.createSmartDevice(type, name, 60) : DeviceFactory.createDevice(type, name);
+        }
+        Device device = DeviceFactory.createDevice(type, name, store);
+        return i % 4 == 0 ? new EnergySaverDecorator(new MotionSensorDecorator(device, 60)) : device;
+    }
+}
@@ -0,0 +1,87 @@
+package smarthome.benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import smarthome.ConsoleOutput;
+import smarthome.DeviceFactory;
+import smarthome.HomeRegistry;
+import smarthome.SmartHomeController;
+
+/**
+ * Command throughput of many homes sharded over single-threaded executors.
+ * Every invocation submits a burst of device commands to random homes and waits
+ * for all of them, so the score shows how well the shards spread the load.
+ * Compare the shard counts on a machine with at least that many cores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HomeRegistryBenchmark {
+    private static final int BURST = 256;
+    private static final int DEVICES_PER_HOME = 20;
+
+    @Param({"1", "4"})
+    public int shards;
+
+    @Param({"1000"})
+    public int homes;
+
+    private HomeRegistry registry;
+    private String[] homeIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ConsoleOutput.quiet();
+        registry = new HomeRegistry(shards);
+        homeIds = new String[homes];
+        for (int h = 0; h < homes; h++) {
+            homeIds[h] = "home-" + h;
+            SmartHomeController home = registry.createHome(homeIds[h]);
+            for (int d = 0; d < DEVICES_PER_HOME; d++) {
+                home.addDevice(DeviceFactory.createDevice("light", "Light " + d));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        registry.getShardStats().forEach(System.out::println);
+        registry.close();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BURST)
+    public void commandBurst() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            String device = "Light " + random.nextInt(DEVICES_PER_HOME);
+            boolean on = random.nextBoolean();
+            futures[i] = registry.submit(homeIds[random.nextInt(homes)],
+                    home -> on ? home.turnOnDevice(device) : home.turnOffDevice(device));
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,58 @@
+package smarthome.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import smarthome.ConsoleOutput;
+import smarthome.Logger;
+
+/**
+ * Cost of {@code Logger.update} on the caller's thread, writing synchronously
+ * or handing off to the asynchronous batched writer. Writes smart_home.log in the
+ * working directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerBenchmark {
+    @Param({"sync", "async"})
+    public String writer;
+
+    private Logger logger;
+    private boolean status;
+
+    @Setup
+    public void setUp() {
+        ConsoleOutput.quiet();
+        logger = writer.equals("sync")
+                ? new Logger()
+                : new Logger(64 * 1024, 1024, 10, Logger.OverflowPolicy.BLOCK);
+    }
+
+    @TearDown
+    public void tearDown() {
+        logger.shutdown();
+        logger.clearLog();
+    }
+
+    @Benchmark
+    public void update() {
+        status = !status;
+        logger.update("Kitchen Light", status, status ? "Device turned ON" : "Device turned OFF");
+    }
+}
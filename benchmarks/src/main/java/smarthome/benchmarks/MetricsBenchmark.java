@@ -0,0 +1,67 @@
+package smarthome.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import smarthome.Metrics;
+import smarthome.OperationStats;
+import smarthome.SmartHomeController;
+
+/**
+ * Overhead of the latency instrumentation: a bare start/stop pair that times every
+ * call, one that is sampled at the default rate, and a device command with
+ * instrumentation on and off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    @Param({"true", "false"})
+    public boolean metrics;
+
+    private OperationStats stats;
+    private OperationStats sampledStats;
+    private SmartHomeController controller;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        names = HomeFixture.populate(1000);
+        controller = SmartHomeController.getInstance();
+        stats = Metrics.operation("benchmark.startStop");
+        sampledStats = Metrics.sampledOperation("benchmark.sampledStartStop");
+        Metrics.getInstance().setEnabled(metrics);
+    }
+
+    @Benchmark
+    public void startStop() {
+        stats.stop(stats.start());
+    }
+
+    @Benchmark
+    public void sampledStartStop() {
+        sampledStats.stop(sampledStats.start());
+    }
+
+    @Benchmark
+    public boolean turnOnDevice() {
+        int index = next;
+        next = index + 1 == names.length ? 0 : index + 1;
+        return controller.turnOnDevice(names[index]);
+    }
+}
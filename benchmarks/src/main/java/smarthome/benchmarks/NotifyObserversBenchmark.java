@@ -0,0 +1,80 @@
+package smarthome.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import smarthome.NotificationBatch;
+import smarthome.Observer;
+import smarthome.SmartHomeController;
+
+/**
+ * Dispatch cost of {@code notifyObservers} for single events and batches
+ * with 1, 10 and 100 registered observers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotifyObserversBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1", "10", "100"})
+    public int observerCount;
+
+    private SmartHomeController controller;
+    private final List<Observer> observers = new ArrayList<>();
+    private NotificationBatch batch;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        HomeFixture.populate(0);
+        controller = SmartHomeController.getInstance();
+        for (int i = 0; i < observerCount; i++) {
+            Observer observer = (deviceName, status, message) -> blackhole.consume(status);
+            observers.add(observer);
+            controller.registerObserver(observer);
+        }
+        batch = new NotificationBatch("Device turned OFF", BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add("Device " + i, false);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Observer observer : observers) {
+            controller.removeObserver(observer);
+        }
+        observers.clear();
+    }
+
+    @Benchmark
+    public void notifySingle() {
+        controller.notifyObservers("Kitchen Light", true, "Device turned ON");
+    }
+
+    /**
+     * Notifies a batch of {@value #BATCH_SIZE} devices.
+     */
+    @Benchmark
+    public void notifyBatch() {
+        controller.notifyObservers(batch);
+    }
+}
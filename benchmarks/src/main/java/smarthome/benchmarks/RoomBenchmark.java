@@ -0,0 +1,86 @@
+package smarthome.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import smarthome.ConsoleOutput;
+import smarthome.Device;
+import smarthome.Light;
+import smarthome.Room;
+
+/**
+ * Room lookups on rooms of 10 to 10,000 devices, such as warehouse or office floors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int roomSize;
+
+    private Room room;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ConsoleOutput.quiet();
+        List<Device> devices = HomeFixture.devices(roomSize);
+        room = new Room("Warehouse Floor");
+        names = new String[roomSize];
+        for (int i = 0; i < roomSize; i++) {
+            room.addDevice(devices.get(i));
+            names[i] = devices.get(i).getName();
+        }
+    }
+
+    @Benchmark
+    public Device getDevice() {
+        int index = next;
+        next = index + 1 == names.length ? 0 : index + 1;
+        return room.getDevice(names[index]);
+    }
+
+    /**
+     * Gets the undecorated lights and walks the result.
+     */
+    @Benchmark
+    public void getDevicesOfType(Blackhole blackhole) {
+        for (Light light : room.getDevicesOfType(Light.class)) {
+            blackhole.consume(light);
+        }
+    }
+
+    /**
+     * Gets every light, decorated or not, and walks the result.
+     */
+    @Benchmark
+    public void getDevicesOfBaseType(Blackhole blackhole) {
+        for (Device device : room.getDevicesOfBaseType(Light.class)) {
+            blackhole.consume(device);
+        }
+    }
+
+    @Benchmark
+    public void getDevices(Blackhole blackhole) {
+        for (Device device : room.getDevices()) {
+            blackhole.consume(device);
+        }
+    }
+}
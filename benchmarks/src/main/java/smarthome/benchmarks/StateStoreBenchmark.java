@@ -0,0 +1,97 @@
+package smarthome.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import smarthome.ConsoleOutput;
+import smarthome.Device;
+import smarthome.DeviceFactory;
+import smarthome.DeviceStateStore;
+
+/**
+ * The object model against the struct-of-arrays {@link DeviceStateStore}.
+ * The scans count the devices that are on; the build benchmarks create a whole
+ * home, and their {@code gc.alloc.rate.norm} is the heap footprint of that many devices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateStoreBenchmark {
+    private static final String[] TYPES = {"light", "ac", "door"};
+
+    @Param({"1000", "100000"})
+    public int deviceCount;
+
+    private List<Device> objects;
+    private DeviceStateStore store;
+    private String[] names;
+
+    @Setup
+    public void setUp() {
+        ConsoleOutput.quiet();
+        names = new String[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            names[i] = "Device " + i;
+        }
+        objects = buildObjects();
+        store = buildStore();
+        for (int i = 0; i < deviceCount; i += 3) { // Every third device on
+            objects.get(i).turnOn();
+            store.view(i).turnOn();
+        }
+    }
+
+    @Benchmark
+    public int countOnObjects() {
+        int count = 0;
+        for (Device device : objects) {
+            if (device.isOn()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int countOnStore() {
+        return store.countOn();
+    }
+
+    @Benchmark
+    public List<Device> buildObjects() {
+        List<Device> devices = new ArrayList<>(deviceCount);
+        for (int i = 0; i < deviceCount; i++) {
+            devices.add(DeviceFactory.createDevice(TYPES[i % TYPES.length], names[i]));
+        }
+        return devices;
+    }
+
+    /**
+     * Creates the devices in a store without keeping the views, as a building-scale
+     * deployment would.
+     */
+    @Benchmark
+    public DeviceStateStore buildStore() {
+        DeviceStateStore built = new DeviceStateStore();
+        for (int i = 0; i < deviceCount; i++) {
+            DeviceFactory.createDevice(TYPES[i % TYPES.length], names[i], built);
+        }
+        return built;
+    }
+}
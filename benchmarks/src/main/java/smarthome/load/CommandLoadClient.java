@@ -0,0 +1,308 @@
+package smarthome.load;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import smarthome.CommandServer;
+import smarthome.ConsoleOutput;
+import smarthome.LatencyHistogram;
+import smarthome.SmartHomeController;
+import smarthome.WireProtocol;
+
+/**
+ * Load client for {@link CommandServer}: starts a server for a generated home on the
+ * loopback interface and drives it from many connections, each sending pipelined
+ * batches of commands and waiting for all of their replies before the next batch.
+ *
+ * Options, all in {@code --name=value} form:
+ * <ul>
+ *   <li>{@code --rooms=20} and {@code --devices=2000} - the size of the home.</li>
+ *   <li>{@code --connections=16} - client connections, one thread each.</li>
+ *   <li>{@code --pipeline=64} - requests per batch.</li>
+ *   <li>{@code --protocol=text|binary} - the text protocol, or {@link WireProtocol} with names
+ *       resolved to handles once per connection.</li>
+ *   <li>{@code --mix=80,15,5} - weights of device on/off, state queries and room on/off.</li>
+ *   <li>{@code --max-connections=1024} and {@code --max-pending=1024} - the server's limits.</li>
+ *   <li>{@code --duration=30} and {@code --report=5} - run length and report interval in seconds.</li>
+ * </ul>
+ * Reports commands per second and the round-trip latency of whole batches.
+ */
+public class CommandLoadClient {
+    private final InetSocketAddress address;
+    private final HomeGenerator home;
+    private final int pipeline;
+    private final int[] mix;
+    private final boolean binary;
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram interval = new LatencyHistogram();
+    private final LatencyHistogram cumulative = new LatencyHistogram();
+    private volatile boolean running = true;
+
+    private CommandLoadClient(InetSocketAddress address, HomeGenerator home, int pipeline, int[] mix, boolean binary) {
+        this.address = address;
+        this.home = home;
+        this.pipeline = pipeline;
+        this.mix = mix;
+        this.binary = binary;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = LoadHarness.parseOptions(args);
+        int connections = LoadHarness.intOption(options, "connections", 16);
+        int pipeline = LoadHarness.intOption(options, "pipeline", 64);
+        int duration = LoadHarness.intOption(options, "duration", 30);
+        int report = LoadHarness.intOption(options, "report", 5);
+        String protocol = options.getOrDefault("protocol", "text");
+        if (!protocol.equals("text") && !protocol.equals("binary")) {
+            throw new IllegalArgumentException("Unknown protocol: " + protocol);
+        }
+        ConsoleOutput.quiet();
+
+        SmartHomeController controller = SmartHomeController.getInstance();
+        HomeGenerator home = new HomeGenerator(controller, LoadHarness.intOption(options, "rooms", 20),
+                LoadHarness.intOption(options, "devices", 2000), new int[] {60, 25, 15}, new int[] {1, 0, 0, 0}, 2, 42);
+        try (CommandServer server = new CommandServer(controller,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                LoadHarness.intOption(options, "max-connections", CommandServer.DEFAULT_MAX_CONNECTIONS),
+                LoadHarness.intOption(options, "max-pending", CommandServer.DEFAULT_MAX_PENDING_REQUESTS))) {
+            System.out.printf("Server on %s, %d %s connections x %d pipelined requests for %d s%n",
+                    server.getAddress(), connections, protocol, pipeline, duration);
+            CommandLoadClient client = new CommandLoadClient(server.getAddress(), home, pipeline,
+                    LoadHarness.weights(options, "mix", "80,15,5", 3), protocol.equals("binary"));
+            client.run(connections, duration, report, server);
+        }
+    }
+
+    private void run(int connections, int durationSeconds, int reportSeconds, CommandServer server)
+            throws InterruptedException {
+        List<Thread> workers = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            Thread worker = new Thread(this::work, "load-connection-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long lastReport = start;
+        long lastCommands = 0;
+        while (System.nanoTime() < end) {
+            long next = Math.min(lastReport + TimeUnit.SECONDS.toNanos(reportSeconds), end);
+            LockSupport.parkNanos(next - System.nanoTime());
+            long now = System.nanoTime();
+            if (now < next) {
+                continue;
+            }
+            long total = commands.sum();
+            LatencyHistogram.Snapshot snapshot = interval.snapshotAndReset();
+            cumulative.add(snapshot);
+            System.out.printf("[%5ds] ", TimeUnit.NANOSECONDS.toSeconds(now - start));
+            printLine(total - lastCommands, snapshot, (now - lastReport) / 1e9, server);
+            lastReport = now;
+            lastCommands = total;
+        }
+
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        cumulative.add(interval.snapshotAndReset());
+        System.out.printf("%nSummary: ");
+        printLine(commands.sum(), cumulative.snapshot(), (System.nanoTime() - start) / 1e9, server);
+    }
+
+    private void printLine(long count, LatencyHistogram.Snapshot batches, double seconds, CommandServer server) {
+        System.out.printf("%10.0f commands/s  batch p50=%8.1fus  p99=%8.1fus  max=%8.1fus  connections=%d  errors=%d%n",
+                count / seconds, batches.getValueAtPercentile(50) / 1000.0,
+                batches.getValueAtPercentile(99) / 1000.0, batches.getMax() / 1000.0,
+                server.getConnectionCount(), errors.sum());
+    }
+
+    /**
+     * Connection loop: writes a batch of requests in one go, then reads until every reply is in.
+     */
+    private void work() {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            if (binary) {
+                workBinary(channel);
+            } else {
+                workText(channel);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void workText(SocketChannel channel) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> names = home.getDeviceNames();
+        List<String> roomNames = home.getRoomNames();
+        ByteBuffer requests = ByteBuffer.allocate(pipeline * 128);
+        ByteBuffer replies = ByteBuffer.allocate(pipeline * 16);
+        while (running) {
+            requests.clear();
+            for (int i = 0; i < pipeline; i++) {
+                String request = switch (HomeGenerator.pick(mix, random)) {
+                    case 0 -> (random.nextBoolean() ? "ON " : "OFF ") + names.get(random.nextInt(names.size()));
+                    case 1 -> "STATE " + names.get(random.nextInt(names.size()));
+                    default -> (random.nextBoolean() ? "ROOM_ON " : "ROOM_OFF ")
+                            + roomNames.get(random.nextInt(roomNames.size()));
+                };
+                requests.put(request.getBytes(StandardCharsets.UTF_8)).put((byte) '\n');
+            }
+            requests.flip();
+            long start = System.nanoTime();
+            while (requests.hasRemaining()) {
+                channel.write(requests);
+            }
+            int lines = 0;
+            boolean lineStart = true;
+            while (lines < pipeline) {
+                replies.clear();
+                if (channel.read(replies) < 0) {
+                    throw new IOException("Server closed the connection");
+                }
+                for (int i = 0; i < replies.position(); i++) {
+                    byte b = replies.get(i);
+                    if (lineStart && b == 'E') {
+                        errors.increment(); // "ERR ..."
+                    }
+                    lineStart = b == '\n';
+                    if (lineStart) {
+                        lines++;
+                    }
+                }
+            }
+            interval.recordSince(start);
+            commands.add(pipeline);
+        }
+    }
+
+    /**
+     * Binary protocol loop: resolves every device and room name to a handle once,
+     * then sends the same mix of commands by handle.
+     */
+    private void workBinary(SocketChannel channel) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ByteBuffer requests = ByteBuffer.allocate(Math.max(pipeline * 8, WireProtocol.MAX_FRAME_SIZE + 5));
+        ByteBuffer replies = ByteBuffer.allocate(Math.max(pipeline * 8, WireProtocol.MAX_FRAME_SIZE + 5));
+        WireProtocol.putHello(requests);
+        send(channel, requests);
+        while (replies.position() < 2) {
+            if (channel.read(replies) < 0) {
+                throw new IOException("Server closed the connection");
+            }
+        }
+        if (replies.get(0) != WireProtocol.MAGIC || replies.get(1) != WireProtocol.VERSION) {
+            throw new IOException("Server does not speak protocol version " + WireProtocol.VERSION);
+        }
+        replies.flip().position(2);
+        int[] devices = resolve(channel, WireProtocol.KIND_DEVICE, home.getDeviceNames(), requests, replies);
+        int[] rooms = resolve(channel, WireProtocol.KIND_ROOM, home.getRoomNames(), requests, replies);
+
+        while (running) {
+            for (int i = 0; i < pipeline; i++) {
+                switch (HomeGenerator.pick(mix, random)) {
+                    case 0 -> WireProtocol.putCommand(requests, random.nextBoolean() ? WireProtocol.TURN_ON : WireProtocol.TURN_OFF,
+                            devices[random.nextInt(devices.length)]);
+                    case 1 -> WireProtocol.putCommand(requests, WireProtocol.QUERY, devices[random.nextInt(devices.length)]);
+                    default -> WireProtocol.putCommand(requests, random.nextBoolean() ? WireProtocol.ROOM_ON : WireProtocol.ROOM_OFF,
+                            rooms[random.nextInt(rooms.length)]);
+                }
+            }
+            long start = System.nanoTime();
+            send(channel, requests);
+            for (int i = 0; i < pipeline; i++) {
+                int end = awaitFrame(channel, replies);
+                replies.get(); // STATUS or STATE
+                byte status = replies.get();
+                if (status == WireProtocol.BAD_REQUEST || status == WireProtocol.UNSUPPORTED) {
+                    errors.increment();
+                }
+                replies.position(end);
+            }
+            interval.recordSince(start);
+            commands.add(pipeline);
+        }
+    }
+
+    /**
+     * Resolves names to handles with as few RESOLVE requests as fit in frames.
+     */
+    private static int[] resolve(SocketChannel channel, byte kind, List<String> names,
+                                 ByteBuffer requests, ByteBuffer replies) throws IOException {
+        int[] handles = new int[names.size()];
+        int from = 0;
+        while (from < names.size()) {
+            int to = from;
+            int payload = 8;
+            while (to < names.size() && to - from < WireProtocol.MAX_RESOLVE_COUNT) {
+                int length = WireProtocol.utf8Length(names.get(to));
+                if (payload + length + 5 > WireProtocol.MAX_FRAME_SIZE) {
+                    break;
+                }
+                payload += length + WireProtocol.varintSize(length);
+                to++;
+            }
+            WireProtocol.putResolve(requests, kind, names, from, to);
+            send(channel, requests);
+            int end = awaitFrame(channel, replies);
+            if (replies.get() != WireProtocol.HANDLES) {
+                throw new IOException("Resolve failed");
+            }
+            int count = WireProtocol.getVarint(replies);
+            for (int i = 0; i < count; i++) {
+                handles[from + i] = WireProtocol.getVarint(replies);
+            }
+            replies.position(end);
+            from = to;
+        }
+        return handles;
+    }
+
+    private static void send(SocketChannel channel, ByteBuffer requests) throws IOException {
+        requests.flip();
+        while (requests.hasRemaining()) {
+            channel.write(requests);
+        }
+        requests.clear();
+    }
+
+    /**
+     * Reads until a whole frame is buffered.
+     * @param replies The unread replies, kept in read mode between calls.
+     * @return The end of the frame; the buffer is positioned at the frame's opcode.
+     */
+    private static int awaitFrame(SocketChannel channel, ByteBuffer replies) throws IOException {
+        while (true) {
+            int size = replies.hasRemaining() ? WireProtocol.frameLength(replies) : 0;
+            if (size > 0) {
+                int end = replies.position() + size;
+                WireProtocol.getVarint(replies);
+                return end;
+            }
+            replies.compact();
+            int read = channel.read(replies);
+            replies.flip();
+            if (read < 0) {
+                throw new IOException("Server closed the connection");
+            }
+        }
+    }
+}
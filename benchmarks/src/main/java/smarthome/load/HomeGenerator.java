@@ -0,0 +1,110 @@
+package smarthome.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import smarthome.Device;
+import smarthome.DeviceDecorator;
+import smarthome.DeviceFactory;
+import smarthome.EnergySaverDecorator;
+import smarthome.MotionSensorDecorator;
+import smarthome.SmartHomeController;
+
+/**
+ * Generates a synthetic home in the shared controller.
+ *
+ * Device types and decorator chains are drawn at random from weighted mixes.
+ * Room names cycle through living rooms, bedrooms, kitchens and so on, so the
+ * automation modes find the rooms and name tags their rules look for.
+ */
+final class HomeGenerator {
+    private static final String[] ROOM_KINDS = {"Living Room", "Bedroom", "Kitchen", "Bathroom", "Hallway", "Office"};
+    private static final String[] TYPES = {"light", "ac", "door"};
+    private static final String[] LABELS = {"Light", "AC", "Door"};
+
+    private final List<String> deviceNames = new ArrayList<>();
+    private final List<MotionSensorDecorator> motionSensors = new ArrayList<>();
+    private final List<EnergySaverDecorator> energySavers = new ArrayList<>();
+    private final List<String> roomNames = new ArrayList<>();
+
+    /**
+     * Creates the rooms and devices.
+     * @param controller The controller to add them to.
+     * @param rooms The number of rooms.
+     * @param devices The total number of devices, spread evenly over the rooms.
+     * @param typeMix Relative weights of lights, air conditioners and doors.
+     * @param decoratorMix Relative weights of plain, energy saver, motion sensor and smart devices.
+     * @param motionDelaySeconds The auto-off delay of motion sensor devices.
+     * @param seed The random seed, so a run can be repeated.
+     */
+    HomeGenerator(SmartHomeController controller, int rooms, int devices, int[] typeMix, int[] decoratorMix,
+                  int motionDelaySeconds, long seed) {
+        Random random = new Random(seed);
+        for (int r = 0; r < rooms; r++) {
+            String room = ROOM_KINDS[r % ROOM_KINDS.length] + " " + (r / ROOM_KINDS.length + 1);
+            controller.createRoom(room);
+            roomNames.add(room);
+        }
+
+        for (int i = 0; i < devices; i++) {
+            int type = pick(typeMix, random);
+            String room = roomNames.get(i % rooms);
+            String name = room + (type == 0 && random.nextInt(10) == 0 ? " Night " : " ") + LABELS[type] + " " + i;
+            Device device = switch (pick(decoratorMix, random)) {
+                case 0 -> DeviceFactory.createDevice(TYPES[type], name);
+                case 1 -> DeviceFactory.createEnergySaverDevice(TYPES[type], name);
+                case 2 -> DeviceFactory.createMotionSensorDevice(TYPES[type], name, motionDelaySeconds);
+                default -> DeviceFactory.createSmartDevice(TYPES[type], name, motionDelaySeconds);
+            };
+            collectDecorators(device);
+            controller.addDevice(device);
+            controller.addDeviceToRoom(name, room);
+            deviceNames.add(name);
+        }
+    }
+
+    List<String> getDeviceNames() {
+        return deviceNames;
+    }
+
+    List<MotionSensorDecorator> getMotionSensors() {
+        return motionSensors;
+    }
+
+    List<EnergySaverDecorator> getEnergySavers() {
+        return energySavers;
+    }
+
+    List<String> getRoomNames() {
+        return roomNames;
+    }
+
+    private void collectDecorators(Device device) {
+        for (Device d = device; d instanceof DeviceDecorator decorator; d = decorator.getDecoratedDevice()) {
+            if (decorator instanceof MotionSensorDecorator motionSensor) {
+                motionSensors.add(motionSensor);
+            } else if (decorator instanceof EnergySaverDecorator energySaver) {
+                energySavers.add(energySaver);
+            }
+        }
+    }
+
+    /**
+     * Picks an index with probability proportional to its weight.
+     */
+    static int pick(int[] weights, Random random) {
+        int sum = 0;
+        for (int weight : weights) {
+            sum += weight;
+        }
+        int ticket = random.nextInt(sum);
+        for (int i = 0; i < weights.length; i++) {
+            ticket -= weights[i];
+            if (ticket < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+}
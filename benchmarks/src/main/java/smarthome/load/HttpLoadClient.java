@@ -0,0 +1,283 @@
+package smarthome.load;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import smarthome.ConsoleOutput;
+import smarthome.HttpApiServer;
+import smarthome.LatencyHistogram;
+import smarthome.SmartHomeController;
+
+/**
+ * Load client for {@link HttpApiServer}: starts a server for a generated home on the
+ * loopback interface, opens many Server-Sent Events streams and reports what holding
+ * them costs, then drives the REST API while the streams receive the resulting events.
+ *
+ * Options, all in {@code --name=value} form:
+ * <ul>
+ *   <li>{@code --rooms=20} and {@code --devices=2000} - the size of the home.</li>
+ *   <li>{@code --subscribers=5000} - event streams, each read on its own virtual thread.</li>
+ *   <li>{@code --buffer=256} - the server's per-subscriber event buffer.</li>
+ *   <li>{@code --clients=16} - REST clients, one virtual thread each, sending one request at a time.</li>
+ *   <li>{@code --think-micros=0} - pause of each REST client between requests.</li>
+ *   <li>{@code --mix=80,15,5} - weights of device on/off, device reads and room on/off.</li>
+ *   <li>{@code --duration=30} and {@code --report=5} - run length and report interval in seconds.</li>
+ * </ul>
+ * The client and the server share the JVM, so the memory per stream it reports covers
+ * both ends of the connection, though the client's end is little more than a socket.
+ */
+public class HttpLoadClient {
+    private static final byte[] EVENT_DATA = "data: {\"device\"".getBytes(StandardCharsets.US_ASCII);
+
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final URI base;
+    private final URI[] devices;
+    private final URI[] rooms;
+    private final int[] mix;
+    private final long thinkNanos;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LatencyHistogram interval = new LatencyHistogram();
+    private final LatencyHistogram cumulative = new LatencyHistogram();
+    private volatile boolean running = true;
+
+    private HttpLoadClient(InetSocketAddress address, HomeGenerator home, int[] mix, long thinkNanos) {
+        this.base = URI.create("http://" + address.getHostString() + ":" + address.getPort());
+        this.devices = resources("/devices/", home.getDeviceNames());
+        this.rooms = resources("/rooms/", home.getRoomNames());
+        this.mix = mix;
+        this.thinkNanos = thinkNanos;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = LoadHarness.parseOptions(args);
+        int subscribers = LoadHarness.intOption(options, "subscribers", 5000);
+        int clients = LoadHarness.intOption(options, "clients", 16);
+        int duration = LoadHarness.intOption(options, "duration", 30);
+        int report = LoadHarness.intOption(options, "report", 5);
+        ConsoleOutput.quiet();
+
+        SmartHomeController controller = SmartHomeController.getInstance();
+        HomeGenerator home = new HomeGenerator(controller, LoadHarness.intOption(options, "rooms", 20),
+                LoadHarness.intOption(options, "devices", 2000), new int[] {60, 25, 15}, new int[] {1, 0, 0, 0}, 2, 42);
+        try (HttpApiServer server = new HttpApiServer(controller,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                Math.max(subscribers, HttpApiServer.DEFAULT_MAX_SUBSCRIBERS),
+                LoadHarness.intOption(options, "buffer", HttpApiServer.DEFAULT_SUBSCRIBER_BUFFER))) {
+            HttpLoadClient client = new HttpLoadClient(server.getAddress(), home,
+                    LoadHarness.weights(options, "mix", "80,15,5", 3),
+                    TimeUnit.MICROSECONDS.toNanos(LoadHarness.intOption(options, "think-micros", 0)));
+            System.out.printf("Server on %s, %d event streams, %d REST clients for %d s%n",
+                    server.getAddress(), subscribers, clients, duration);
+            client.subscribe(subscribers, server);
+            client.run(clients, duration, report, server);
+        }
+    }
+
+    /**
+     * Opens the event streams and reports the platform threads and heap they take.
+     */
+    private void subscribe(int subscribers, HttpApiServer server) {
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapBefore = heapAfterGc();
+        long start = System.nanoTime();
+        for (int i = 0; i < subscribers; i++) {
+            Thread.ofVirtual().name("sse-subscriber-" + i).start(this::follow);
+        }
+        long deadline = start + TimeUnit.SECONDS.toNanos(60);
+        while (server.getSubscriberCount() + refused.sum() < subscribers && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        long openMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        int open = server.getSubscriberCount();
+        long heapAfter = heapAfterGc();
+        System.out.printf("Opened %d event streams in %d ms (%d refused): platform threads %d -> %d, "
+                        + "heap after GC %.1fMB -> %.1fMB, %.1fKB per stream (client and server)%n",
+                open, openMillis, refused.sum(), threadsBefore, ManagementFactory.getThreadMXBean().getThreadCount(),
+                heapBefore / 1048576.0, heapAfter / 1048576.0, (heapAfter - heapBefore) / 1024.0 / Math.max(open, 1));
+    }
+
+    /**
+     * Reads one event stream until the server ends it, counting its device events.
+     * A plain socket with a small buffer keeps the client's share of each stream small,
+     * so the heap per stream is mostly the server's.
+     */
+    private void follow() {
+        try (Socket socket = new Socket(base.getHost(), base.getPort())) {
+            socket.getOutputStream().write(("GET /events HTTP/1.1\r\nHost: " + base.getAuthority()
+                    + "\r\nAccept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            InputStream in = new BufferedInputStream(socket.getInputStream(), 256);
+            String status = readLine(in);
+            if (!status.startsWith("HTTP/1.1 200")) {
+                refused.increment();
+                return;
+            }
+            while (!readLine(in).isEmpty()) {
+                // Response headers; the body is always chunked
+            }
+            byte[] buffer = new byte[512];
+            int matched = 0;
+            int size;
+            while ((size = Integer.parseInt(readLine(in), 16)) > 0) {
+                while (size > 0) {
+                    int read = in.read(buffer, 0, Math.min(size, buffer.length));
+                    if (read < 0) {
+                        return;
+                    }
+                    int events = 0;
+                    for (int i = 0; i < read; i++) {
+                        byte b = buffer[i];
+                        matched = b == EVENT_DATA[matched] ? matched + 1 : b == EVENT_DATA[0] ? 1 : 0;
+                        if (matched == EVENT_DATA.length) {
+                            events++;
+                            matched = 0;
+                        }
+                    }
+                    received.add(events);
+                    size -= read;
+                }
+                readLine(in); // The chunk's CRLF
+            }
+        } catch (IOException | NumberFormatException e) {
+            if (running) {
+                refused.increment();
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new EOFException("Stream ended");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private void run(int clients, int durationSeconds, int reportSeconds, HttpApiServer server)
+            throws InterruptedException {
+        List<Thread> workers = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            workers.add(Thread.ofVirtual().name("rest-client-" + i).start(this::work));
+        }
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long lastReport = start;
+        long lastRequests = 0;
+        long lastDelivered = server.getDeliveredEventCount();
+        while (System.nanoTime() < end) {
+            long next = Math.min(lastReport + TimeUnit.SECONDS.toNanos(reportSeconds), end);
+            LockSupport.parkNanos(next - System.nanoTime());
+            long now = System.nanoTime();
+            if (now < next) {
+                continue;
+            }
+            long total = requests.sum();
+            long delivered = server.getDeliveredEventCount();
+            LatencyHistogram.Snapshot snapshot = interval.snapshotAndReset();
+            cumulative.add(snapshot);
+            System.out.printf("[%5ds] ", TimeUnit.NANOSECONDS.toSeconds(now - start));
+            printLine(total - lastRequests, delivered - lastDelivered, snapshot, (now - lastReport) / 1e9, server);
+            System.out.println("        " + LoadHarness.jvmStatus());
+            lastReport = now;
+            lastRequests = total;
+            lastDelivered = delivered;
+        }
+
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        cumulative.add(interval.snapshotAndReset());
+        System.out.printf("%nSummary: ");
+        printLine(requests.sum(), server.getDeliveredEventCount(), cumulative.snapshot(),
+                (System.nanoTime() - start) / 1e9, server);
+        System.out.printf("Events: %d published, %d written to streams, %d read by subscribers%n",
+                server.getPublishedEventCount(), server.getDeliveredEventCount(), received.sum());
+    }
+
+    private void printLine(long count, long delivered, LatencyHistogram.Snapshot latency, double seconds,
+                           HttpApiServer server) {
+        System.out.printf("%8.0f requests/s  p50=%8.1fus  p99=%8.1fus  max=%8.1fus  events=%9.0f/s  "
+                        + "streams=%d  overflowed=%d  errors=%d%n",
+                count / seconds, latency.getValueAtPercentile(50) / 1000.0,
+                latency.getValueAtPercentile(99) / 1000.0, latency.getMax() / 1000.0, delivered / seconds,
+                server.getSubscriberCount(), server.getOverflowedSubscriberCount(), errors.sum());
+    }
+
+    /**
+     * REST client loop: one request at a time, timed from send to the whole response.
+     */
+    private void work() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        HttpRequest.BodyPublisher empty = HttpRequest.BodyPublishers.noBody();
+        while (running) {
+            HttpRequest request = switch (HomeGenerator.pick(mix, random)) {
+                case 0 -> HttpRequest.newBuilder(devices[random.nextInt(devices.length)]
+                        .resolve(random.nextBoolean() ? "on" : "off")).POST(empty).build();
+                case 1 -> HttpRequest.newBuilder(devices[random.nextInt(devices.length)]).build();
+                default -> HttpRequest.newBuilder(rooms[random.nextInt(rooms.length)]
+                        .resolve(random.nextBoolean() ? "on" : "off")).POST(empty).build();
+            };
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) {
+                    errors.increment();
+                }
+            } catch (IOException e) {
+                errors.increment();
+            } catch (InterruptedException e) {
+                return;
+            }
+            interval.recordSince(start);
+            requests.increment();
+            if (thinkNanos > 0) {
+                LockSupport.parkNanos(thinkNanos);
+            }
+        }
+    }
+
+    /**
+     * Builds each name's resource URI, ending in a slash so actions resolve below it.
+     */
+    private URI[] resources(String path, List<String> names) {
+        URI[] uris = new URI[names.size()];
+        for (int i = 0; i < uris.length; i++) {
+            uris[i] = base.resolve(path + URLEncoder.encode(names.get(i), StandardCharsets.UTF_8).replace("+", "%20") + "/");
+        }
+        return uris;
+    }
+
+    private static long heapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
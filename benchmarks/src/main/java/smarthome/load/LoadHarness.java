@@ -0,0 +1,306 @@
+package smarthome.load;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import smarthome.AutomationMode;
+import smarthome.ConsoleOutput;
+import smarthome.EnergySaverDecorator;
+import smarthome.LatencyHistogram;
+import smarthome.Logger;
+import smarthome.MotionSensorDecorator;
+import smarthome.MovieMode;
+import smarthome.NightMode;
+import smarthome.SmartHomeController;
+import smarthome.VacationMode;
+
+/**
+ * Soak harness: generates a synthetic home and drives it with a sustained mixed workload,
+ * reporting latency percentiles and throughput per operation type together with the JVM's
+ * thread count, heap and GC activity at every interval.
+ *
+ * Options, all in {@code --name=value} form:
+ * <ul>
+ *   <li>{@code --rooms=20} and {@code --devices=2000} - the size of the home.</li>
+ *   <li>{@code --types=60,25,15} - weights of lights, air conditioners and doors.</li>
+ *   <li>{@code --decorators=40,20,20,20} - weights of plain, energy saver, motion sensor and smart devices.</li>
+ *   <li>{@code --mix=70,5,15,1,9} - weights of device on/off, room on/off, motion events,
+ *       mode switches and energy saver toggles.</li>
+ *   <li>{@code --threads=4} - worker threads.</li>
+ *   <li>{@code --duration=60} and {@code --report=5} - run length and report interval in seconds.</li>
+ *   <li>{@code --think-micros=0} - pause of each worker between operations.</li>
+ *   <li>{@code --motion-delay=2} - auto-off delay of motion sensors in seconds, short so the timers fire.</li>
+ *   <li>{@code --logger=none|sync|async} - whether a Logger observes the home.</li>
+ *   <li>{@code --console} - keep device messages on the console (off by default).</li>
+ *   <li>{@code --seed=42} - seed for the generated home.</li>
+ * </ul>
+ * A steadily growing "heap after GC" or thread count across intervals points at a leak;
+ * p999 and max against p99 show tail-latency spikes.
+ */
+public class LoadHarness {
+    /**
+     * The operation types of the workload, in {@code --mix} order.
+     */
+    enum Operation {
+        DEVICE_ON_OFF("device on/off"),
+        ROOM_ON_OFF("room on/off"),
+        MOTION("motion event"),
+        MODE_SWITCH("mode switch"),
+        ENERGY_SAVER("energy saver");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+    }
+
+    private final SmartHomeController controller;
+    private final HomeGenerator home;
+    private final int[] mix;
+    private final long thinkNanos;
+    private final AutomationMode[] modes;
+    private final LatencyHistogram[] interval = new LatencyHistogram[Operation.values().length];
+    private final LatencyHistogram[] cumulative = new LatencyHistogram[Operation.values().length];
+    private volatile boolean running = true;
+
+    private LoadHarness(SmartHomeController controller, HomeGenerator home, int[] mix, long thinkNanos) {
+        this.controller = controller;
+        this.home = home;
+        this.mix = mix;
+        this.thinkNanos = thinkNanos;
+        this.modes = new AutomationMode[] {new NightMode(), new MovieMode(), new VacationMode(), null};
+        for (int i = 0; i < interval.length; i++) {
+            interval[i] = new LatencyHistogram();
+            cumulative[i] = new LatencyHistogram();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = parseOptions(args);
+        int rooms = intOption(options, "rooms", 20);
+        int devices = intOption(options, "devices", 2000);
+        int threads = intOption(options, "threads", 4);
+        int duration = intOption(options, "duration", 60);
+        int report = intOption(options, "report", 5);
+        String loggerMode = options.getOrDefault("logger", "none");
+        if (!options.containsKey("console")) {
+            ConsoleOutput.quiet();
+        }
+
+        SmartHomeController controller = SmartHomeController.getInstance();
+        long start = System.nanoTime();
+        HomeGenerator home = new HomeGenerator(controller, rooms, devices,
+                weights(options, "types", "60,25,15", 3), weights(options, "decorators", "40,20,20,20", 4),
+                intOption(options, "motion-delay", 2), intOption(options, "seed", 42));
+        System.out.printf("Generated %d devices in %d rooms (%d motion sensors, %d energy savers) in %d ms%n",
+                devices, rooms, home.getMotionSensors().size(), home.getEnergySavers().size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        Logger logger = switch (loggerMode) {
+            case "none" -> null;
+            case "sync" -> new Logger();
+            case "async" -> new Logger(64 * 1024, 1024, 50, Logger.OverflowPolicy.BLOCK);
+            default -> throw new IllegalArgumentException("Unknown logger mode: " + loggerMode);
+        };
+        if (logger != null) {
+            controller.registerObserver(logger);
+        }
+
+        LoadHarness harness = new LoadHarness(controller, home,
+                weights(options, "mix", "70,5,15,1,9", Operation.values().length),
+                TimeUnit.MICROSECONDS.toNanos(intOption(options, "think-micros", 0)));
+        System.out.printf("Running %d worker threads for %d s, logger=%s%n", threads, duration, loggerMode);
+        harness.run(threads, duration, report);
+
+        if (logger != null) {
+            controller.removeObserver(logger);
+            logger.shutdown();
+        }
+    }
+
+    /**
+     * Starts the workers, prints a report every interval and a summary at the end.
+     */
+    private void run(int threads, int durationSeconds, int reportSeconds) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::work, "load-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long lastReport = start;
+        while (System.nanoTime() < end) {
+            long next = Math.min(lastReport + TimeUnit.SECONDS.toNanos(reportSeconds), end);
+            LockSupport.parkNanos(next - System.nanoTime());
+            long now = System.nanoTime();
+            if (now < next) {
+                continue;
+            }
+            report(TimeUnit.NANOSECONDS.toSeconds(now - start), (now - lastReport) / 1e9);
+            lastReport = now;
+        }
+
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        summary((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Worker loop: picks an operation by weight, runs it and records its latency.
+     */
+    private void work() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> names = home.getDeviceNames();
+        List<String> roomNames = home.getRoomNames();
+        List<MotionSensorDecorator> motionSensors = home.getMotionSensors();
+        List<EnergySaverDecorator> energySavers = home.getEnergySavers();
+        while (running) {
+            Operation operation = Operation.values()[HomeGenerator.pick(mix, random)];
+            long start = System.nanoTime();
+            switch (operation) {
+                case DEVICE_ON_OFF -> {
+                    String name = names.get(random.nextInt(names.size()));
+                    if (random.nextBoolean()) {
+                        controller.turnOnDevice(name);
+                    } else {
+                        controller.turnOffDevice(name);
+                    }
+                }
+                case ROOM_ON_OFF -> {
+                    String room = roomNames.get(random.nextInt(roomNames.size()));
+                    if (random.nextBoolean()) {
+                        controller.turnOnRoom(room);
+                    } else {
+                        controller.turnOffRoom(room);
+                    }
+                }
+                case MOTION -> {
+                    if (motionSensors.isEmpty()) {
+                        continue;
+                    }
+                    motionSensors.get(random.nextInt(motionSensors.size())).motionDetected();
+                }
+                case MODE_SWITCH -> controller.setAutomationMode(modes[random.nextInt(modes.length)]);
+                case ENERGY_SAVER -> {
+                    if (energySavers.isEmpty()) {
+                        continue;
+                    }
+                    EnergySaverDecorator energySaver = energySavers.get(random.nextInt(energySavers.size()));
+                    energySaver.setEnergySaverMode(!energySaver.isEnergySaverModeEnabled());
+                }
+            }
+            interval[operation.ordinal()].recordSince(start);
+            if (thinkNanos > 0) {
+                LockSupport.parkNanos(thinkNanos);
+            }
+        }
+    }
+
+    /**
+     * Prints one interval: per-operation throughput and percentiles, then JVM health.
+     */
+    private void report(long elapsedSeconds, double intervalSeconds) {
+        System.out.printf("[%5ds]%n", elapsedSeconds);
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram.Snapshot snapshot = interval[operation.ordinal()].snapshotAndReset();
+            cumulative[operation.ordinal()].add(snapshot);
+            printLine(operation, snapshot, intervalSeconds);
+        }
+        System.out.println("  " + jvmStatus());
+    }
+
+    private void summary(double seconds) {
+        System.out.printf("%nSummary over %.0f s%n", seconds);
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram.Snapshot snapshot = interval[operation.ordinal()].snapshotAndReset();
+            cumulative[operation.ordinal()].add(snapshot);
+            printLine(operation, cumulative[operation.ordinal()].snapshot(), seconds);
+        }
+        System.out.println("  " + jvmStatus());
+    }
+
+    private static void printLine(Operation operation, LatencyHistogram.Snapshot snapshot, double seconds) {
+        System.out.printf("  %-14s %10.0f ops/s  p50=%9.1fus  p99=%9.1fus  p999=%9.1fus  max=%9.1fus%n",
+                operation.label, snapshot.getCount() / seconds,
+                snapshot.getValueAtPercentile(50) / 1000.0, snapshot.getValueAtPercentile(99) / 1000.0,
+                snapshot.getValueAtPercentile(99.9) / 1000.0, snapshot.getMax() / 1000.0);
+    }
+
+    /**
+     * Describes the live thread count, the heap now and after the last collection, and GC totals.
+     */
+    static String jvmStatus() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long afterGc = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null && pool.getType() == MemoryType.HEAP) {
+                afterGc += usage.getUsed();
+            }
+        }
+        long collections = 0;
+        long collectionMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(gc.getCollectionCount(), 0);
+            collectionMillis += Math.max(gc.getCollectionTime(), 0);
+        }
+        return String.format("threads=%d heap=%.1fMB heapAfterGc=%.1fMB committed=%.1fMB gc=%d (%d ms)",
+                ManagementFactory.getThreadMXBean().getThreadCount(), heap.getUsed() / 1048576.0,
+                afterGc / 1048576.0, heap.getCommitted() / 1048576.0, collections, collectionMillis);
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return options;
+    }
+
+    static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    static int[] weights(Map<String, String> options, String name, String defaultValue, int count) {
+        String[] parts = options.getOrDefault(name, defaultValue).split(",");
+        if (parts.length != count) {
+            throw new IllegalArgumentException("--" + name + " needs " + count + " weights: " + defaultValue);
+        }
+        int[] weights = new int[count];
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            weights[i] = Integer.parseInt(parts[i].trim());
+            sum += weights[i];
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("--" + name + " weights must add up to more than 0");
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,364 @@
+package smarthome;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * An immutable, precompiled list of device operations produced by an automation mode.
+ * A mode resolves its rules (name tags, room matching, device types) against the
+ * current topology once in {@link AutomationMode#compile(SmartHomeController)};
+ * applying the plan afterwards only runs the operations, with no scanning.
+ *
+ * Actions are grouped by device. Each group runs under that device's lock, and every
+ * device that was sent a command is reported to observers once, with its final state.
+ * A plan can also carry console messages: announcements printed before any action
+ * runs, and one report line per device printed after that device's actions.
+ * The {@link #toString()} output lists every action for debugging.
+ */
+public final class ActionPlan {
+    /**
+     * The operations an action can perform.
+     */
+    public enum Operation {
+        /** Turns the device on (through its decorators). */
+        TURN_ON,
+        /** Turns the device off (through its decorators). */
+        TURN_OFF,
+        /** Sets the brightness of a light to the argument. */
+        SET_BRIGHTNESS,
+        /** Sets the temperature of an air conditioner to the argument. */
+        SET_TEMPERATURE,
+        /** Sets the temperature of an air conditioner to the argument if it is in COOL mode. */
+        SET_COOL_TEMPERATURE,
+        /** Sets the temperature of an air conditioner to the argument if it is in HEAT mode. */
+        SET_HEAT_TEMPERATURE,
+        /** Sets the mode of an air conditioner to {@code AirConditioner.MODES.get(argument)}. */
+        SET_MODE,
+        /** Locks a door. */
+        LOCK,
+        /** Unlocks a door. */
+        UNLOCK;
+
+        /**
+         * Checks if the operation can be performed on a device, which depends on the
+         * type of the undecorated device.
+         * @param device The device as registered with the controller, possibly decorated.
+         * @return true if the device supports the operation.
+         */
+        public boolean appliesTo(Device device) {
+            Device base = DeviceDecorator.getBaseDevice(device);
+            return switch (this) {
+                case TURN_ON, TURN_OFF -> true;
+                case SET_BRIGHTNESS -> base instanceof LightDevice;
+                case SET_TEMPERATURE, SET_COOL_TEMPERATURE, SET_HEAT_TEMPERATURE, SET_MODE -> base instanceof AirConditionerDevice;
+                case LOCK, UNLOCK -> base instanceof DoorDevice;
+            };
+        }
+
+        /**
+         * Checks if a device already has the state this operation would produce,
+         * so sending the command would change nothing.
+         * @param device The device as registered with the controller, possibly decorated.
+         * @param argument The operation's argument.
+         * @return true if the operation is a no-op for the device's current state.
+         */
+        public boolean isSatisfied(Device device, int argument) {
+            Device base = DeviceDecorator.getBaseDevice(device);
+            return switch (this) {
+                case TURN_ON -> device.isOn();
+                case TURN_OFF -> !device.isOn();
+                case SET_BRIGHTNESS -> ((LightDevice) base).getBrightness() == Light.clampBrightness(argument);
+                case SET_TEMPERATURE -> ((AirConditionerDevice) base).getTemperature() == AirConditioner.clampTemperature(argument);
+                case SET_COOL_TEMPERATURE, SET_HEAT_TEMPERATURE -> {
+                    AirConditionerDevice ac = (AirConditionerDevice) base;
+                    String mode = this == SET_COOL_TEMPERATURE ? "COOL" : "HEAT";
+                    yield !ac.getMode().equals(mode) || ac.getTemperature() == AirConditioner.clampTemperature(argument);
+                }
+                case SET_MODE -> ((AirConditionerDevice) base).getMode().equals(AirConditioner.MODES.get(argument));
+                case LOCK -> ((DoorDevice) base).isLocked() && !base.isOn(); // Locking also closes the door
+                case UNLOCK -> !((DoorDevice) base).isLocked();
+            };
+        }
+
+        /**
+         * Performs the operation. Setters are applied to the undecorated device,
+         * turning on and off goes through the decorator chain.
+         * @param device The device as registered with the controller, possibly decorated.
+         * @param argument The operation's argument.
+         */
+        void perform(Device device, int argument) {
+            Device base = DeviceDecorator.getBaseDevice(device);
+            switch (this) {
+                case TURN_ON -> device.turnOn();
+                case TURN_OFF -> device.turnOff();
+                case SET_BRIGHTNESS -> ((LightDevice) base).setBrightness(argument);
+                case SET_TEMPERATURE -> ((AirConditionerDevice) base).setTemperature(argument);
+                case SET_COOL_TEMPERATURE -> {
+                    AirConditionerDevice ac = (AirConditionerDevice) base;
+                    if (ac.getMode().equals("COOL")) {
+                        ac.setTemperature(argument);
+                    }
+                }
+                case SET_HEAT_TEMPERATURE -> {
+                    AirConditionerDevice ac = (AirConditionerDevice) base;
+                    if (ac.getMode().equals("HEAT")) {
+                        ac.setTemperature(argument);
+                    }
+                }
+                case SET_MODE -> ((AirConditionerDevice) base).setMode(AirConditioner.MODES.get(argument));
+                case LOCK -> ((DoorDevice) base).lock();
+                case UNLOCK -> ((DoorDevice) base).unlock();
+            }
+        }
+    }
+
+    /**
+     * One operation on one device.
+     * @param device The device as registered with the controller, possibly decorated.
+     * @param operation The operation to perform.
+     * @param argument The operation's argument, or 0 if it takes none.
+     */
+    public record Action(Device device, Operation operation, int argument) {
+        @Override
+        public String toString() {
+            return switch (operation) {
+                case TURN_ON, TURN_OFF, LOCK, UNLOCK -> operation + " " + device.getName();
+                case SET_MODE -> operation + " " + device.getName() + " " + AirConditioner.MODES.get(argument);
+                default -> operation + " " + device.getName() + " " + argument;
+            };
+        }
+    }
+
+    private final String modeName;
+    private final List<Action> actions;
+    private final Device[] groupDevices;
+    private final int[] groupStarts; // Index of the first action of each group, plus the total at the end
+    private final List<String> announcements;
+    private final List<Function<Device, String>> groupReports; // null for groups without a report line
+
+    private ActionPlan(String modeName, List<Action> actions, Device[] groupDevices, int[] groupStarts,
+                       List<String> announcements, List<Function<Device, String>> groupReports) {
+        this.modeName = modeName;
+        this.actions = Collections.unmodifiableList(actions);
+        this.groupDevices = groupDevices;
+        this.groupStarts = groupStarts;
+        this.announcements = announcements;
+        this.groupReports = groupReports;
+    }
+
+    /**
+     * Creates a builder for the plan of the given mode.
+     * @param modeName The name of the mode, used in notifications.
+     * @return A new builder.
+     */
+    public static Builder builder(String modeName) {
+        return new Builder(modeName);
+    }
+
+    /**
+     * Gets the name of the mode this plan was compiled from.
+     * @return The mode name.
+     */
+    public String getModeName() {
+        return modeName;
+    }
+
+    /**
+     * Gets all actions, grouped by device, in execution order.
+     * @return An unmodifiable list of actions.
+     */
+    public List<Action> getActions() {
+        return actions;
+    }
+
+    /**
+     * Gets the number of actions.
+     * @return The action count.
+     */
+    public int size() {
+        return actions.size();
+    }
+
+    /**
+     * Gets the number of distinct devices the plan touches.
+     * @return The device count.
+     */
+    public int getDeviceCount() {
+        return groupDevices.length;
+    }
+
+    /**
+     * Gets one of the devices the plan touches.
+     * @param group The group index, from 0 to {@link #getDeviceCount()} - 1.
+     * @return The device of that group.
+     */
+    Device getDevice(int group) {
+        return groupDevices[group];
+    }
+
+    /**
+     * Runs the actions of one device through a reconciler. The caller holds the device's lock.
+     * @param group The group index, from 0 to {@link #getDeviceCount()} - 1.
+     * @param reconciler The reconciler deciding which actions are actually sent.
+     * @return true if at least one action was sent to the device.
+     */
+    boolean executeGroup(int group, Reconciler reconciler) {
+        boolean issued = false;
+        for (int i = groupStarts[group]; i < groupStarts[group + 1]; i++) {
+            Action action = actions.get(i);
+            issued |= reconciler.apply(action.device(), action.operation(), action.argument());
+        }
+        return issued;
+    }
+
+    /**
+     * Runs every action, one device at a time under that device's lock, and
+     * reports the devices that were sent at least one command as one batch.
+     * Actions go through the controller's {@link Reconciler}, which may skip no-ops.
+     * The plan's announcements and report lines are printed at info level.
+     * @param controller The controller owning the devices.
+     * @return The number of devices that were sent at least one command.
+     */
+    public int execute(SmartHomeController controller) {
+        Reconciler reconciler = controller.getReconciler();
+        NotificationBatch batch = new NotificationBatch("Device updated by " + modeName, groupDevices.length);
+        boolean report = ConsoleOutput.isEnabled(ConsoleOutput.Level.INFO);
+        if (report) {
+            for (String announcement : announcements) {
+                ConsoleOutput.info(announcement);
+            }
+        }
+        boolean[] issued = new boolean[1];
+        for (int group = 0; group < groupDevices.length; group++) {
+            Device device = groupDevices[group];
+            int index = group;
+            controller.runLocked(device, d -> issued[0] = executeGroup(index, reconciler));
+            if (issued[0]) {
+                batch.add(device.getName(), device.isOn());
+            }
+            Function<Device, String> groupReport = groupReports.get(group);
+            if (report && groupReport != null) {
+                ConsoleOutput.info(groupReport.apply(device));
+            }
+        }
+        controller.notifyObservers(batch);
+        return batch.size();
+    }
+
+    /**
+     * Returns a listing of the plan, one action per line.
+     * @return The mode name, the counts and every action.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(modeName).append(" plan: ").append(actions.size()).append(" actions on ")
+                .append(groupDevices.length).append(" devices");
+        for (Action action : actions) {
+            sb.append("\n  ").append(action);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Collects actions while a mode compiles its plan.
+     * Actions for the same device are kept together in the order they were added.
+     */
+    public static final class Builder {
+        private final String modeName;
+        private final Map<Device, List<Action>> byDevice = new IdentityHashMap<>();
+        private final Map<Device, Function<Device, String>> reports = new IdentityHashMap<>();
+        private final List<Device> order = new ArrayList<>();
+        private final List<String> announcements = new ArrayList<>();
+        private int size;
+
+        private Builder(String modeName) {
+            this.modeName = modeName;
+        }
+
+        /**
+         * Adds an operation without an argument.
+         * @param device The device as registered with the controller.
+         * @param operation The operation to perform.
+         * @return This builder.
+         */
+        public Builder add(Device device, Operation operation) {
+            return add(device, operation, 0);
+        }
+
+        /**
+         * Adds an operation.
+         * @param device The device as registered with the controller.
+         * @param operation The operation to perform.
+         * @param argument The operation's argument.
+         * @return This builder.
+         */
+        public Builder add(Device device, Operation operation, int argument) {
+            group(device).add(new Action(device, operation, argument));
+            size++;
+            return this;
+        }
+
+        /**
+         * Adds a message printed before any action of the plan runs.
+         * @param message The message.
+         * @return This builder.
+         */
+        public Builder announce(String message) {
+            announcements.add(message);
+            return this;
+        }
+
+        /**
+         * Sets the line printed after a device's actions have run.
+         * @param device The device as registered with the controller.
+         * @param message The line to print.
+         * @return This builder.
+         */
+        public Builder report(Device device, String message) {
+            return report(device, d -> message);
+        }
+
+        /**
+         * Sets the line printed after a device's actions have run, built from the device's
+         * state at that point.
+         * @param device The device as registered with the controller.
+         * @param message Builds the line from the device; only called if info output is enabled.
+         * @return This builder.
+         */
+        public Builder report(Device device, Function<Device, String> message) {
+            group(device);
+            reports.put(device, message);
+            return this;
+        }
+
+        private List<Action> group(Device device) {
+            return byDevice.computeIfAbsent(device, d -> {
+                order.add(d);
+                return new ArrayList<>(4);
+            });
+        }
+
+        /**
+         * Creates the immutable plan.
+         * @return The plan.
+         */
+        public ActionPlan build() {
+            List<Action> actions = new ArrayList<>(size);
+            Device[] devices = order.toArray(new Device[0]);
+            int[] starts = new int[devices.length + 1];
+            List<Function<Device, String>> groupReports = new ArrayList<>(devices.length);
+            for (int group = 0; group < devices.length; group++) {
+                starts[group] = actions.size();
+                actions.addAll(byDevice.get(devices[group]));
+                groupReports.add(reports.get(devices[group]));
+            }
+            starts[devices.length] = actions.size();
+            return new ActionPlan(modeName, actions, devices, starts, List.copyOf(announcements), groupReports);
+        }
+    }
+}
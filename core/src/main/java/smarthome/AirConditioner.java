@@ -0,0 +1,123 @@
+package smarthome;
+
+import java.util.List;
+
+/**
+ * Implementation of a smart air conditioner device.
+ * See {@link StoredAirConditioner} for an air conditioner whose state is kept in a {@link DeviceStateStore}.
+ */
+public class AirConditioner implements AirConditionerDevice {
+    /**
+     * The supported operation modes. Snapshots and the state store keep the mode as an index into this list.
+     */
+    public static final List<String> MODES = List.of("COOL", "HEAT", "FAN");
+    
+    private final String name;
+    private boolean status;
+    private int temperature;
+    private String mode; // COOL, HEAT, FAN
+    
+    /**
+     * Creates a new AirConditioner with the given name.
+     * @param name The name of the air conditioner.
+     */
+    public AirConditioner(String name) {
+        this.name = name;
+        this.status = false;
+        this.temperature = 24; // Default temperature in Celsius
+        this.mode = "COOL";    // Default mode
+    }
+    
+    /**
+     * Creates a standalone air conditioner with restored state, without console output.
+     * @param name The name of the air conditioner.
+     * @param status The restored status.
+     * @param temperature The restored temperature in Celsius.
+     * @param modeOrdinal The restored mode as an index into {@link #MODES}.
+     */
+    AirConditioner(String name, boolean status, int temperature, int modeOrdinal) {
+        this.name = name;
+        this.status = status;
+        this.temperature = temperature;
+        this.mode = MODES.get(modeOrdinal);
+    }
+    
+    @Override
+    public void turnOn() {
+        this.status = true;
+        ConsoleOutput.info("{} AC turned on. Mode: {}, Temperature: {}°C", name, mode, temperature);
+    }
+    
+    @Override
+    public void turnOff() {
+        this.status = false;
+        ConsoleOutput.info("{} AC turned off", name);
+    }
+    
+    @Override
+    public boolean isOn() {
+        return status;
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Sets the target temperature for the air conditioner.
+     * @param temperature The target temperature in Celsius.
+     */
+    @Override
+    public void setTemperature(int temperature) {
+        this.temperature = clampTemperature(temperature);
+        
+        if (status) {
+            ConsoleOutput.info("{} temperature set to {}°C", name, this.temperature);
+        }
+    }
+    
+    /**
+     * Gets the current target temperature.
+     * @return The current temperature setting in Celsius.
+     */
+    @Override
+    public int getTemperature() {
+        return temperature;
+    }
+    
+    /**
+     * Sets the operation mode of the air conditioner.
+     * @param mode The operation mode (COOL, HEAT, FAN).
+     */
+    @Override
+    public void setMode(String mode) {
+        if (MODES.contains(mode)) {
+            this.mode = mode;
+            
+            if (status) {
+                ConsoleOutput.info("{} mode set to {}", name, this.mode);
+            }
+        } else {
+            ConsoleOutput.warn("Invalid mode. Use COOL, HEAT, or FAN.");
+        }
+    }
+    
+    /**
+     * Gets the current operation mode.
+     * @return The current operation mode.
+     */
+    @Override
+    public String getMode() {
+        return mode;
+    }
+    
+    /**
+     * Limits a temperature to a reasonable range.
+     * @param temperature The requested temperature in Celsius.
+     * @return The temperature the air conditioner would actually use (16-30).
+     */
+    static int clampTemperature(int temperature) {
+        return Math.max(16, Math.min(30, temperature));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package smarthome;
+
+/**
+ * An air conditioner, whether it keeps its own state ({@link AirConditioner}) or is
+ * a view over a state store ({@link StoredAirConditioner}).
+ */
+public interface AirConditionerDevice extends Device {
+    /**
+     * Sets the target temperature for the air conditioner.
+     * @param temperature The target temperature in Celsius.
+     */
+    void setTemperature(int temperature);
+    
+    /**
+     * Gets the current target temperature.
+     * @return The current temperature setting in Celsius.
+     */
+    int getTemperature();
+    
+    /**
+     * Sets the operation mode of the air conditioner.
+     * @param mode The operation mode (COOL, HEAT, FAN).
+     */
+    void setMode(String mode);
+    
+    /**
+     * Gets the current operation mode.
+     * @return The current operation mode.
+     */
+    String getMode();
+}
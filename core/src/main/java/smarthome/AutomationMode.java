@@ -0,0 +1,41 @@
+package smarthome;
+
+/**
+ * Interface for the Strategy pattern to implement different automation modes.
+ * Each mode provides a different strategy for controlling devices.
+ *
+ * A mode may compile itself into an {@link ActionPlan}. The controller caches
+ * compiled plans and only recompiles them after devices or rooms change, so
+ * re-applying such a mode costs one step per action.
+ */
+public interface AutomationMode {
+    /**
+     * Gets the name of this automation mode.
+     * @return The name of the mode.
+     */
+    String getName();
+    
+    /**
+     * Applies this automation mode to the smart home controller.
+     * @param controller The controller to apply the mode to.
+     */
+    void apply(SmartHomeController controller);
+    
+    /**
+     * Resolves this mode against the current devices and rooms into an action plan.
+     * Use {@link SmartHomeController#getActionPlan(AutomationMode)} to get the cached plan.
+     * @param controller The controller whose topology to compile against.
+     * @return The plan, or null if this mode cannot be precompiled.
+     */
+    default ActionPlan compile(SmartHomeController controller) {
+        return null;
+    }
+    
+    /**
+     * Called after the mode's plan has run, for work that is not a device operation,
+     * such as starting timers.
+     * @param controller The controller the mode was applied to.
+     */
+    default void afterPlanApplied(SmartHomeController controller) {
+    }
+}
@@ -0,0 +1,14 @@
+package smarthome;
+
+/**
+ * Observer that can receive a whole batch of state changes in one call.
+ * Subjects deliver mass, room and mode actions as one batch to these observers;
+ * plain observers receive the same changes one by one through {@link BatchObserverAdapter}.
+ */
+public interface BatchObserver extends Observer {
+    /**
+     * This method is called once for a group of state changes caused by one operation.
+     * @param batch The state changes and their shared message.
+     */
+    void updateBatch(NotificationBatch batch);
+}
@@ -0,0 +1,60 @@
+package smarthome;
+
+/**
+ * Adapts a plain Observer to the BatchObserver interface by
+ * delivering each change of a batch as a separate update.
+ */
+public class BatchObserverAdapter implements BatchObserver {
+    private final Observer observer;
+    
+    /**
+     * Creates a new adapter.
+     * @param observer The observer to deliver updates to.
+     */
+    public BatchObserverAdapter(Observer observer) {
+        this.observer = observer;
+    }
+    
+    /**
+     * Wraps an observer unless it already handles batches itself.
+     * @param observer The observer to adapt.
+     * @return The observer itself if it is a BatchObserver, otherwise an adapter.
+     */
+    public static BatchObserver adapt(Observer observer) {
+        return observer instanceof BatchObserver batchObserver ? batchObserver : new BatchObserverAdapter(observer);
+    }
+    
+    /**
+     * Gets the adapted observer.
+     * @return The observer that receives the updates.
+     */
+    public Observer getObserver() {
+        return observer;
+    }
+    
+    @Override
+    public void update(String deviceName, boolean status, String message) {
+        observer.update(deviceName, status, message);
+    }
+    
+    @Override
+    public void updateBatch(NotificationBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            observer.update(batch.getDeviceName(i), batch.getStatus(i), batch.getMessage());
+        }
+    }
+    
+    /**
+     * Adapters are equal when they adapt the same observer, so an observer
+     * can be removed from a subject by passing the original object.
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof BatchObserverAdapter adapter && adapter.observer == observer;
+    }
+    
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(observer);
+    }
+}
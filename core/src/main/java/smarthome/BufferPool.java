@@ -0,0 +1,69 @@
+package smarthome;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A free list of equally sized direct buffers, owned by a single thread.
+ *
+ * Direct buffers are expensive to allocate and are only freed by the garbage
+ * collector, so a server that allocated one per read or response would churn
+ * native memory. Buffers handed back are kept for reuse, up to a limit, so an idle
+ * server holds at most that many spare buffers.
+ */
+final class BufferPool {
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    private int allocated;
+
+    /**
+     * Creates an empty pool.
+     * @param bufferSize The size of every buffer in bytes.
+     * @param maxPooled The most spare buffers to keep.
+     */
+    BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, allocating one if the pool is empty.
+     * @return A buffer ready to be written.
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+            allocated++;
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not use it afterwards.
+     * @param buffer A buffer from {@link #acquire()}.
+     */
+    void release(ByteBuffer buffer) {
+        buffer.clear();
+        if (free.size() < maxPooled) {
+            free.push(buffer);
+        }
+    }
+
+    /**
+     * Gets the size of the buffers.
+     * @return The buffer size in bytes.
+     */
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Gets the number of buffers ever allocated, which stays flat once the pool is warm.
+     * @return The allocation count.
+     */
+    int getAllocatedCount() {
+        return allocated;
+    }
+}
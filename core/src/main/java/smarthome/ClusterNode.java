@@ -0,0 +1,276 @@
+package smarthome;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * One controller process of a cluster: a {@link HomeRegistry} served over TCP.
+ *
+ * A {@link ClusterRouter} forwards home commands to the node that owns the home.
+ * Every connection is served on its own virtual thread, and every home command runs
+ * on the home's shard, exactly as a local {@link HomeRegistry#submit} would.
+ * The node also answers the handover requests the router uses to move homes
+ * between nodes: list, export (as a snapshot), import and drop.
+ *
+ * Run a node process with {@code java -cp ... smarthome.ClusterNode --port=7001 --shards=4}.
+ */
+public class ClusterNode implements AutoCloseable {
+    private final HomeRegistry registry;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionExecutor;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Thread acceptThread;
+    private volatile boolean running = true;
+
+    /**
+     * Starts a node listening on the loopback interface.
+     * @param port The port, or 0 to pick a free one.
+     * @param shards The number of shards of the node's home registry.
+     * @throws IOException if the port cannot be bound.
+     */
+    public ClusterNode(int port, int shards) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), shards);
+    }
+
+    /**
+     * Starts a node listening on the given address.
+     * @param address The address to bind.
+     * @param shards The number of shards of the node's home registry.
+     * @throws IOException if the address cannot be bound.
+     */
+    public ClusterNode(InetSocketAddress address, int shards) throws IOException {
+        this.registry = new HomeRegistry(shards);
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(address);
+        this.connectionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        this.acceptThread = new Thread(this::acceptLoop, "smart-home-cluster-" + serverSocket.getLocalPort());
+        this.acceptThread.setDaemon(true);
+        this.acceptThread.start();
+        ConsoleOutput.info("Cluster node listening on {}", getAddress());
+    }
+
+    /**
+     * Gets the address routers connect to.
+     * @return The bound address, with the actual port.
+     */
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    /**
+     * Gets the homes this node hosts.
+     * @return The node's home registry.
+     */
+    public HomeRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones and stops the shards.
+     * @throws IOException if the server socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+        connectionExecutor.shutdown();
+        registry.close();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                connectionExecutor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    ConsoleOutput.error("Cluster node accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers the requests of one connection until the peer closes it.
+     */
+    private void serve(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            while (true) {
+                byte command;
+                try {
+                    command = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                handle(command, in, out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (running) {
+                ConsoleOutput.debug("Cluster connection closed: {}", e.getMessage());
+            }
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Reads one request and writes its response.
+     * Failures of the command itself are reported to the router; only I/O errors end the connection.
+     */
+    private void handle(byte command, DataInputStream in, DataOutputStream out) throws IOException {
+        if (command == ClusterProtocol.LIST_HOMES) {
+            List<String> homes = new ArrayList<>(registry.getHomeIds());
+            homes.remove(HomeRegistry.DEFAULT_HOME_ID);
+            out.writeByte(ClusterProtocol.OK);
+            out.writeInt(homes.size());
+            for (String home : homes) {
+                out.writeUTF(home);
+            }
+            return;
+        }
+
+        String homeId = in.readUTF();
+        try {
+            switch (command) {
+                case ClusterProtocol.CREATE_HOME -> {
+                    boolean created = registry.getHome(homeId) == null;
+                    registry.getOrCreateHome(homeId);
+                    reply(out, created);
+                }
+                case ClusterProtocol.ADD_DEVICE -> {
+                    byte[] bytes = ClusterProtocol.readBytes(in);
+                    Device device = HomeSnapshot.readDevice(ByteBuffer.wrap(bytes), null, TimingWheelScheduler.getShared());
+                    reply(out, run(homeId, home -> {
+                        home.addDevice(device);
+                        return true;
+                    }));
+                }
+                case ClusterProtocol.CREATE_ROOM -> {
+                    String room = in.readUTF();
+                    reply(out, run(homeId, home -> home.createRoom(room) != null));
+                }
+                case ClusterProtocol.ADD_DEVICE_TO_ROOM -> {
+                    String device = in.readUTF();
+                    String room = in.readUTF();
+                    reply(out, run(homeId, home -> home.addDeviceToRoom(device, room)));
+                }
+                case ClusterProtocol.TURN_ON_DEVICE -> {
+                    String device = in.readUTF();
+                    reply(out, run(homeId, home -> home.turnOnDevice(device)));
+                }
+                case ClusterProtocol.TURN_OFF_DEVICE -> {
+                    String device = in.readUTF();
+                    reply(out, run(homeId, home -> home.turnOffDevice(device)));
+                }
+                case ClusterProtocol.TURN_ON_ROOM -> {
+                    String room = in.readUTF();
+                    reply(out, run(homeId, home -> home.turnOnRoom(room)));
+                }
+                case ClusterProtocol.TURN_OFF_ROOM -> {
+                    String room = in.readUTF();
+                    reply(out, run(homeId, home -> home.turnOffRoom(room)));
+                }
+                case ClusterProtocol.SET_MODE -> {
+                    String name = in.readUTF();
+                    AutomationMode mode = CommandLog.modeNamed(name);
+                    if (mode == null && !name.isEmpty()) {
+                        reply(out, false); // Unknown mode: keep the current one
+                    } else {
+                        reply(out, run(homeId, home -> {
+                            home.setAutomationMode(mode);
+                            return true;
+                        }));
+                    }
+                }
+                case ClusterProtocol.EXPORT_HOME -> {
+                    ClusterProtocol.Handover handover = registry.submit(homeId, home -> {
+                        AutomationMode mode = home.getCurrentMode();
+                        return new ClusterProtocol.Handover(home.exportSnapshot(), mode != null ? mode.getName() : "");
+                    }).join();
+                    out.writeByte(ClusterProtocol.OK);
+                    handover.write(out);
+                }
+                case ClusterProtocol.IMPORT_HOME -> {
+                    ClusterProtocol.Handover handover = ClusterProtocol.Handover.read(in);
+                    registry.getOrCreateHome(homeId);
+                    reply(out, run(homeId, home -> {
+                        try {
+                            home.importSnapshot(handover.snapshot());
+                        } catch (IOException e) {
+                            throw new IllegalArgumentException(e.getMessage(), e);
+                        }
+                        // The devices already carry the mode's effects, so it is not applied again
+                        home.restoreAutomationMode(CommandLog.modeNamed(handover.modeName()));
+                        return true;
+                    }));
+                }
+                case ClusterProtocol.DROP_HOME -> reply(out, registry.removeHome(homeId));
+                default -> throw new IOException("Unknown cluster command " + command);
+            }
+        } catch (CompletionException | IllegalArgumentException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            out.writeByte(ClusterProtocol.ERROR);
+            out.writeUTF(String.valueOf(cause.getMessage()));
+        }
+    }
+
+    /**
+     * Runs a command on the home's shard and waits for its result.
+     */
+    private boolean run(String homeId, Function<SmartHomeController, Boolean> command) {
+        return registry.submit(homeId, command).join();
+    }
+
+    private static void reply(DataOutputStream out, boolean result) throws IOException {
+        out.writeByte(ClusterProtocol.OK);
+        out.writeBoolean(result);
+    }
+
+    /**
+     * Runs a node until the process is stopped.
+     * Options: {@code --port=N} (default 7001) and {@code --shards=N} (default one per processor).
+     * @param args The command-line options.
+     * @throws IOException if the port cannot be bound.
+     * @throws InterruptedException if the main thread is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = 7001;
+        int shards = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--shards=")) {
+                shards = Integer.parseInt(arg.substring("--shards=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        ClusterNode node = new ClusterNode(port, shards);
+        node.acceptThread.join();
+    }
+}
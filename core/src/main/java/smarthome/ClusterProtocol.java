@@ -0,0 +1,87 @@
+package smarthome;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Request codes and encoding helpers shared by {@link ClusterNode} and {@link ClusterRouter}.
+ *
+ * Every request is a command code (byte) followed by the home id and the command's
+ * arguments, strings as {@link DataOutputStream#writeUTF(String)} and byte arrays as a
+ * length (int) followed by the bytes. Every response starts with {@link #OK} and the
+ * result, or {@link #ERROR} and a message. A connection carries one request at a time.
+ */
+final class ClusterProtocol {
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    // Home commands: home id, then the arguments listed; the result is a boolean
+    static final byte CREATE_HOME = 1;
+    static final byte ADD_DEVICE = 2; // device bytes
+    static final byte CREATE_ROOM = 3; // room name
+    static final byte ADD_DEVICE_TO_ROOM = 4; // device name, room name
+    static final byte TURN_ON_DEVICE = 5; // device name
+    static final byte TURN_OFF_DEVICE = 6; // device name
+    static final byte TURN_ON_ROOM = 7; // room name
+    static final byte TURN_OFF_ROOM = 8; // room name
+    static final byte SET_MODE = 9; // mode name, empty for none
+
+    // Handover commands
+    static final byte LIST_HOMES = 20; // no home id; result: count (int), then the ids
+    static final byte EXPORT_HOME = 21; // result: snapshot bytes, mode name
+    static final byte IMPORT_HOME = 22; // snapshot bytes, mode name; result: boolean
+    static final byte DROP_HOME = 23; // result: boolean
+
+    private ClusterProtocol() {
+    }
+
+    /**
+     * Encodes a device with its decorator chain and state, in the snapshot format.
+     * @param device The device.
+     * @return The encoded device.
+     * @throws IllegalArgumentException if the device or a decorator type cannot be stored.
+     */
+    static byte[] encodeDevice(Device device) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            HomeSnapshot.writeDevice(out, device);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown by an in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A home in transit between nodes: its snapshot and the name of its automation mode.
+     * @param snapshot The snapshot bytes, from {@link SmartHomeController#exportSnapshot()}.
+     * @param modeName The automation mode name, empty for none.
+     */
+    record Handover(byte[] snapshot, String modeName) {
+        void write(DataOutputStream out) throws IOException {
+            writeBytes(out, snapshot);
+            out.writeUTF(modeName);
+        }
+
+        static Handover read(DataInputStream in) throws IOException {
+            return new Handover(readBytes(in), in.readUTF());
+        }
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,413 @@
+package smarthome;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thin client that forwards home commands to the {@link ClusterNode} owning the home.
+ *
+ * Homes are assigned to nodes by a consistent-hash ring with virtual nodes. Adding
+ * or removing a node moves only the homes whose owner changes: each is exported from
+ * its old node as a snapshot, imported on the new one, and then dropped from the old
+ * one. Commands wait while nodes are added or removed, so none reaches a home in the
+ * middle of its handover.
+ *
+ * The router keeps a small pool of TCP connections per node and is safe to use from
+ * many threads; each connection carries one request at a time.
+ */
+public class ClusterRouter implements AutoCloseable {
+    /**
+     * The default number of points each node gets on the ring.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final Map<String, NodeClient> clients = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock membership = new ReentrantReadWriteLock();
+    private volatile HashRing ring;
+
+    /**
+     * Creates a router with no nodes and {@value #DEFAULT_VIRTUAL_NODES} virtual nodes per node.
+     */
+    public ClusterRouter() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Creates a router with no nodes.
+     * @param virtualNodes The number of points each node gets on the ring.
+     */
+    public ClusterRouter(int virtualNodes) {
+        this.ring = new HashRing(virtualNodes);
+    }
+
+    /**
+     * Adds a node and moves the homes it now owns over to it.
+     * @param nodeId The node's id, which decides its place on the ring.
+     * @param address The node's address.
+     * @return The number of homes moved to the new node.
+     * @throws IOException if a node cannot be reached; the node is not added, and
+     *         calling this again moves the homes that were not moved yet.
+     * @throws IllegalArgumentException if a node with that id already exists.
+     */
+    public int addNode(String nodeId, InetSocketAddress address) throws IOException {
+        membership.writeLock().lock();
+        try {
+            if (clients.containsKey(nodeId)) {
+                throw new IllegalArgumentException("Node already exists: " + nodeId);
+            }
+            HashRing next = ring.with(nodeId);
+            NodeClient target = new NodeClient(address);
+            int moved = 0;
+            for (Map.Entry<String, NodeClient> entry : clients.entrySet()) {
+                for (String homeId : entry.getValue().listHomes()) {
+                    if (nodeId.equals(next.ownerOf(homeId))) {
+                        moveHome(homeId, entry.getValue(), target);
+                        moved++;
+                    }
+                }
+            }
+            clients.put(nodeId, target);
+            ring = next;
+            ConsoleOutput.info("Cluster node {} added at {}, {} homes moved", nodeId, address, moved);
+            return moved;
+        } finally {
+            membership.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a node after moving all of its homes to their new owners.
+     * The node must still be reachable.
+     * @param nodeId The node's id.
+     * @return The number of homes moved off the node.
+     * @throws IOException if a node cannot be reached; the node is not removed, and
+     *         calling this again moves the homes that were not moved yet.
+     * @throws IllegalArgumentException if the node is unknown.
+     * @throws IllegalStateException if it is the last node and still has homes.
+     */
+    public int removeNode(String nodeId) throws IOException {
+        membership.writeLock().lock();
+        try {
+            NodeClient leaving = clients.get(nodeId);
+            if (leaving == null) {
+                throw new IllegalArgumentException("Node not found: " + nodeId);
+            }
+            HashRing next = ring.without(nodeId);
+            List<String> homes = leaving.listHomes();
+            if (!homes.isEmpty() && next.getNodes().isEmpty()) {
+                throw new IllegalStateException("Cannot remove the last node while it has homes");
+            }
+            for (String homeId : homes) {
+                moveHome(homeId, leaving, clients.get(next.ownerOf(homeId)));
+            }
+            ring = next;
+            clients.remove(nodeId);
+            leaving.close();
+            ConsoleOutput.info("Cluster node {} removed, {} homes moved", nodeId, homes.size());
+            return homes.size();
+        } finally {
+            membership.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies a home and its automation mode to its new node, then drops it from the
+     * old one, so a failed import never loses the home.
+     */
+    private static void moveHome(String homeId, NodeClient from, NodeClient to) throws IOException {
+        ClusterProtocol.Handover handover = from.call(ClusterProtocol.EXPORT_HOME, homeId, out -> {
+        }, ClusterProtocol.Handover::read);
+        to.call(ClusterProtocol.IMPORT_HOME, homeId, handover::write, DataInputStream::readBoolean);
+        from.call(ClusterProtocol.DROP_HOME, homeId, out -> {
+        }, DataInputStream::readBoolean);
+    }
+
+    /**
+     * Gets the node that owns a home.
+     * @param homeId The home id.
+     * @return The owning node's id, or null if there are no nodes.
+     */
+    public String ownerOf(String homeId) {
+        return ring.ownerOf(homeId);
+    }
+
+    /**
+     * Counts the homes on every node, asking each node for its list.
+     * @return The home count per node id.
+     * @throws IOException if a node cannot be reached.
+     */
+    public Map<String, Integer> getHomeCounts() throws IOException {
+        membership.readLock().lock();
+        try {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (String nodeId : ring.getNodes()) {
+                counts.put(nodeId, clients.get(nodeId).listHomes().size());
+            }
+            return counts;
+        } finally {
+            membership.readLock().unlock();
+        }
+    }
+
+    /**
+     * Creates a home on its owning node.
+     * @param homeId The home id.
+     * @return true if the home was created, false if it already existed.
+     * @throws IOException if the node cannot be reached or reports an error.
+     */
+    public boolean createHome(String homeId) throws IOException {
+        return send(ClusterProtocol.CREATE_HOME, homeId, out -> {
+        });
+    }
+
+    /**
+     * Adds a device, with its decorators and current state, to a home.
+     * @param homeId The home id.
+     * @param device The device.
+     * @return true once the device was added.
+     * @throws IOException if the node cannot be reached or reports an error, such as an unknown home.
+     * @throws IllegalArgumentException if the device or a decorator type cannot be sent.
+     */
+    public boolean addDevice(String homeId, Device device) throws IOException {
+        byte[] bytes = ClusterProtocol.encodeDevice(device);
+        return send(ClusterProtocol.ADD_DEVICE, homeId, out -> ClusterProtocol.writeBytes(out, bytes));
+    }
+
+    /**
+     * Creates a room in a home.
+     * @param homeId The home id.
+     * @param roomName The room name.
+     * @return true once the room was created.
+     * @throws IOException if the node cannot be reached or reports an error.
+     */
+    public boolean createRoom(String homeId, String roomName) throws IOException {
+        return send(ClusterProtocol.CREATE_ROOM, homeId, out -> out.writeUTF(roomName));
+    }
+
+    /**
+     * Adds a device of a home to one of its rooms.
+     * @param homeId The home id.
+     * @param deviceName The device name.
+     * @param roomName The room name.
+     * @return true if the device was added, false if the device or room was not found.
+     * @throws IOException if the node cannot be reached or reports an error.
+     */
+    public boolean addDeviceToRoom(String homeId, String deviceName, String roomName) throws IOException {
+        return send(ClusterProtocol.ADD_DEVICE_TO_ROOM, homeId, out -> {
+            out.writeUTF(deviceName);
+            out.writeUTF(roomName);
+        });
+    }
+
+    /**
+     * Turns on a device of a home.
+     * @param homeId The home id.
+     * @param deviceName The device name.
+     * @return true if the device was turned on, false if not found.
+     * @throws IOException if the node cannot be reached or reports an error.
+     */
+    public boolean turnOnDevice(String homeId, String deviceName) throws IOException {
+        return send(ClusterProtocol.TURN_ON_DEVICE, homeId, out -> out.writeUTF(deviceName));
+    }
+
+    /**
+     * Turns off a device of a home.
+     * @param homeId The home id.
+     * @param deviceName The device name.
+     * @return true if the device was turned off, false if not found.
+     * @throws IOException if the node cannot be reached or reports an error.
+     */
+    public boolean turnOffDevice(String homeId, String deviceName) throws IOException {
+        return send(ClusterProtocol.TURN_OFF_DEVICE, homeId, out -> out.writeUTF(deviceName));
+    }
+
+    /**
+     * Turns on all devices in a room of a home.
+     * @param homeId The home id.
+     * @param roomName The room name.
+     * @return true if the room was found, false otherwise.
+     * @throws IOException if the node cannot be reached or reports an error.
+     */
+    public boolean turnOnRoom(String homeId, String roomName) throws IOException {
+        return send(ClusterProtocol.TURN_ON_ROOM, homeId, out -> out.writeUTF(roomName));
+    }
+
+    /**
+     * Turns off all devices in a room of a home.
+     * @param homeId The home id.
+     * @param roomName The room name.
+     * @return true if the room was found, false otherwise.
+     * @throws IOException if the node cannot be reached or reports an error.
+     */
+    public boolean turnOffRoom(String homeId, String roomName) throws IOException {
+        return send(ClusterProtocol.TURN_OFF_ROOM, homeId, out -> out.writeUTF(roomName));
+    }
+
+    /**
+     * Sets the automation mode of a home.
+     * @param homeId The home id.
+     * @param modeName A built-in mode name ("Night Mode", "Movie Mode", "Vacation Mode"),
+     *                 or an empty string for no mode.
+     * @return true if the mode was set, false if the name is not a built-in mode.
+     * @throws IOException if the node cannot be reached or reports an error.
+     */
+    public boolean setAutomationMode(String homeId, String modeName) throws IOException {
+        return send(ClusterProtocol.SET_MODE, homeId, out -> out.writeUTF(modeName));
+    }
+
+    /**
+     * Sends a home command to the home's owner and reads its boolean result.
+     */
+    private boolean send(byte command, String homeId, RequestWriter arguments) throws IOException {
+        membership.readLock().lock();
+        try {
+            String owner = ring.ownerOf(homeId);
+            if (owner == null) {
+                throw new IOException("No cluster nodes");
+            }
+            return clients.get(owner).call(command, homeId, arguments, DataInputStream::readBoolean);
+        } finally {
+            membership.readLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the connections to every node. The nodes keep running.
+     */
+    @Override
+    public void close() {
+        membership.writeLock().lock();
+        try {
+            for (NodeClient client : clients.values()) {
+                client.close();
+            }
+            clients.clear();
+        } finally {
+            membership.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the arguments of a request.
+     */
+    @FunctionalInterface
+    private interface RequestWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads the result of a successful response.
+     */
+    @FunctionalInterface
+    private interface ResponseReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * The connections to one node. Idle connections are pooled; a connection that
+     * fails is closed instead of being returned.
+     */
+    private static final class NodeClient {
+        private final InetSocketAddress address;
+        private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+
+        NodeClient(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        <T> T call(byte command, String homeId, RequestWriter arguments, ResponseReader<T> result) throws IOException {
+            return exchange(out -> {
+                out.writeByte(command);
+                out.writeUTF(homeId);
+                arguments.write(out);
+            }, result);
+        }
+
+        List<String> listHomes() throws IOException {
+            return exchange(out -> out.writeByte(ClusterProtocol.LIST_HOMES), in -> {
+                int count = in.readInt();
+                List<String> homes = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    homes.add(in.readUTF());
+                }
+                return homes;
+            });
+        }
+
+        /**
+         * Sends one request on a pooled connection and reads its response.
+         * The connection goes back to the pool unless the exchange failed part way.
+         */
+        private <T> T exchange(RequestWriter request, ResponseReader<T> result) throws IOException {
+            Connection connection = idle.poll();
+            if (connection == null) {
+                connection = new Connection(address);
+            }
+            String error;
+            T value;
+            try {
+                request.write(connection.out);
+                connection.out.flush();
+                if (connection.in.readByte() == ClusterProtocol.OK) {
+                    error = null;
+                    value = result.read(connection.in);
+                } else {
+                    error = connection.in.readUTF();
+                    value = null;
+                }
+            } catch (IOException e) {
+                connection.close();
+                throw e;
+            }
+            idle.offer(connection);
+            if (error != null) {
+                throw new IOException("Node " + address + " failed: " + error);
+            }
+            return value;
+        }
+
+        void close() {
+            Connection connection;
+            while ((connection = idle.poll()) != null) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * One TCP connection to a node.
+     */
+    private static final class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(address);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                ConsoleOutput.debug("Error closing cluster connection: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,593 @@
+package smarthome;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the commands the controller applies, with group commit.
+ *
+ * Every device state change the controller sends through its {@link Reconciler} is
+ * appended as a record naming the device and holding the undecorated device's
+ * resulting state, while the device's lock is still held, so the log has each
+ * device's changes in the order they were applied. Device and room additions and removals and mode changes are
+ * logged by the controller. Appending only copies the record into an in-memory
+ * buffer; a background thread writes whatever has accumulated with one write and one
+ * fsync, and the controller's public methods return once their records are durable.
+ * Concurrent commands therefore share an fsync, and while one group is being forced
+ * to disk the next one fills up, so throughput grows with the batch size instead of
+ * being capped by the disk's fsync rate. A commit delay makes the writer wait for
+ * more records before each fsync, trading latency for larger groups.
+ *
+ * Log directory layout:
+ * <ul>
+ *   <li>{@code commands-NNNNNNNN.wal} - a header (magic "SHWL", version, reserved short) followed by
+ *       records: body length (int), CRC32 of the body (int), then the body, starting
+ *       with the record type.</li>
+ *   <li>{@code snapshot-NNNNNNNN.dat} - a {@link HomeSnapshot} taken by {@link #checkpoint},
+ *       covering every record in the segments before NNNNNNNN.</li>
+ * </ul>
+ * A checkpoint starts a new segment before taking the snapshot, so records in the new
+ * segment may already be part of the snapshot. That is harmless, since device records
+ * hold the absolute state the device ended up in rather than the operation, which a
+ * decorator such as {@link EnergySaverDecorator} may apply relative to the current state.
+ *
+ * State changed outside the controller's commands, such as motion sensor auto-off
+ * and the vacation occupancy simulation, is not logged.
+ */
+public final class CommandLog implements AutoCloseable {
+    static final int MAGIC = 0x5348574C; // "SHWL"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 8;
+    static final byte ADD_DEVICE = 2;
+    static final byte REMOVE_DEVICE = 3;
+    static final byte CREATE_ROOM = 4;
+    static final byte ADD_DEVICE_TO_ROOM = 5;
+    static final byte SET_MODE = 6;
+    static final byte DEVICE_STATE = 7;
+    private static final String SEGMENT_PREFIX = "commands-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+    static final int DEFAULT_GROUP_BYTES = 256 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BODY_SIZE = 1 << 20;
+
+    private final Path directory;
+    private final long commitDelayNanos;
+    private final int groupBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    private final CRC32 crc = new CRC32();
+    private final Thread writerThread;
+
+    // Guarded by lock
+    private ByteBuffer filling = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private long appendedCount;
+    private long durableCount;
+    private long commitCount;
+    private boolean rollRequested;
+    private boolean running = true;
+    private IOException failure;
+
+    // Owned by the writer thread, or guarded by lock while rolling
+    private FileChannel channel;
+    private int segmentIndex;
+
+    /**
+     * Opens a new segment in the given directory and starts the writer thread.
+     * Use {@link SmartHomeController#openCommandLog(Path, Duration)}, which recovers
+     * the existing log first.
+     * @param directory The log directory.
+     * @param segmentIndex The index of the segment to create.
+     * @param commitDelay How long the writer waits for more records before each fsync.
+     * @param groupBytes The number of buffered bytes that ends the commit delay early.
+     * @throws IOException if the segment cannot be created.
+     */
+    CommandLog(Path directory, int segmentIndex, Duration commitDelay, int groupBytes) throws IOException {
+        if (commitDelay.isNegative() || groupBytes <= 0) {
+            throw new IllegalArgumentException("Invalid commit delay or group size: " + commitDelay + ", " + groupBytes);
+        }
+        this.directory = directory;
+        this.commitDelayNanos = commitDelay.toNanos();
+        this.groupBytes = groupBytes;
+        this.segmentIndex = segmentIndex;
+        this.channel = createSegment(directory, segmentIndex);
+        this.writerThread = new Thread(this::writeLoop, "smart-home-command-log");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Logs the state a device is in after a command. The caller holds the device's lock.
+     * @param device The device, possibly decorated.
+     * @throws IllegalArgumentException if the device type cannot be stored.
+     */
+    void appendDeviceState(Device device) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(DEVICE_STATE);
+            HomeSnapshot.writeString(out, device.getName());
+            HomeSnapshot.writeState(out, DeviceDecorator.getBaseDevice(device));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown by an in-memory stream
+        }
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Logs a device being added, with its decorator chain and current state.
+     * @param device The device.
+     * @throws IllegalArgumentException if the device or a decorator type cannot be stored.
+     */
+    void appendAddDevice(Device device) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ADD_DEVICE);
+            HomeSnapshot.writeDevice(out, device);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown by an in-memory stream
+        }
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Logs a record whose body is a type followed by strings.
+     * @param type The record type.
+     * @param values The strings.
+     */
+    void appendStrings(byte type, String... values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            for (String value : values) {
+                HomeSnapshot.writeString(out, value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Copies a record into the buffer of the next group and wakes the writer if needed.
+     */
+    private void append(byte[] body) {
+        if (body.length > MAX_BODY_SIZE) {
+            throw new IllegalArgumentException("Command log record too large: " + body.length + " bytes");
+        }
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Command log is closed");
+            }
+            boolean wasEmpty = filling.position() == 0;
+            if (filling.remaining() < RECORD_HEADER_SIZE + body.length) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(filling.capacity() * 2,
+                        filling.position() + RECORD_HEADER_SIZE + body.length));
+                filling.flip();
+                filling = larger.put(filling);
+            }
+            crc.reset();
+            crc.update(body);
+            filling.putInt(body.length).putInt((int) crc.getValue()).put(body);
+            appendedCount++;
+            if (wasEmpty || filling.position() >= groupBytes) {
+                pending.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is on disk.
+     * @throws UncheckedIOException if the log could not be written.
+     */
+    public void sync() {
+        lock.lock();
+        try {
+            long target = appendedCount;
+            while (durableCount < target && failure == null) {
+                committed.awaitUninterruptibly();
+            }
+            if (durableCount < target) {
+                throw new UncheckedIOException("Command log write failed", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Body of the writer thread. Takes the records appended so far, lets the next
+     * group fill while it writes and forces them, then wakes the waiting callers.
+     */
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer group;
+            long groupEnd;
+            boolean roll;
+            lock.lock();
+            try {
+                while (running && !rollRequested && filling.position() == 0) {
+                    pending.awaitUninterruptibly();
+                }
+                if (!running && filling.position() == 0) {
+                    return;
+                }
+                long deadline = System.nanoTime() + commitDelayNanos;
+                long remaining = commitDelayNanos;
+                while (running && !rollRequested && remaining > 0 && filling.position() < groupBytes) {
+                    try {
+                        remaining = pending.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        remaining = deadline - System.nanoTime();
+                    }
+                }
+                group = filling;
+                filling = spare;
+                spare = group;
+                groupEnd = appendedCount;
+                roll = rollRequested;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            FileChannel next = null;
+            try {
+                group.flip();
+                while (group.hasRemaining()) {
+                    channel.write(group);
+                }
+                channel.force(false);
+                if (roll) {
+                    next = createSegment(directory, segmentIndex + 1);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            group.clear();
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                    running = false;
+                    ConsoleOutput.error("Command log write failed: {}", error.getMessage());
+                } else {
+                    durableCount = groupEnd;
+                    commitCount++;
+                    if (roll) {
+                        closeQuietly(channel);
+                        channel = next;
+                        segmentIndex++;
+                        rollRequested = false;
+                    }
+                }
+                committed.signalAll();
+                if (error != null) {
+                    closeQuietly(channel);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the controller and deletes the log segments and snapshots it replaces.
+     * The current automation mode is logged in the new segment, and nothing is deleted
+     * before the snapshot, its directory entry and that record are on disk.
+     * Commands keep running while the snapshot is written.
+     * @param controller The controller this log belongs to.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void checkpoint(SmartHomeController controller) throws IOException {
+        int snapshotIndex = roll();
+        // The snapshot has no automation mode, and the SET_MODE record is in a segment about to be deleted
+        controller.logCurrentMode();
+        controller.saveSnapshot(snapshotPath(directory, snapshotIndex));
+        sync();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                int index = indexOf(file, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+                if (index < 0) {
+                    index = indexOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+                }
+                if (index >= 0 && index < snapshotIndex) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the writer finish the current segment and continue in a new one.
+     * Every record in the finished segment was applied before it was appended,
+     * so a snapshot taken afterwards covers them all.
+     * @return The index of the new segment.
+     */
+    private int roll() throws IOException {
+        lock.lock();
+        try {
+            int current = segmentIndex;
+            rollRequested = true;
+            pending.signal();
+            while (segmentIndex == current && failure == null) {
+                committed.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw new IOException("Command log write failed", failure);
+            }
+            return segmentIndex;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of records appended since the log was opened.
+     * @return The record count.
+     */
+    public long getRecordCount() {
+        lock.lock();
+        try {
+            return appendedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of group commits, that is fsyncs, since the log was opened.
+     * Divide the record count by it for the average group size.
+     * @return The commit count.
+     */
+    public long getCommitCount() {
+        lock.lock();
+        try {
+            return commitCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the directory this log writes to.
+     * @return The log directory.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes the remaining records and stops the writer thread.
+     * @throws IOException if the remaining records could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (!running) {
+                if (failure != null) {
+                    throw new IOException("Command log write failed", failure);
+                }
+                return;
+            }
+            running = false;
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the command log", e);
+        }
+        if (failure != null) {
+            throw new IOException("Command log write failed", failure);
+        }
+        channel.close();
+    }
+
+    /**
+     * Restores the latest snapshot in a log directory and replays the log segments after it.
+     * A torn or corrupt record, as left by a crash in the middle of a write, ends its
+     * segment; the segment is truncated there so the next recovery sees the same log.
+     * Observers are not notified of replayed changes.
+     * @param directory The log directory, created if it does not exist.
+     * @param controller The controller to restore into.
+     * @return The index for the next segment.
+     * @throws IOException if a file cannot be read or is not a valid log or snapshot.
+     */
+    static int recover(Path directory, SmartHomeController controller) throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> segments = new ArrayList<>();
+        int snapshot = -1;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                int segment = indexOf(file, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+                if (segment >= 0) {
+                    segments.add(segment);
+                }
+                snapshot = Math.max(snapshot, indexOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX));
+            }
+        }
+        segments.sort(null);
+
+        if (snapshot >= 0) {
+            controller.restoreSnapshot(snapshotPath(directory, snapshot));
+        }
+        int next = Math.max(snapshot, 0);
+        long replayed = 0;
+        for (int segment : segments) {
+            if (segment >= snapshot) {
+                replayed += replaySegment(segmentPath(directory, segment), controller);
+            }
+            next = Math.max(next, segment + 1);
+        }
+        if (snapshot >= 0 || replayed > 0) {
+            ConsoleOutput.info("Command log recovered: {} records replayed", replayed);
+        }
+        return next;
+    }
+
+    /**
+     * Replays the valid records of one segment.
+     * @return The number of records replayed.
+     */
+    private static long replaySegment(Path file, SmartHomeController controller) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a command log: " + file);
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new IOException("Unsupported command log version " + buffer.getShort(4) + ": " + file);
+        }
+        buffer.position(HEADER_SIZE);
+
+        CRC32 crc = new CRC32();
+        long count = 0;
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > MAX_BODY_SIZE || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                buffer.position(start);
+                break;
+            }
+            ByteBuffer body = ByteBuffer.wrap(buffer.array(), buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            try {
+                replayRecord(body, controller);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+                throw new IOException("Corrupt command log record at offset " + start + ": " + file, e);
+            }
+            count++;
+        }
+
+        if (buffer.position() < buffer.limit()) {
+            ConsoleOutput.warn("Command log {} ends with an incomplete record at offset {}; truncating",
+                    file.getFileName(), buffer.position());
+            try (FileChannel truncated = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                truncated.truncate(buffer.position());
+                truncated.force(false);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Applies one record to the controller.
+     */
+    private static void replayRecord(ByteBuffer body, SmartHomeController controller) throws IOException {
+        byte type = body.get();
+        switch (type) {
+            case DEVICE_STATE -> {
+                String name = HomeSnapshot.readString(body);
+                HomeSnapshot.DeviceState state = HomeSnapshot.readState(body, name);
+                Device device = controller.getDevice(name);
+                if (device != null) {
+                    controller.runLocked(device, d -> state.applyTo(DeviceDecorator.getBaseDevice(d)));
+                }
+            }
+            case ADD_DEVICE -> controller.addDevice(HomeSnapshot.readDevice(body, null, TimingWheelScheduler.getShared()));
+            case REMOVE_DEVICE -> controller.removeDevice(HomeSnapshot.readString(body));
+            case CREATE_ROOM -> controller.createRoom(HomeSnapshot.readString(body));
+            case ADD_DEVICE_TO_ROOM -> controller.addDeviceToRoom(HomeSnapshot.readString(body), HomeSnapshot.readString(body));
+            case SET_MODE -> controller.restoreAutomationMode(modeNamed(HomeSnapshot.readString(body)));
+            default -> throw new IOException("Unknown command log record type " + type);
+        }
+    }
+
+    /**
+     * Recreates a built-in automation mode from its name.
+     * @param name The mode name, or an empty string for no mode.
+     * @return The mode, or null for no mode or a mode that cannot be recreated.
+     */
+    static AutomationMode modeNamed(String name) {
+        return switch (name) {
+            case "" -> null;
+            case "Night Mode" -> new NightMode();
+            case "Movie Mode" -> new MovieMode();
+            case "Vacation Mode" -> new VacationMode();
+            default -> {
+                ConsoleOutput.warn("Cannot restore automation mode: {}", name);
+                yield null;
+            }
+        };
+    }
+
+    private static FileChannel createSegment(Path directory, int index) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(directory, index),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+        HomeSnapshot.forceDirectory(directory);
+        return channel;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            ConsoleOutput.warn("Error closing command log segment: {}", e.getMessage());
+        }
+    }
+
+    static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    static Path snapshotPath(Path directory, int index) {
+        return directory.resolve(String.format("%s%08d%s", SNAPSHOT_PREFIX, index, SNAPSHOT_SUFFIX));
+    }
+
+    /**
+     * Parses the index out of a segment or snapshot file name.
+     * @return The index, or -1 if the name does not match.
+     */
+    private static int indexOf(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(suffix)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package smarthome;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregated outcome of an asynchronous command that fanned out to one or more devices.
+ * Every target ends up in exactly one of three groups: succeeded, failed or timed out.
+ */
+public class CommandResult {
+    private final String command;
+    private final List<String> succeeded;
+    private final Map<String, Throwable> failed;
+    private final List<String> timedOut;
+    
+    /**
+     * Creates an empty result.
+     * @param command A short description of the command, used in toString.
+     */
+    public CommandResult(String command) {
+        this.command = command;
+        this.succeeded = new ArrayList<>();
+        this.failed = new LinkedHashMap<>();
+        this.timedOut = new ArrayList<>();
+    }
+    
+    /**
+     * Records a target that completed successfully.
+     * @param target The device (or mode) name.
+     */
+    void addSucceeded(String target) {
+        succeeded.add(target);
+    }
+    
+    /**
+     * Records a target that threw an exception.
+     * @param target The device (or mode) name.
+     * @param cause The exception thrown by the command.
+     */
+    void addFailed(String target, Throwable cause) {
+        failed.put(target, cause);
+    }
+    
+    /**
+     * Records a target that did not complete within the command timeout.
+     * @param target The device (or mode) name.
+     */
+    void addTimedOut(String target) {
+        timedOut.add(target);
+    }
+    
+    /**
+     * Gets a short description of the command.
+     * @return The command description.
+     */
+    public String getCommand() {
+        return command;
+    }
+    
+    /**
+     * Gets the targets that completed successfully.
+     * @return An unmodifiable list of target names.
+     */
+    public List<String> getSucceeded() {
+        return Collections.unmodifiableList(succeeded);
+    }
+    
+    /**
+     * Gets the targets that failed, with the exception each one threw.
+     * @return An unmodifiable map from target name to exception.
+     */
+    public Map<String, Throwable> getFailed() {
+        return Collections.unmodifiableMap(failed);
+    }
+    
+    /**
+     * Gets the targets that did not complete within the command timeout.
+     * The command may still finish later, but its outcome is not reported.
+     * @return An unmodifiable list of target names.
+     */
+    public List<String> getTimedOut() {
+        return Collections.unmodifiableList(timedOut);
+    }
+    
+    /**
+     * Gets the total number of targets.
+     * @return The number of succeeded, failed and timed out targets.
+     */
+    public int getTotal() {
+        return succeeded.size() + failed.size() + timedOut.size();
+    }
+    
+    /**
+     * Checks if every target succeeded.
+     * @return true if nothing failed or timed out, false otherwise.
+     */
+    public boolean isSuccess() {
+        return failed.isEmpty() && timedOut.isEmpty();
+    }
+    
+    /**
+     * Returns a string representation of the result.
+     * @return A summary with the number of targets in each group.
+     */
+    @Override
+    public String toString() {
+        return command + ": " + succeeded.size() + " succeeded, " + failed.size() + " failed, "
+                + timedOut.size() + " timed out";
+    }
+}
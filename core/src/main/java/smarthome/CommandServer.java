@@ -0,0 +1,691 @@
+package smarthome;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Network front end for a {@link SmartHomeController}: a line-based text protocol
+ * served by one NIO selector thread, with no thread per connection.
+ *
+ * Every request is one line ending in {@code \n} ({@code \r\n} is accepted too):
+ * <ul>
+ *   <li>{@code ON <device>} and {@code OFF <device>} - replies {@code OK} or {@code NOT_FOUND}.</li>
+ *   <li>{@code ROOM_ON <room>} and {@code ROOM_OFF <room>} - replies {@code OK} or {@code NOT_FOUND}.</li>
+ *   <li>{@code MODE <name>} sets a built-in mode, {@code MODE} alone clears it - replies {@code OK}.</li>
+ *   <li>{@code STATE <device>} - replies {@code ON}, {@code OFF} or {@code NOT_FOUND}.</li>
+ *   <li>{@code PING} - replies {@code PONG}; {@code QUIT} closes the connection.</li>
+ * </ul>
+ * Anything else, or a failing command, replies {@code ERR <message>}.
+ *
+ * A connection whose first byte is {@link WireProtocol#MAGIC} speaks the binary
+ * {@link WireProtocol} instead, which addresses devices and rooms by handles,
+ * covers the type-specific device operations and can push observer events.
+ *
+ * Clients may pipeline: send many requests without waiting, and read the replies,
+ * which come back in request order. The server runs every complete request it has
+ * read, batches the replies into pooled direct buffers and writes them with as few
+ * system calls as the socket allows. Commands run on the selector thread, so a slow
+ * command, such as one waiting for a command log fsync, delays the other connections.
+ *
+ * Memory stays bounded: each connection holds one input buffer, which is also the
+ * longest line accepted, and at most {@code maxPendingRequests} unwritten replies
+ * and events; once a client stops reading them, the server stops reading its
+ * requests and drops its events. Beyond {@code maxConnections}, new connections
+ * wait in the accept backlog.
+ */
+public class CommandServer implements AutoCloseable {
+    /**
+     * The default limit on open connections.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 1024;
+
+    /**
+     * The default limit on unwritten replies per connection.
+     */
+    public static final int DEFAULT_MAX_PENDING_REQUESTS = 1024;
+
+    /**
+     * The size of the pooled buffers and so the longest request line, in bytes.
+     */
+    static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final int MAX_POOLED_BUFFERS = 256;
+    private static final int MAX_ERROR_LENGTH = 256;
+    private static final int MAX_FRAME_BYTES = WireProtocol.MAX_FRAME_SIZE + 5; // Payload plus its length prefix
+    private static final int MAX_QUEUED_EVENTS = 64 * 1024;
+
+    private static final byte[] ON = ascii("ON");
+    private static final byte[] OFF = ascii("OFF");
+    private static final byte[] ROOM_ON = ascii("ROOM_ON");
+    private static final byte[] ROOM_OFF = ascii("ROOM_OFF");
+    private static final byte[] MODE = ascii("MODE");
+    private static final byte[] STATE = ascii("STATE");
+    private static final byte[] PING = ascii("PING");
+    private static final byte[] QUIT = ascii("QUIT");
+
+    private static final byte[] REPLY_OK = ascii("OK\n");
+    private static final byte[] REPLY_NOT_FOUND = ascii("NOT_FOUND\n");
+    private static final byte[] REPLY_ON = ascii("ON\n");
+    private static final byte[] REPLY_OFF = ascii("OFF\n");
+    private static final byte[] REPLY_PONG = ascii("PONG\n");
+
+    private final SmartHomeController controller;
+    private final int maxConnections;
+    private final int maxPendingRequests;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final SelectionKey acceptKey;
+    private final BufferPool buffers = new BufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final byte[] line = new byte[BUFFER_SIZE]; // Only touched by the selector thread
+    private final ByteBuffer frame = ByteBuffer.allocate(MAX_FRAME_BYTES); // Likewise
+    private final ByteBuffer eventFrame = ByteBuffer.allocate(MAX_FRAME_BYTES); // Likewise
+    private final AutomationMode[] modes = {null, new NightMode(), new MovieMode(), new VacationMode()}; // By MODE_* code
+    private final List<Connection> subscribers = new ArrayList<>(); // Likewise
+    private final ConcurrentLinkedQueue<QueuedEvent> queuedEvents = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedEventCount = new AtomicInteger();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final EventForwarder eventForwarder = new EventForwarder();
+    private final Thread selectorThread;
+    private volatile boolean running = true;
+    private volatile int connectionCount; // Single writer, the selector thread
+    private volatile long commandCount; // Single writer, the selector thread
+    private volatile int subscriberCount; // Single writer, the selector thread
+
+    /**
+     * Starts a server for a home on the loopback interface, with the default limits.
+     * @param controller The home to serve.
+     * @param port The port, or 0 to pick a free one.
+     * @throws IOException if the port cannot be bound.
+     */
+    public CommandServer(SmartHomeController controller, int port) throws IOException {
+        this(controller, new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_PENDING_REQUESTS);
+    }
+
+    /**
+     * Starts a server for a home.
+     * @param controller The home to serve.
+     * @param address The address to bind.
+     * @param maxConnections The most connections open at once.
+     * @param maxPendingRequests The most replies a connection may have waiting to be written
+     *                           before the server stops reading its requests.
+     * @throws IOException if the address cannot be bound.
+     * @throws IllegalArgumentException if a limit is not positive.
+     */
+    public CommandServer(SmartHomeController controller, InetSocketAddress address,
+                         int maxConnections, int maxPendingRequests) throws IOException {
+        if (maxConnections <= 0 || maxPendingRequests <= 0) {
+            throw new IllegalArgumentException("Limits must be positive: " + maxConnections + ", " + maxPendingRequests);
+        }
+        this.controller = controller;
+        this.maxConnections = maxConnections;
+        this.maxPendingRequests = maxPendingRequests;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(address, maxConnections);
+        this.serverChannel.configureBlocking(false);
+        this.acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        controller.registerObserver(eventForwarder);
+        this.selectorThread = new Thread(this::run, "smart-home-command-server-" + getAddress().getPort());
+        this.selectorThread.setDaemon(true);
+        this.selectorThread.start();
+        ConsoleOutput.info("Command server listening on {}", getAddress());
+    }
+
+    /**
+     * Gets the address clients connect to.
+     * @return The bound address, with the actual port.
+     */
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            throw new IllegalStateException("Command server is closed", e);
+        }
+    }
+
+    /**
+     * Gets the number of open connections.
+     * @return The connection count.
+     */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * Gets the number of requests answered since the server started.
+     * @return The request count.
+     */
+    public long getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * Gets the number of events not sent to binary sessions because they were not
+     * reading fast enough.
+     * @return The dropped event count.
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.sum();
+    }
+
+    /**
+     * Stops the server and closes every connection. Replies not written yet are dropped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        if (Thread.currentThread() != selectorThread) {
+            try {
+                selectorThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The selector loop: accepts connections and serves the ones that are ready.
+     */
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                deliverQueuedEvents();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key == acceptKey) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable() && connection.channel.read(connection.in) < 0) {
+                            closeConnection(connection);
+                            continue;
+                        }
+                        serve(connection);
+                    } catch (IOException e) {
+                        ConsoleOutput.debug("Command connection closed: {}", e.getMessage());
+                        closeConnection(connection);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            ConsoleOutput.error("Command server failed: {}", e.getMessage());
+        } finally {
+            controller.removeObserver(eventForwarder);
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection connection) {
+                    closeConnection(connection);
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                ConsoleOutput.debug("Error closing command server: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Accepts waiting connections up to the limit; at the limit, stops accepting until one closes.
+     */
+    private void accept() throws IOException {
+        while (connectionCount < maxConnections) {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel, buffers.acquire());
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connectionCount++;
+        }
+        acceptKey.interestOps(0);
+    }
+
+    private void closeConnection(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            ConsoleOutput.debug("Error closing command connection: {}", e.getMessage());
+        }
+        buffers.release(connection.in);
+        for (ByteBuffer buffer : connection.out) {
+            buffers.release(buffer);
+        }
+        connection.out.clear();
+        if (connection.session != null && connection.session.isSubscribed()) {
+            subscribers.remove(connection);
+            subscriberCount = subscribers.size();
+        }
+        connectionCount--;
+        if (running && acceptKey.isValid()) {
+            acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+        }
+    }
+
+    /**
+     * Writes what the socket takes, runs the requests already read while the
+     * connection is under its limit, writes again, and then decides whether to wait
+     * for more requests, for room in the socket, or both.
+     */
+    private void serve(Connection connection) throws IOException {
+        flush(connection);
+        boolean limited;
+        do {
+            limited = process(connection);
+            flush(connection);
+            // Requests left in the buffer at the limit get no new read event, so go on while the socket takes the replies
+        } while (limited && connection.out.isEmpty());
+        if (connection.out.isEmpty() && connection.closing) {
+            closeConnection(connection);
+            return;
+        }
+        int interest = connection.out.isEmpty() ? 0 : SelectionKey.OP_WRITE;
+        if (!connection.closing && connection.pending < maxPendingRequests) {
+            interest |= SelectionKey.OP_READ;
+        }
+        connection.key.interestOps(interest);
+    }
+
+    /**
+     * Runs every complete request in the input buffer, in order, while the
+     * connection's unwritten replies stay under the limit. The first bytes of a
+     * connection decide whether it speaks text or the binary protocol.
+     * @return true if it stopped at the limit, with requests possibly left in the buffer.
+     */
+    private boolean process(Connection connection) {
+        ByteBuffer in = connection.in;
+        in.flip();
+        if (!connection.text && connection.session == null && in.hasRemaining()) {
+            if (in.get(0) != WireProtocol.MAGIC) {
+                connection.text = true;
+            } else if (in.remaining() >= 2) {
+                handshake(connection, in);
+            }
+        }
+        if (connection.text) {
+            processLines(connection, in);
+        } else if (connection.session != null) {
+            processFrames(connection, in);
+        }
+        in.compact();
+        return connection.pending >= maxPendingRequests;
+    }
+
+    /**
+     * Answers the binary session preamble: the same bytes if the version is supported,
+     * else version 0, after which the connection is closed.
+     */
+    private void handshake(Connection connection, ByteBuffer in) {
+        in.get(); // MAGIC
+        byte version = in.get();
+        if (version == WireProtocol.VERSION) {
+            connection.session = new WireSession(controller, modes);
+            WireProtocol.putHello(frame);
+        } else {
+            frame.put(WireProtocol.MAGIC).put((byte) 0);
+            connection.closing = true;
+        }
+        reply(connection, frame);
+    }
+
+    /**
+     * Runs every complete request line in the input buffer.
+     */
+    private void processLines(Connection connection, ByteBuffer in) {
+        while (!connection.closing && connection.pending < maxPendingRequests) {
+            int end = indexOf(in, (byte) '\n');
+            if (end < 0) {
+                if (in.position() == 0 && in.limit() == in.capacity()) {
+                    reply(connection, error("Request longer than " + BUFFER_SIZE + " bytes"));
+                    connection.closing = true;
+                }
+                break;
+            }
+            int length = end - in.position();
+            in.get(in.position(), line, 0, length);
+            in.position(end + 1);
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            execute(connection, length);
+        }
+    }
+
+    /**
+     * Runs every complete binary frame in the input buffer. A frame too large or
+     * malformed to be skipped is answered with BAD_REQUEST and ends the session.
+     */
+    private void processFrames(Connection connection, ByteBuffer in) {
+        WireSession session = connection.session;
+        while (!connection.closing && connection.pending < maxPendingRequests) {
+            int size;
+            try {
+                size = WireProtocol.frameLength(in);
+            } catch (IllegalArgumentException e) {
+                WireProtocol.putStatus(frame, WireProtocol.BAD_REQUEST);
+                reply(connection, frame);
+                connection.closing = true;
+                break;
+            }
+            if (size == 0) {
+                break;
+            }
+            int end = in.position() + size;
+            int limit = in.limit();
+            in.limit(end);
+            WireProtocol.getVarint(in); // The frame length, already known
+            boolean subscribed = session.isSubscribed();
+            session.execute(in, frame);
+            in.limit(limit).position(end);
+            reply(connection, frame);
+            commandCount++;
+            if (session.isSubscribed() != subscribed) {
+                if (subscribed) {
+                    subscribers.remove(connection);
+                } else {
+                    subscribers.add(connection);
+                }
+                subscriberCount = subscribers.size();
+            }
+        }
+    }
+
+    /**
+     * Runs one request held in {@link #line} and queues its reply.
+     */
+    private void execute(Connection connection, int length) {
+        int space = 0;
+        while (space < length && line[space] != ' ') {
+            space++;
+        }
+        String argument = space < length ? new String(line, space + 1, length - space - 1, StandardCharsets.UTF_8) : "";
+        byte[] reply;
+        try {
+            if (isVerb(ON, space)) {
+                reply = found(controller.turnOnDevice(argument));
+            } else if (isVerb(OFF, space)) {
+                reply = found(controller.turnOffDevice(argument));
+            } else if (isVerb(STATE, space)) {
+                Device device = controller.getDevice(argument);
+                reply = device == null ? REPLY_NOT_FOUND : device.isOn() ? REPLY_ON : REPLY_OFF;
+            } else if (isVerb(ROOM_ON, space)) {
+                reply = found(controller.turnOnRoom(argument));
+            } else if (isVerb(ROOM_OFF, space)) {
+                reply = found(controller.turnOffRoom(argument));
+            } else if (isVerb(MODE, space)) {
+                int mode = modeCode(argument);
+                if (mode < 0) {
+                    reply = error("Unknown mode: " + argument);
+                } else {
+                    controller.setAutomationMode(modes[mode]);
+                    reply = REPLY_OK;
+                }
+            } else if (isVerb(PING, space)) {
+                reply = REPLY_PONG;
+            } else if (isVerb(QUIT, space)) {
+                connection.closing = true;
+                return;
+            } else {
+                reply = error("Unknown command: " + new String(line, 0, space, StandardCharsets.UTF_8));
+            }
+        } catch (RuntimeException e) {
+            reply = error(String.valueOf(e.getMessage()));
+        }
+        reply(connection, reply);
+        commandCount++;
+    }
+
+    /**
+     * Finds a built-in mode by name, so every request reuses the same mode object and its cached plan.
+     * @return The {@code WireProtocol.MODE_*} code, {@code MODE_NONE} for an empty name, or -1 if unknown.
+     */
+    private int modeCode(String name) {
+        if (name.isEmpty()) {
+            return WireProtocol.MODE_NONE;
+        }
+        for (int i = 1; i < modes.length; i++) {
+            if (modes[i].getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isVerb(byte[] verb, int length) {
+        return Arrays.equals(line, 0, length, verb, 0, verb.length);
+    }
+
+    /**
+     * Appends a reply to the connection's output, taking a new pooled buffer when the last one is full.
+     */
+    private void reply(Connection connection, byte[] reply) {
+        outputFor(connection, reply.length).put(reply);
+        connection.pending++;
+    }
+
+    /**
+     * Appends a frame encoded into one of the scratch buffers and clears the scratch buffer.
+     */
+    private void reply(Connection connection, ByteBuffer encoded) {
+        encoded.flip();
+        outputFor(connection, encoded.remaining()).put(encoded);
+        encoded.clear();
+        connection.pending++;
+    }
+
+    private ByteBuffer outputFor(Connection connection, int length) {
+        ByteBuffer tail = connection.out.peekLast();
+        if (tail == null || tail.remaining() < length) {
+            tail = buffers.acquire();
+            connection.out.add(tail);
+        }
+        return tail;
+    }
+
+    /**
+     * Sends a device event to every subscribed session that has a handle for the device.
+     * Sessions at their pending limit miss the event. Only called on the selector thread.
+     */
+    private void deliver(String deviceName, boolean status, byte cause) {
+        for (Connection connection : subscribers) {
+            int handle = connection.session.handleOf(deviceName);
+            if (handle == 0) {
+                continue;
+            }
+            if (connection.pending >= maxPendingRequests) {
+                droppedEvents.increment();
+                continue;
+            }
+            WireProtocol.putEvent(eventFrame, handle, status, cause);
+            reply(connection, eventFrame);
+            connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void deliverQueuedEvents() {
+        QueuedEvent event;
+        while ((event = queuedEvents.poll()) != null) {
+            queuedEventCount.decrementAndGet();
+            deliver(event.deviceName(), event.status(), event.cause());
+        }
+    }
+
+    /**
+     * Writes queued replies until the socket is full. A partly written buffer is
+     * compacted and stays at the head of the queue.
+     */
+    private void flush(Connection connection) throws IOException {
+        ByteBuffer head;
+        while ((head = connection.out.peek()) != null) {
+            head.flip();
+            connection.channel.write(head);
+            if (head.hasRemaining()) {
+                head.compact();
+                return;
+            }
+            buffers.release(connection.out.poll());
+        }
+        connection.pending = 0;
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte value) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] found(boolean found) {
+        return found ? REPLY_OK : REPLY_NOT_FOUND;
+    }
+
+    private static byte[] error(String message) {
+        String text = message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+        return ("ERR " + text.replace('\n', ' ') + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Forwards observer notifications to the subscribed binary sessions. Notifications
+     * from the selector thread itself, the usual case, are encoded right away; those
+     * from other threads, such as motion timers, are queued for the selector thread.
+     */
+    private final class EventForwarder implements BatchObserver {
+        @Override
+        public void update(String deviceName, boolean status, String message) {
+            if (subscriberCount == 0) {
+                return;
+            }
+            byte cause = WireProtocol.causeOf(message);
+            if (Thread.currentThread() == selectorThread) {
+                deliver(deviceName, status, cause);
+            } else {
+                enqueue(deviceName, status, cause);
+                selector.wakeup();
+            }
+        }
+
+        @Override
+        public void updateBatch(NotificationBatch batch) {
+            if (subscriberCount == 0 || batch.isEmpty()) {
+                return;
+            }
+            byte cause = WireProtocol.causeOf(batch.getMessage());
+            boolean selectorThreadCall = Thread.currentThread() == selectorThread;
+            for (int i = 0; i < batch.size(); i++) {
+                if (selectorThreadCall) {
+                    deliver(batch.getDeviceName(i), batch.getStatus(i), cause);
+                } else {
+                    enqueue(batch.getDeviceName(i), batch.getStatus(i), cause);
+                }
+            }
+            if (!selectorThreadCall) {
+                selector.wakeup();
+            }
+        }
+
+        private void enqueue(String deviceName, boolean status, byte cause) {
+            if (queuedEventCount.incrementAndGet() > MAX_QUEUED_EVENTS) {
+                queuedEventCount.decrementAndGet();
+                droppedEvents.increment();
+                return;
+            }
+            queuedEvents.add(new QueuedEvent(deviceName, status, cause));
+        }
+    }
+
+    /**
+     * A notification from another thread, waiting for the selector thread.
+     */
+    private record QueuedEvent(String deviceName, boolean status, byte cause) {
+    }
+
+    /**
+     * One client: its input buffer, its queued replies, how many replies are unwritten
+     * and, for binary clients, its session. Only touched by the selector thread.
+     */
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in;
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        private SelectionKey key;
+        private int pending; // Replies and events queued since the output was last empty
+        private boolean closing;
+        private boolean text;
+        private WireSession session;
+
+        Connection(SocketChannel channel, ByteBuffer in) {
+            this.channel = channel;
+            this.in = in;
+        }
+    }
+
+    /**
+     * Serves the default home until the process is stopped.
+     * Options: {@code --port=N} (default 7070), {@code --max-connections=N},
+     * {@code --max-pending=N} and {@code --snapshot=FILE} to restore the home from a snapshot first.
+     * @param args The command-line options.
+     * @throws IOException if the snapshot cannot be read or the port cannot be bound.
+     * @throws InterruptedException if the main thread is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = 7070;
+        int maxConnections = DEFAULT_MAX_CONNECTIONS;
+        int maxPending = DEFAULT_MAX_PENDING_REQUESTS;
+        SmartHomeController controller = SmartHomeController.getInstance();
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--max-connections=")) {
+                maxConnections = Integer.parseInt(arg.substring("--max-connections=".length()));
+            } else if (arg.startsWith("--max-pending=")) {
+                maxPending = Integer.parseInt(arg.substring("--max-pending=".length()));
+            } else if (arg.startsWith("--snapshot=")) {
+                controller.restoreSnapshot(Path.of(arg.substring("--snapshot=".length())), null);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        CommandServer server = new CommandServer(controller,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), maxConnections, maxPending);
+        server.selectorThread.join();
+    }
+}
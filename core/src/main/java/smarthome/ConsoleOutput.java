@@ -0,0 +1,278 @@
+package smarthome;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Level-gated console output for device, room and controller messages.
+ *
+ * Messages are only built when their level is enabled: callers pass either a constant,
+ * a template with {@code {}} placeholders and up to three arguments, or a supplier.
+ * Fixed-arity overloads avoid allocating a varargs array, so a disabled message costs
+ * one volatile read and a comparison. In {@link #quiet()} mode nothing is formatted
+ * or written at all.
+ *
+ * Enabled messages go to a pluggable {@link Sink}. The default sink prints errors to
+ * {@code System.err} and everything else to {@code System.out}, exactly as before.
+ */
+public final class ConsoleOutput {
+    /**
+     * Message levels, from the most to the least important.
+     * A threshold of {@link #OFF} disables all output.
+     */
+    public enum Level {
+        OFF, ERROR, WARN, INFO, DEBUG
+    }
+
+    /**
+     * Receives messages whose level is enabled.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * Writes one message.
+         * @param level The level of the message, never {@link Level#OFF}.
+         * @param message The formatted message, without a line separator.
+         */
+        void write(Level level, String message);
+    }
+
+    /**
+     * The default sink: errors to standard error, everything else to standard output.
+     */
+    public static final Sink STANDARD = (level, message) -> {
+        if (level == Level.ERROR) {
+            System.err.println(message);
+        } else {
+            System.out.println(message);
+        }
+    };
+
+    private static volatile Level threshold = Level.INFO;
+    private static volatile Sink sink = STANDARD;
+
+    private ConsoleOutput() {
+    }
+
+    /**
+     * Sets the most detailed level that is still written.
+     * @param level The new threshold; {@link Level#OFF} disables all output.
+     */
+    public static void setLevel(Level level) {
+        threshold = Objects.requireNonNull(level);
+    }
+
+    /**
+     * Gets the most detailed level that is still written.
+     * @return The current threshold.
+     */
+    public static Level getLevel() {
+        return threshold;
+    }
+
+    /**
+     * Disables all output. Messages are neither built nor written until the level is raised again.
+     */
+    public static void quiet() {
+        threshold = Level.OFF;
+    }
+
+    /**
+     * Replaces the sink that enabled messages are written to.
+     * @param newSink The new sink, for example {@link #STANDARD}.
+     */
+    public static void setSink(Sink newSink) {
+        sink = Objects.requireNonNull(newSink);
+    }
+
+    /**
+     * Gets the sink that enabled messages are written to.
+     * @return The current sink.
+     */
+    public static Sink getSink() {
+        return sink;
+    }
+
+    /**
+     * Checks if messages of a level are written. Use it to guard code that
+     * builds an expensive message outside of this class.
+     * @param level The level to check.
+     * @return true if messages of that level are written, false otherwise.
+     */
+    public static boolean isEnabled(Level level) {
+        return level != Level.OFF && level.ordinal() <= threshold.ordinal();
+    }
+
+    /**
+     * Writes an error if that level is enabled.
+     * @param message The message.
+     */
+    public static void error(String message) {
+        log(Level.ERROR, message);
+    }
+
+    /**
+     * Formats and writes an error if that level is enabled.
+     * @param template The message, with one {@code {}} placeholder per argument.
+     * @param arg The value for the placeholder.
+     */
+    public static void error(String template, Object arg) {
+        if (isEnabled(Level.ERROR)) {
+            sink.write(Level.ERROR, format(template, arg, null, null, 1));
+        }
+    }
+
+    /**
+     * Formats and writes an error if that level is enabled.
+     * @param template The message, with one {@code {}} placeholder per argument.
+     * @param arg1 The value for the first placeholder.
+     * @param arg2 The value for the second placeholder.
+     */
+    public static void error(String template, Object arg1, Object arg2) {
+        if (isEnabled(Level.ERROR)) {
+            sink.write(Level.ERROR, format(template, arg1, arg2, null, 2));
+        }
+    }
+
+    /**
+     * Writes a warning if that level is enabled.
+     * @param message The message.
+     */
+    public static void warn(String message) {
+        log(Level.WARN, message);
+    }
+
+    /**
+     * Formats and writes a warning if that level is enabled.
+     * @param template The message, with one {@code {}} placeholder per argument.
+     * @param arg The value for the placeholder.
+     */
+    public static void warn(String template, Object arg) {
+        if (isEnabled(Level.WARN)) {
+            sink.write(Level.WARN, format(template, arg, null, null, 1));
+        }
+    }
+
+    /**
+     * Formats and writes a warning if that level is enabled.
+     * @param template The message, with one {@code {}} placeholder per argument.
+     * @param arg1 The value for the first placeholder.
+     * @param arg2 The value for the second placeholder.
+     */
+    public static void warn(String template, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN)) {
+            sink.write(Level.WARN, format(template, arg1, arg2, null, 2));
+        }
+    }
+
+    /**
+     * Writes an informational message if that level is enabled.
+     * @param message The message.
+     */
+    public static void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    /**
+     * Formats and writes an informational message if that level is enabled.
+     * @param template The message, with one {@code {}} placeholder per argument.
+     * @param arg The value for the placeholder.
+     */
+    public static void info(String template, Object arg) {
+        if (isEnabled(Level.INFO)) {
+            sink.write(Level.INFO, format(template, arg, null, null, 1));
+        }
+    }
+
+    /**
+     * Formats and writes an informational message if that level is enabled.
+     * @param template The message, with one {@code {}} placeholder per argument.
+     * @param arg1 The value for the first placeholder.
+     * @param arg2 The value for the second placeholder.
+     */
+    public static void info(String template, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) {
+            sink.write(Level.INFO, format(template, arg1, arg2, null, 2));
+        }
+    }
+
+    /**
+     * Formats and writes an informational message if that level is enabled.
+     * @param template The message, with one {@code {}} placeholder per argument.
+     * @param arg1 The value for the first placeholder.
+     * @param arg2 The value for the second placeholder.
+     * @param arg3 The value for the third placeholder.
+     */
+    public static void info(String template, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.INFO)) {
+            sink.write(Level.INFO, format(template, arg1, arg2, arg3, 3));
+        }
+    }
+
+    /**
+     * Builds and writes an informational message if that level is enabled.
+     * @param message Builds the message; not called when the level is disabled.
+     */
+    public static void info(Supplier<String> message) {
+        log(Level.INFO, message);
+    }
+
+    /**
+     * Formats and writes a debug message if that level is enabled.
+     * @param template The message, with one {@code {}} placeholder per argument.
+     * @param arg The value for the placeholder.
+     */
+    public static void debug(String template, Object arg) {
+        if (isEnabled(Level.DEBUG)) {
+            sink.write(Level.DEBUG, format(template, arg, null, null, 1));
+        }
+    }
+
+    /**
+     * Builds and writes a debug message if that level is enabled.
+     * @param message Builds the message; not called when the level is disabled.
+     */
+    public static void debug(Supplier<String> message) {
+        log(Level.DEBUG, message);
+    }
+
+    /**
+     * Writes a constant message if its level is enabled.
+     * @param level The message level.
+     * @param message The message.
+     */
+    public static void log(Level level, String message) {
+        if (isEnabled(level)) {
+            sink.write(level, message);
+        }
+    }
+
+    /**
+     * Builds and writes a message if its level is enabled.
+     * @param level The message level.
+     * @param message Builds the message; not called when the level is disabled.
+     */
+    public static void log(Level level, Supplier<String> message) {
+        if (isEnabled(level)) {
+            sink.write(level, message.get());
+        }
+    }
+
+    /**
+     * Replaces the first {@code count} {@code {}} placeholders of a template with the arguments.
+     * Placeholders without an argument are kept as they are.
+     */
+    static String format(String template, Object arg1, Object arg2, Object arg3, int count) {
+        StringBuilder sb = new StringBuilder(template.length() + 32);
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int placeholder = template.indexOf("{}", start);
+            if (placeholder < 0) {
+                break;
+            }
+            sb.append(template, start, placeholder).append(i == 0 ? arg1 : i == 1 ? arg2 : arg3);
+            start = placeholder + 2;
+        }
+        return sb.append(template, start, template.length()).toString();
+    }
+}
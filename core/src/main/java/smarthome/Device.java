@@ -1,3 +1,5 @@
+package smarthome;
+
 /**
  * The base interface for all smart home devices.
  */
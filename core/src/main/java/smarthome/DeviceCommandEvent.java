@@ -0,0 +1,70 @@
+package smarthome;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one command sent to one device by the controller.
+ *
+ * Like all the controller's events it is created and begun unconditionally, but its
+ * fields are only filled in when {@link #shouldCommit()} says the recording wants it,
+ * so with no recording running the JIT removes the event altogether.
+ */
+@Name("smarthome.DeviceCommand")
+@Label("Device Command")
+@Category({"Smart Home", "Devices"})
+@Description("A command sent to one device, through its decorators")
+final class DeviceCommandEvent extends jdk.jfr.Event {
+    @Label("Device")
+    String device;
+
+    @Label("Device Type")
+    String deviceType;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Decorators")
+    @Description("The decorator chain from the outside in, for example MotionSensor > EnergySaver")
+    String decorators;
+
+    @Label("Issued")
+    @Description("Whether the command was sent, or skipped by the reconciler as a no-op")
+    boolean issued;
+
+    /**
+     * Fills in the fields and commits the event if the recording wants it.
+     * @param target The device the command was for.
+     * @param command The operation.
+     * @param sent Whether the command was actually sent.
+     */
+    void commit(Device target, ActionPlan.Operation command, boolean sent) {
+        if (shouldCommit()) {
+            device = target.getName();
+            deviceType = DeviceDecorator.getBaseDevice(target).getClass().getSimpleName();
+            operation = command.name();
+            decorators = decoratorChain(target);
+            issued = sent;
+            commit();
+        }
+    }
+
+    /**
+     * Describes the decorators wrapped around a device.
+     * @param device The device, possibly decorated.
+     * @return The decorator names without the Decorator suffix, outermost first, or an empty string.
+     */
+    static String decoratorChain(Device device) {
+        StringBuilder chain = new StringBuilder();
+        for (Device d = device; d instanceof DeviceDecorator decorator; d = decorator.getDecoratedDevice()) {
+            if (chain.length() > 0) {
+                chain.append(" > ");
+            }
+            String name = d.getClass().getSimpleName();
+            chain.append(name.endsWith("Decorator") ? name.substring(0, name.length() - "Decorator".length()) : name);
+        }
+        return chain.toString();
+    }
+}
@@ -1,3 +1,5 @@
+package smarthome;
+
 /**
  * Abstract base class for all device decorators.
  * Uses the Decorator pattern to add functionality to devices.
@@ -13,6 +15,26 @@ public abstract class DeviceDecorator implements Device {
         this.device = device;
     }
     
+    /**
+     * Gets the device wrapped by this decorator, which may itself be a decorator.
+     * @return The decorated device.
+     */
+    public Device getDecoratedDevice() {
+        return device;
+    }
+    
+    /**
+     * Gets the undecorated device at the bottom of a decorator chain.
+     * @param device A device, possibly wrapped in one or more decorators.
+     * @return The innermost device, or the device itself if it is not decorated.
+     */
+    public static Device getBaseDevice(Device device) {
+        while (device instanceof DeviceDecorator decorator) {
+            device = decorator.device;
+        }
+        return device;
+    }
+    
     @Override
     public void turnOn() {
         device.turnOn();
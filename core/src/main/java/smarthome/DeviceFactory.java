@@ -1,3 +1,5 @@
+package smarthome;
+
 /**
  * Factory for creating different types of smart home devices.
  * Implements the Factory pattern to centralize device creation logic.
@@ -26,6 +28,29 @@ public class DeviceFactory {
         }
     }
     
+    /**
+     * Creates a basic device of the specified type whose state is kept in a state store.
+     * @param type The type of device to create (light, airconditioner, door).
+     * @param name The name to give the device.
+     * @param store The store that holds the device's state.
+     * @return A new device view of the specified type.
+     * @throws IllegalArgumentException if the device type is unknown.
+     */
+    public static Device createDevice(String type, String name, DeviceStateStore store) {
+        switch(type.toLowerCase()) {
+            case "light" -> {
+                return store.newLight(name);
+            }
+            case "airconditioner", "ac" -> {
+                return store.newAirConditioner(name);
+            }
+            case "door" -> {
+                return store.newDoor(name);
+            }
+            default -> throw new IllegalArgumentException("Unknown device type: " + type);
+        }
+    }
+    
     /**
      * Creates a device with motion sensor capability.
      * @param type The type of device to create (light, airconditioner, door).
@@ -34,8 +59,20 @@ public class DeviceFactory {
      * @return A new device with motion sensor capability.
      */
     public static Device createMotionSensorDevice(String type, String name, int autoOffDelay) {
+        return createMotionSensorDevice(type, name, autoOffDelay, TimingWheelScheduler.getShared());
+    }
+    
+    /**
+     * Creates a device with motion sensor capability whose auto-off timer runs on the given scheduler.
+     * @param type The type of device to create (light, airconditioner, door).
+     * @param name The name to give the device.
+     * @param autoOffDelay The delay in seconds before turning off after no motion.
+     * @param scheduler The scheduler that tracks the auto-off deadline.
+     * @return A new device with motion sensor capability.
+     */
+    public static Device createMotionSensorDevice(String type, String name, int autoOffDelay, Scheduler scheduler) {
         Device baseDevice = createDevice(type, name);
-        return new MotionSensorDecorator(baseDevice, autoOffDelay);
+        return new MotionSensorDecorator(baseDevice, autoOffDelay, scheduler);
     }
     
     /**
@@ -57,8 +94,21 @@ public class DeviceFactory {
      * @return A new device with both motion sensor and energy saver capabilities.
      */
     public static Device createSmartDevice(String type, String name, int autoOffDelay) {
+        return createSmartDevice(type, name, autoOffDelay, TimingWheelScheduler.getShared());
+    }
+    
+    /**
+     * Creates a device with both motion sensor and energy saver capabilities
+     * whose auto-off timer runs on the given scheduler.
+     * @param type The type of device to create (light, airconditioner, door).
+     * @param name The name to give the device.
+     * @param autoOffDelay The delay in seconds before turning off after no motion.
+     * @param scheduler The scheduler that tracks the auto-off deadline.
+     * @return A new device with both motion sensor and energy saver capabilities.
+     */
+    public static Device createSmartDevice(String type, String name, int autoOffDelay, Scheduler scheduler) {
         Device baseDevice = createDevice(type, name);
-        Device motionSensorDevice = new MotionSensorDecorator(baseDevice, autoOffDelay);
+        Device motionSensorDevice = new MotionSensorDecorator(baseDevice, autoOffDelay, scheduler);
         return new EnergySaverDecorator(motionSensorDevice);
     }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package smarthome;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe multimap from keys to devices, used for the secondary indexes
+ * of the controller and rooms. Lookups return live read-only views of a bucket
+ * rather than copies, so callers only pay for the devices that match.
+ * Each bucket is a {@link DeviceList} in insertion order, so the same sequence of
+ * additions always gives the same order, as seeded simulations need. Iterating a
+ * bucket walks an array snapshot, with no lookup or allocation per device.
+ * @param <K> The type of the index key.
+ */
+class DeviceIndex<K> {
+    private final Map<K, DeviceList> buckets = new ConcurrentHashMap<>();
+    
+    /**
+     * Adds a device under the given key.
+     * @param key The index key.
+     * @param device The device to add.
+     */
+    void add(K key, Device device) {
+        buckets.computeIfAbsent(key, k -> new DeviceList()).add(device);
+    }
+    
+    /**
+     * Removes a device from the given key.
+     * Empty buckets are kept so that views handed out earlier stay live.
+     * @param key The index key.
+     * @param device The device to remove.
+     */
+    void remove(K key, Device device) {
+        DeviceList bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.remove(device);
+        }
+    }
+    
+    /**
+     * Gets a live read-only view of the devices under the given key.
+     * Looking up a key without devices creates nothing in the index.
+     * @param key The index key.
+     * @return The devices under the key; changes to the index show through.
+     */
+    List<Device> get(K key) {
+        DeviceList bucket = buckets.get(key);
+        return bucket != null ? bucket.view() : new AbsentKeyView(key);
+    }
+    
+    /**
+     * Removes every device from the index.
+     * Buckets are emptied rather than dropped so that views handed out earlier stay live.
+     */
+    void clear() {
+        for (DeviceList bucket : buckets.values()) {
+            bucket.clear();
+        }
+    }
+    
+    /**
+     * Gets the keys that currently have at least one bucket.
+     * @return A live view of the keys.
+     */
+    Set<K> keys() {
+        return buckets.keySet();
+    }
+    
+    /**
+     * The view of a key that had no bucket when it was looked up. It finds the bucket
+     * once per call, so it stays live without the lookup creating the bucket.
+     */
+    private final class AbsentKeyView extends AbstractList<Device> implements RandomAccess {
+        private final K key;
+        
+        AbsentKeyView(K key) {
+            this.key = key;
+        }
+        
+        /**
+         * Gets the bucket's view, or an empty list while the key has no bucket.
+         * @return The devices under the key.
+         */
+        private List<Device> target() {
+            DeviceList bucket = buckets.get(key);
+            return bucket != null ? bucket.view() : Collections.emptyList();
+        }
+        
+        @Override
+        public Device get(int index) {
+            return target().get(index);
+        }
+        
+        @Override
+        public int size() {
+            return target().size();
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            return target().contains(o);
+        }
+        
+        @Override
+        public void forEach(Consumer<? super Device> action) {
+            target().forEach(action);
+        }
+        
+        @Override
+        public Iterator<Device> iterator() {
+            return target().iterator();
+        }
+        
+        @Override
+        public ListIterator<Device> listIterator(int index) {
+            return target().listIterator(index);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package smarthome;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe set of devices kept in insertion order, handed out as a live
+ * read-only {@link List}. Adding and removing cost O(log n) and never copy the list.
+ *
+ * Reads go through an array snapshot of the list, rebuilt on the first read after a
+ * change. Devices change far less often than they are read, so iteration is a plain
+ * array walk and {@code get(int)} is O(1). An iteration sees the list as it was when
+ * the iteration started and never throws {@code ConcurrentModificationException}.
+ */
+class DeviceList {
+    private static final Device[] EMPTY = new Device[0];
+    
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+    private final Map<Device, Long> positions = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Device> ordered = new ConcurrentSkipListMap<>();
+    private final List<Device> view = new View();
+    private volatile Snapshot snapshot = new Snapshot(0, EMPTY);
+    
+    /**
+     * Appends a device, unless it is already in the list.
+     * @param device The device to add.
+     */
+    void add(Device device) {
+        long position = sequence.getAndIncrement();
+        if (positions.putIfAbsent(device, position) == null) {
+            ordered.put(position, device);
+            version.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Removes a device.
+     * @param device The device to remove.
+     */
+    void remove(Device device) {
+        Long position = positions.remove(device);
+        if (position != null) {
+            ordered.remove(position);
+            version.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Removes all devices.
+     */
+    void clear() {
+        positions.clear();
+        ordered.clear();
+        version.incrementAndGet();
+    }
+    
+    /**
+     * Gets the live read-only view of the list.
+     * @return The devices in insertion order; changes to the list show through.
+     */
+    List<Device> view() {
+        return view;
+    }
+    
+    /**
+     * Gets the devices as an array, rebuilding the snapshot if the list changed since
+     * it was taken. The version is read before copying, so a change made during the
+     * copy leaves the new snapshot stale and the next read copies again.
+     * @return The current devices in insertion order; must not be modified.
+     */
+    private Device[] devices() {
+        Snapshot current = snapshot;
+        long currentVersion = version.get();
+        if (current.version() == currentVersion) {
+            return current.devices();
+        }
+        Device[] devices = ordered.values().toArray(EMPTY);
+        snapshot = new Snapshot(currentVersion, devices);
+        return devices;
+    }
+    
+    /**
+     * The devices of the list at one version.
+     */
+    private record Snapshot(long version, Device[] devices) {
+    }
+    
+    /**
+     * The read-only list view. Every call reads the current snapshot.
+     */
+    private final class View extends AbstractList<Device> implements RandomAccess {
+        @Override
+        public Device get(int index) {
+            Device[] devices = devices();
+            if (index < 0 || index >= devices.length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + devices.length);
+            }
+            return devices[index];
+        }
+        
+        @Override
+        public int size() {
+            return devices().length;
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            return positions.containsKey(o);
+        }
+        
+        @Override
+        public void forEach(Consumer<? super Device> action) {
+            for (Device device : devices()) {
+                action.accept(device);
+            }
+        }
+        
+        @Override
+        public ListIterator<Device> iterator() {
+            return new ReadOnlyIterator(devices(), 0);
+        }
+        
+        @Override
+        public ListIterator<Device> listIterator(int index) {
+            Device[] devices = devices();
+            if (index < 0 || index > devices.length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + devices.length);
+            }
+            return new ReadOnlyIterator(devices, index);
+        }
+    }
+    
+    /**
+     * A bidirectional iterator over one snapshot.
+     */
+    private static final class ReadOnlyIterator implements ListIterator<Device> {
+        private final Device[] devices;
+        private int index;
+        
+        ReadOnlyIterator(Device[] devices, int index) {
+            this.devices = devices;
+            this.index = index;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return index < devices.length;
+        }
+        
+        @Override
+        public Device next() {
+            if (index >= devices.length) {
+                throw new NoSuchElementException();
+            }
+            return devices[index++];
+        }
+        
+        @Override
+        public boolean hasPrevious() {
+            return index > 0;
+        }
+        
+        @Override
+        public Device previous() {
+            if (index <= 0) {
+                throw new NoSuchElementException();
+            }
+            return devices[--index];
+        }
+        
+        @Override
+        public int nextIndex() {
+            return index;
+        }
+        
+        @Override
+        public int previousIndex() {
+            return index - 1;
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public void set(Device device) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public void add(Device device) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
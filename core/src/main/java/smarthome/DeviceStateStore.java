@@ -0,0 +1,372 @@
+package smarthome;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Optional struct-of-arrays store for the state of lights, air conditioners and doors.
+ * Every device gets an int id; its state lives at that index in primitive arrays
+ * instead of in a separate object:
+ * <ul>
+ *   <li>on/off and locked - one bit each in long bitsets,</li>
+ *   <li>brightness and air conditioner mode ordinal - one byte each,</li>
+ *   <li>temperature - one short.</li>
+ * </ul>
+ * Devices created through {@link #newLight(String)}, {@link #newAirConditioner(String)}
+ * and {@link #newDoor(String)} are thin views ({@link StoredLight}, {@link StoredAirConditioner}
+ * and {@link StoredDoor}) that read and write this store, so
+ * whole-building scans such as {@link #countOn()} walk a few contiguous arrays
+ * instead of chasing one pointer per device.
+ *
+ * The arrays are split into fixed-size pages so the store can grow without copying
+ * or blocking readers. Bitset words are shared by 64 devices and are updated with
+ * atomic bitwise operations, so commands to neighbouring devices never lose updates.
+ */
+public class DeviceStateStore {
+    /**
+     * The kinds of device whose state can be kept in the store.
+     */
+    public enum Kind {
+        LIGHT, AIR_CONDITIONER, DOOR
+    }
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int WORDS_PER_PAGE = PAGE_SIZE / Long.SIZE;
+    private static final byte FREE = 0; // Kind code of an unused id
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private volatile Page[] pages;
+    private int nextId;
+    private int[] freeIds;
+    private int freeCount;
+    private int size;
+
+    /**
+     * Creates an empty store.
+     */
+    public DeviceStateStore() {
+        this.pages = new Page[0];
+        this.freeIds = new int[16];
+    }
+
+    /**
+     * Creates a light whose state is kept in this store.
+     * @param name The name of the light.
+     * @return A new light view.
+     */
+    public StoredLight newLight(String name) {
+        return new StoredLight(this, allocate(Kind.LIGHT, name));
+    }
+
+    /**
+     * Creates an air conditioner whose state is kept in this store.
+     * @param name The name of the air conditioner.
+     * @return A new air conditioner view.
+     */
+    public StoredAirConditioner newAirConditioner(String name) {
+        return new StoredAirConditioner(this, allocate(Kind.AIR_CONDITIONER, name));
+    }
+
+    /**
+     * Creates a door whose state is kept in this store.
+     * @param name The name of the door.
+     * @return A new door view.
+     */
+    public StoredDoor newDoor(String name) {
+        return new StoredDoor(this, allocate(Kind.DOOR, name));
+    }
+
+    /**
+     * Creates a view over an existing id, for example while walking the results of a scan.
+     * Views are cheap; any number of them may exist for the same id.
+     * @param id The device id.
+     * @return A new view of the matching type.
+     * @throws IllegalArgumentException if the id is not in use.
+     */
+    public Device view(int id) {
+        Kind kind = getKind(id);
+        if (kind == null) {
+            throw new IllegalArgumentException("Unknown device id: " + id);
+        }
+        return switch (kind) {
+            case LIGHT -> new StoredLight(this, id);
+            case AIR_CONDITIONER -> new StoredAirConditioner(this, id);
+            case DOOR -> new StoredDoor(this, id);
+        };
+    }
+
+    /**
+     * Frees an id so it can be reused by a later device.
+     * Views of the released device must no longer be used.
+     * @param id The device id.
+     */
+    public synchronized void release(int id) {
+        Page page = page(id);
+        int index = id & PAGE_MASK;
+        if (page.kinds[index] == FREE) {
+            return;
+        }
+        page.kinds[index] = FREE;
+        page.names[index] = null;
+        setBit(page.on, index, false);
+        setBit(page.locked, index, false);
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+        size--;
+    }
+
+    /**
+     * Gets the number of devices in the store.
+     * @return The device count.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the name of a device.
+     * @param id The device id.
+     * @return The device name, or null if the id is not in use.
+     */
+    public String getName(int id) {
+        return page(id).names[id & PAGE_MASK];
+    }
+
+    /**
+     * Gets the kind of a device.
+     * @param id The device id.
+     * @return The device kind, or null if the id is not in use.
+     */
+    public Kind getKind(int id) {
+        byte code = page(id).kinds[id & PAGE_MASK];
+        return code == FREE ? null : Kind.values()[code - 1];
+    }
+
+    /**
+     * Checks if a device is on (for doors: open).
+     * @param id The device id.
+     * @return true if the device is on, false otherwise.
+     */
+    public boolean isOn(int id) {
+        return getBit(page(id).on, id & PAGE_MASK);
+    }
+
+    /**
+     * Sets whether a device is on (for doors: open).
+     * @param id The device id.
+     * @param on The new status.
+     */
+    public void setOn(int id, boolean on) {
+        setBit(page(id).on, id & PAGE_MASK, on);
+    }
+
+    /**
+     * Checks if a door is locked.
+     * @param id The device id.
+     * @return true if the door is locked, false otherwise.
+     */
+    public boolean isLocked(int id) {
+        return getBit(page(id).locked, id & PAGE_MASK);
+    }
+
+    /**
+     * Sets whether a door is locked.
+     * @param id The device id.
+     * @param locked The new lock state.
+     */
+    public void setLocked(int id, boolean locked) {
+        setBit(page(id).locked, id & PAGE_MASK, locked);
+    }
+
+    /**
+     * Gets the brightness of a light.
+     * @param id The device id.
+     * @return The brightness level (0-100).
+     */
+    public int getBrightness(int id) {
+        return page(id).brightness[id & PAGE_MASK];
+    }
+
+    /**
+     * Sets the brightness of a light. The caller is responsible for clamping.
+     * @param id The device id.
+     * @param brightness The brightness level (0-100).
+     */
+    public void setBrightness(int id, int brightness) {
+        page(id).brightness[id & PAGE_MASK] = (byte) brightness;
+    }
+
+    /**
+     * Gets the target temperature of an air conditioner.
+     * @param id The device id.
+     * @return The temperature in Celsius.
+     */
+    public int getTemperature(int id) {
+        return page(id).temperature[id & PAGE_MASK];
+    }
+
+    /**
+     * Sets the target temperature of an air conditioner. The caller is responsible for clamping.
+     * @param id The device id.
+     * @param temperature The temperature in Celsius.
+     */
+    public void setTemperature(int id, int temperature) {
+        page(id).temperature[id & PAGE_MASK] = (short) temperature;
+    }
+
+    /**
+     * Gets the mode ordinal of an air conditioner.
+     * @param id The device id.
+     * @return The index of the mode in {@link AirConditioner#MODES}.
+     */
+    public int getModeOrdinal(int id) {
+        return page(id).mode[id & PAGE_MASK];
+    }
+
+    /**
+     * Sets the mode ordinal of an air conditioner.
+     * @param id The device id.
+     * @param ordinal The index of the mode in {@link AirConditioner#MODES}.
+     */
+    public void setModeOrdinal(int id, int ordinal) {
+        page(id).mode[id & PAGE_MASK] = (byte) ordinal;
+    }
+
+    /**
+     * Counts the devices that are on, using a population count per 64 devices.
+     * @return The number of devices that are on.
+     */
+    public int countOn() {
+        int count = 0;
+        for (Page page : pages) {
+            for (int word = 0; word < WORDS_PER_PAGE; word++) {
+                count += Long.bitCount((long) WORDS.getOpaque(page.on, word));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the devices of one kind that are on.
+     * @param kind The kind of device to count.
+     * @return The number of devices of that kind that are on.
+     */
+    public int countOn(Kind kind) {
+        int[] count = new int[1];
+        byte code = code(kind);
+        Page[] current = pages;
+        forEachOn(id -> {
+            if (current[id >>> PAGE_BITS].kinds[id & PAGE_MASK] == code) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Calls the consumer with the id of every device that is on, in id order.
+     * Words with no device on are skipped without looking at individual bits.
+     * @param consumer Receives each id.
+     */
+    public void forEachOn(IntConsumer consumer) {
+        Page[] current = pages;
+        for (int p = 0; p < current.length; p++) {
+            long[] on = current[p].on;
+            for (int word = 0; word < WORDS_PER_PAGE; word++) {
+                long bits = (long) WORDS.getOpaque(on, word);
+                while (bits != 0) {
+                    int bit = Long.numberOfTrailingZeros(bits);
+                    consumer.accept((p << PAGE_BITS) + word * Long.SIZE + bit);
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls the consumer with the id of every device in the store, in id order.
+     * @param consumer Receives each id.
+     */
+    public void forEach(IntConsumer consumer) {
+        Page[] current = pages;
+        for (int p = 0; p < current.length; p++) {
+            byte[] kinds = current[p].kinds;
+            for (int index = 0; index < PAGE_SIZE; index++) {
+                if (kinds[index] != FREE) {
+                    consumer.accept((p << PAGE_BITS) + index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reserves an id for a new device and initializes it with the defaults of its kind.
+     * @param kind The kind of device.
+     * @param name The name of the device.
+     * @return The new device id.
+     */
+    synchronized int allocate(Kind kind, String name) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = nextId++;
+            if (id >>> PAGE_BITS == pages.length) {
+                Page[] grown = Arrays.copyOf(pages, pages.length + 1);
+                grown[pages.length] = new Page();
+                pages = grown;
+            }
+        }
+
+        Page page = page(id);
+        int index = id & PAGE_MASK;
+        page.names[index] = name;
+        page.brightness[index] = 50;  // Light default
+        page.temperature[index] = 24; // Air conditioner default, in Celsius
+        page.mode[index] = 0;         // COOL
+        setBit(page.on, index, false);
+        setBit(page.locked, index, kind == Kind.DOOR); // Doors start locked
+        page.kinds[index] = code(kind);
+        size++;
+        return id;
+    }
+
+    private Page page(int id) {
+        return pages[id >>> PAGE_BITS];
+    }
+
+    private static byte code(Kind kind) {
+        return (byte) (kind.ordinal() + 1);
+    }
+
+    private static boolean getBit(long[] words, int index) {
+        return ((long) WORDS.getOpaque(words, index >>> 6) & (1L << index)) != 0;
+    }
+
+    private static void setBit(long[] words, int index, boolean value) {
+        if (value) {
+            WORDS.getAndBitwiseOr(words, index >>> 6, 1L << index);
+        } else {
+            WORDS.getAndBitwiseAnd(words, index >>> 6, ~(1L << index));
+        }
+    }
+
+    /**
+     * The state of one page of consecutive device ids.
+     */
+    private static final class Page {
+        private final long[] on = new long[WORDS_PER_PAGE];
+        private final long[] locked = new long[WORDS_PER_PAGE];
+        private final byte[] brightness = new byte[PAGE_SIZE];
+        private final byte[] mode = new byte[PAGE_SIZE];
+        private final short[] temperature = new short[PAGE_SIZE];
+        private final byte[] kinds = new byte[PAGE_SIZE];
+        private final String[] names = new String[PAGE_SIZE];
+    }
+}
@@ -1,7 +1,10 @@
+package smarthome;
+
 /**
  * Implementation of a smart door device.
+ * See {@link StoredDoor} for a door whose state is kept in a {@link DeviceStateStore}.
  */
-public class Door implements Device {
+public class Door implements DoorDevice {
     private final String name;
     private boolean status; // true = open, false = closed
     private boolean locked;
@@ -16,22 +19,34 @@ public class Door implements Device {
         this.locked = true;  // Default to locked
     }
     
+    /**
+     * Creates a standalone door with restored state, without console output.
+     * @param name The name of the door.
+     * @param status The restored status (true = open).
+     * @param locked The restored lock state.
+     */
+    Door(String name, boolean status, boolean locked) {
+        this.name = name;
+        this.status = status;
+        this.locked = locked;
+    }
+    
     @Override
     public void turnOn() {
         // For a door, "on" means open
         if (locked) {
-            System.out.println(name + " door cannot be opened. It is locked.");
+            ConsoleOutput.warn("{} door cannot be opened. It is locked.", name);
             return;
         }
         this.status = true;
-        System.out.println(name + " door opened");
+        ConsoleOutput.info("{} door opened", name);
     }
     
     @Override
     public void turnOff() {
         // For a door, "off" means closed
         this.status = false;
-        System.out.println(name + " door closed");
+        ConsoleOutput.info("{} door closed", name);
     }
     
     @Override
@@ -47,9 +62,10 @@ public class Door implements Device {
     /**
      * Locks the door.
      */
+    @Override
     public void lock() {
         this.locked = true;
-        System.out.println(name + " door locked");
+        ConsoleOutput.info("{} door locked", name);
         
         // Close the door if it's open
         if (status) {
@@ -60,15 +76,17 @@ public class Door implements Device {
     /**
      * Unlocks the door.
      */
+    @Override
     public void unlock() {
         this.locked = false;
-        System.out.println(name + " door unlocked");
+        ConsoleOutput.info("{} door unlocked", name);
     }
     
     /**
      * Checks if the door is locked.
      * @return true if the door is locked, false otherwise.
      */
+    @Override
     public boolean isLocked() {
         return locked;
     }
@@ -0,0 +1,23 @@
+package smarthome;
+
+/**
+ * A door, whether it keeps its own state ({@link Door}) or is a view over a
+ * state store ({@link StoredDoor}).
+ */
+public interface DoorDevice extends Device {
+    /**
+     * Locks the door.
+     */
+    void lock();
+    
+    /**
+     * Unlocks the door.
+     */
+    void unlock();
+    
+    /**
+     * Checks if the door is locked.
+     * @return true if the door is locked, false otherwise.
+     */
+    boolean isLocked();
+}
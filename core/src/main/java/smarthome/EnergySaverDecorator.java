@@ -1,3 +1,5 @@
+package smarthome;
+
 // EnergySaverDecorator.java
 // Place all files in the same directory for this approach
 
@@ -6,6 +8,8 @@
  * Adjusts device settings to optimize energy usage.
  */
 public class EnergySaverDecorator extends DeviceDecorator {
+    private static final OperationStats TURN_ON = Metrics.sampledOperation("decorator.energySaver.turnOn");
+    
     private boolean energySaverMode;
     
     /**
@@ -17,14 +21,26 @@ public class EnergySaverDecorator extends DeviceDecorator {
         this.energySaverMode = false;
     }
     
+    /**
+     * Creates a new EnergySaverDecorator with a restored mode, without console output.
+     * @param device The device to decorate.
+     * @param energySaverMode Whether energy saver mode is enabled.
+     */
+    EnergySaverDecorator(Device device, boolean energySaverMode) {
+        super(device);
+        this.energySaverMode = energySaverMode;
+    }
+    
     @Override
     public void turnOn() {
+        long start = TURN_ON.start();
         device.turnOn();
         
         // Apply energy saving settings if mode is enabled
         if (energySaverMode) {
             applyEnergySavingSettings();
         }
+        TURN_ON.stop(start);
     }
     
     /**
@@ -35,14 +51,14 @@ public class EnergySaverDecorator extends DeviceDecorator {
         this.energySaverMode = enabled;
         
         if (enabled) {
-            System.out.println("Energy saver mode enabled for " + device.getName());
+            ConsoleOutput.info("Energy saver mode enabled for {}", device.getName());
             
             // Apply energy saving settings if the device is on
             if (device.isOn()) {
                 applyEnergySavingSettings();
             }
         } else {
-            System.out.println("Energy saver mode disabled for " + device.getName());
+            ConsoleOutput.info("Energy saver mode disabled for {}", device.getName());
         }
     }
     
@@ -51,15 +67,15 @@ public class EnergySaverDecorator extends DeviceDecorator {
      */
     private void applyEnergySavingSettings() {
         switch (device) {
-            case Light light -> {
+            case LightDevice light -> {
 // For lights, reduce brightness
 int currentBrightness = light.getBrightness();
 int newBrightness = Math.max(currentBrightness - 30, 20); // Reduce by 30%, but min 20%
 
 light.setBrightness(newBrightness);
-System.out.println("Energy saver reduced brightness of " + device.getName() + " to " + newBrightness + "%");
+ConsoleOutput.info("Energy saver reduced brightness of {} to {}%", device.getName(), newBrightness);
             }
-            case AirConditioner ac -> {
+            case AirConditionerDevice ac -> {
 // For AC, adjust temperature to save energy
 String mode = ac.getMode();
 int currentTemp = ac.getTemperature();
@@ -68,13 +84,13 @@ if (mode.equals("COOL")) {
     // In cooling mode, increase temperature to save energy
     int newTemp = Math.min(currentTemp + 2, 26); // Increase by 2°C, max 26°C
     ac.setTemperature(newTemp);
-    System.out.println("Energy saver increased cooling temperature of " + device.getName() + " to " + newTemp + "°C");
+    ConsoleOutput.info("Energy saver increased cooling temperature of {} to {}°C", device.getName(), newTemp);
 }
 else if (mode.equals("HEAT")) {
     // In heating mode, decrease temperature to save energy
     int newTemp = Math.max(currentTemp - 2, 20); // Decrease by 2°C, min 20°C
     ac.setTemperature(newTemp);
-    System.out.println("Energy saver decreased heating temperature of " + device.getName() + " to " + newTemp + "°C");
+    ConsoleOutput.info("Energy saver decreased heating temperature of {} to {}°C", device.getName(), newTemp);
 }
             }
             default -> {
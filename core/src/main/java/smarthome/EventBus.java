@@ -0,0 +1,390 @@
+package smarthome;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ring-buffer event bus that decouples device commands from observer work.
+ *
+ * Events are written into preallocated, mutable slots of a ring buffer, so
+ * publishing never allocates. Producers claim slots on one shared sequence with a
+ * compare-and-set; each observer runs on its own thread with its own consumer
+ * sequence and reads the ring at its own pace. A slow observer only delays the
+ * others once the ring is full: producers wait for the slowest consumer only when
+ * they would otherwise overwrite an event it has not read yet.
+ *
+ * A batch is published as consecutive slots and delivered to each observer as one
+ * {@link NotificationBatch}; single notifications are delivered through
+ * {@link Observer#update(String, boolean, String)} as before.
+ */
+public class EventBus {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int capacity;
+    private final int mask;
+    private final int indexShift;
+    private final Slot[] slots;
+    private final int[] available; // Round number of the event published in each slot
+    private final AtomicLong cursor; // Highest claimed sequence, shared by all producers
+    private final WaitStrategy waitStrategy;
+    private final CopyOnWriteArrayList<Consumer> consumers;
+    private final ReentrantLock blockingLock = new ReentrantLock();
+    private final Condition published = blockingLock.newCondition();
+    private volatile int blockedConsumers;
+    private volatile long gatingCache = -1; // Last known minimum consumer sequence
+
+    /**
+     * Creates a new event bus.
+     * @param capacity The number of slots in the ring, rounded up to a power of two.
+     * @param waitStrategy How consumers wait for new events.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    public EventBus(int capacity, WaitStrategy waitStrategy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = Integer.highestOneBit(capacity * 2 - 1);
+        this.mask = this.capacity - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(this.capacity);
+        this.slots = new Slot[this.capacity];
+        this.available = new int[this.capacity];
+        for (int i = 0; i < this.capacity; i++) {
+            slots[i] = new Slot();
+            available[i] = -1;
+        }
+        this.cursor = new AtomicLong(-1);
+        this.waitStrategy = waitStrategy;
+        this.consumers = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Starts delivering events to an observer on its own thread.
+     * The observer receives the events published from now on.
+     * @param observer The observer to add.
+     */
+    public void subscribe(BatchObserver observer) {
+        Consumer consumer = new Consumer(observer, cursor.get());
+        consumers.add(consumer);
+        consumer.thread.start();
+    }
+
+    /**
+     * Stops delivering events to an observer after it has received everything published so far.
+     * @param observer The observer to remove.
+     * @return true if the observer was subscribed, false otherwise.
+     */
+    public boolean unsubscribe(BatchObserver observer) {
+        for (Consumer consumer : consumers) {
+            if (consumer.observer.equals(observer)) {
+                consumer.stop(cursor.get());
+                consumers.remove(consumer);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Publishes a single state change.
+     * @param deviceName The name of the device that changed.
+     * @param status The new status of the device.
+     * @param message Additional information about the state change.
+     */
+    public void publish(String deviceName, boolean status, String message) {
+        long sequence = claim(1);
+        Slot slot = slots[(int) sequence & mask];
+        slot.deviceName = deviceName;
+        slot.status = status;
+        slot.message = message;
+        slot.single = true;
+        slot.endOfBatch = true;
+        markAvailable(sequence);
+        signalConsumers();
+    }
+
+    /**
+     * Publishes all state changes of a batch as consecutive events.
+     * Batches larger than the ring are split into ring-sized parts.
+     * @param batch The batch to publish.
+     */
+    public void publish(NotificationBatch batch) {
+        String message = batch.getMessage();
+        for (int start = 0; start < batch.size(); start += capacity) {
+            int count = Math.min(capacity, batch.size() - start);
+            long last = claim(count);
+            long first = last - count + 1;
+            for (int i = 0; i < count; i++) {
+                Slot slot = slots[(int) (first + i) & mask];
+                slot.deviceName = batch.getDeviceName(start + i);
+                slot.status = batch.getStatus(start + i);
+                slot.message = message;
+                slot.single = false;
+                slot.endOfBatch = i == count - 1;
+            }
+            for (long sequence = first; sequence <= last; sequence++) {
+                markAvailable(sequence);
+            }
+        }
+        signalConsumers();
+    }
+
+    /**
+     * Waits until every observer has received everything published so far, then stops
+     * all consumer threads. Events published afterwards are not delivered.
+     */
+    public void shutdown() {
+        long last = cursor.get();
+        for (Consumer consumer : consumers) {
+            consumer.stop(last);
+        }
+        consumers.clear();
+    }
+
+    /**
+     * Gets the number of slots in the ring.
+     * @return The ring capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of events published but not yet read by the slowest observer.
+     * @return The backlog of the slowest consumer.
+     */
+    public long getBacklog() {
+        long current = cursor.get();
+        return current - minimumSequence(current);
+    }
+
+    /**
+     * Gets the number of observers receiving events.
+     * @return The subscriber count.
+     */
+    public int getSubscriberCount() {
+        return consumers.size();
+    }
+
+    /**
+     * Claims the next slots on the shared producer sequence, waiting while the ring is full.
+     * @param count The number of slots to claim, at most the ring capacity.
+     * @return The last claimed sequence.
+     */
+    private long claim(int count) {
+        while (true) {
+            long current = cursor.get();
+            long next = current + count;
+            long wrapPoint = next - capacity;
+            if (wrapPoint > gatingCache) {
+                long gating = minimumSequence(current);
+                if (wrapPoint > gating) {
+                    LockSupport.parkNanos(1); // The slowest observer has not freed enough slots yet
+                    continue;
+                }
+                gatingCache = gating;
+            }
+            if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Marks a slot as published, releasing the writes to its fields.
+     */
+    private void markAvailable(long sequence) {
+        AVAILABLE.setRelease(available, (int) sequence & mask, (int) (sequence >>> indexShift));
+    }
+
+    private boolean isAvailable(long sequence) {
+        return (int) AVAILABLE.getAcquire(available, (int) sequence & mask) == (int) (sequence >>> indexShift);
+    }
+
+    private void signalConsumers() {
+        if (waitStrategy != WaitStrategy.BLOCKING) {
+            return;
+        }
+        VarHandle.fullFence(); // Order the availability writes before the check for sleeping consumers
+        if (blockedConsumers > 0) {
+            blockingLock.lock();
+            try {
+                published.signalAll();
+            } finally {
+                blockingLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Gets the lowest sequence read by any consumer, or the given default if there are none.
+     */
+    private long minimumSequence(long defaultSequence) {
+        long minimum = defaultSequence;
+        for (Consumer consumer : consumers) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * A preallocated event, overwritten each time the ring wraps around.
+     */
+    private static final class Slot {
+        private String deviceName;
+        private boolean status;
+        private String message;
+        private boolean single;
+        private boolean endOfBatch;
+    }
+
+    /**
+     * Delivers events to one observer from its own thread and sequence.
+     */
+    private final class Consumer {
+        private final BatchObserver observer;
+        private final AtomicLong sequence; // Highest sequence this consumer has read
+        private final Thread thread;
+        private volatile long stopAt = Long.MAX_VALUE;
+        private NotificationBatch pending;
+
+        private Consumer(BatchObserver observer, long startAfter) {
+            this.observer = observer;
+            this.sequence = new AtomicLong(startAfter);
+            this.thread = new Thread(this::run, "event-bus-" + observer.getClass().getSimpleName());
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Asks the consumer to stop after reading the given sequence and waits for it to finish.
+         * Called from the consumer's own thread (an observer unsubscribing itself), it does not
+         * wait: the thread finishes the remaining events once the observer returns.
+         */
+        private void stop(long lastSequence) {
+            stopAt = lastSequence;
+            signalAll();
+            if (Thread.currentThread() == thread) {
+                return;
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void run() {
+            long next = sequence.get() + 1;
+            while (next <= stopAt) {
+                if (!waitFor(next)) {
+                    continue;
+                }
+                // Read every event that is already available in one go
+                long last = next;
+                long limit = Math.min(cursor.get(), stopAt);
+                while (last < limit && isAvailable(last + 1)) {
+                    last++;
+                }
+                for (long s = next; s <= last; s++) {
+                    deliver(slots[(int) s & mask]);
+                }
+                sequence.lazySet(last);
+                next = last + 1;
+            }
+        }
+
+        /**
+         * Waits until the given sequence is published.
+         * @return true once it is available, false if the consumer should re-check whether to stop.
+         */
+        private boolean waitFor(long target) {
+            int tries = 0;
+            while (!isAvailable(target)) {
+                if (target > stopAt) {
+                    return false;
+                }
+                switch (waitStrategy) {
+                    case BUSY_SPIN -> Thread.onSpinWait();
+                    case YIELDING -> {
+                        if (tries++ < SPIN_TRIES) {
+                            Thread.onSpinWait();
+                        } else {
+                            Thread.yield();
+                        }
+                    }
+                    case SLEEPING -> {
+                        if (tries < SPIN_TRIES) {
+                            Thread.onSpinWait();
+                        } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+                            Thread.yield();
+                        } else {
+                            LockSupport.parkNanos(SLEEP_NANOS);
+                        }
+                        tries++;
+                    }
+                    case BLOCKING -> blockUntilPublished(target);
+                }
+            }
+            return true;
+        }
+
+        private void blockUntilPublished(long target) {
+            blockingLock.lock();
+            try {
+                blockedConsumers++;
+                try {
+                    while (!isAvailable(target) && target <= stopAt) {
+                        published.await();
+                    }
+                } finally {
+                    blockedConsumers--;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                blockingLock.unlock();
+            }
+        }
+
+        private void signalAll() {
+            blockingLock.lock();
+            try {
+                published.signalAll();
+            } finally {
+                blockingLock.unlock();
+            }
+        }
+
+        /**
+         * Hands one event to the observer, collecting batch events until the end of their batch.
+         */
+        private void deliver(Slot slot) {
+            try {
+                if (slot.single) {
+                    observer.update(slot.deviceName, slot.status, slot.message);
+                    return;
+                }
+                if (pending == null) {
+                    pending = new NotificationBatch(slot.message, 16);
+                }
+                pending.add(slot.deviceName, slot.status);
+                if (slot.endOfBatch) {
+                    NotificationBatch batch = pending;
+                    pending = null;
+                    observer.updateBatch(batch);
+                }
+            } catch (RuntimeException e) {
+                pending = null;
+                ConsoleOutput.error("Observer {} failed: {}", observer.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+}
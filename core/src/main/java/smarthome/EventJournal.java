@@ -0,0 +1,293 @@
+package smarthome;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary journal implementation of the BatchObserver interface.
+ * Appends every device state change as a fixed-size record to memory-mapped
+ * segment files, so history can be scanned and replayed much faster than
+ * parsing the text log.
+ *
+ * Journal directory layout:
+ * <ul>
+ *   <li>{@code dictionary.dat} - device names and messages, each interned to an int id.</li>
+ *   <li>{@code segment-NNNNNNNN.journal} - a header followed by {@value #RECORD_SIZE}-byte records:
+ *       epoch nanos (long), device id (int), status bit and message code (int).</li>
+ * </ul>
+ * A segment is rolled over to the next file once it is full. Records are never
+ * written with a zero timestamp, so the first zero timestamp marks the end of a segment.
+ * A new dictionary entry is forced to disk before the first record that uses it, and
+ * an entry torn by a crash is cut off when the journal is reopened.
+ */
+public class EventJournal implements BatchObserver, AutoCloseable {
+    static final int MAGIC = 0x53484A31; // "SHJ1"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 16;
+    static final int STATUS_BIT = 0x80000000;
+    static final byte KIND_DEVICE = 0;
+    static final byte KIND_MESSAGE = 1;
+    static final String DICTIONARY_FILE = "dictionary.dat";
+    private static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final Map<String, Integer> deviceIds;
+    private final Map<String, Integer> messageCodes;
+    private final FileChannel dictionary;
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private long recordCount;
+    private boolean closed;
+
+    /**
+     * Opens a journal in the given directory with 64 MiB segments.
+     * @param directory The journal directory, created if it does not exist.
+     * @throws IOException if the journal cannot be opened.
+     */
+    public EventJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens a journal in the given directory.
+     * An existing journal is reopened and appended to.
+     * @param directory The journal directory, created if it does not exist.
+     * @param segmentSize The size of each segment file in bytes.
+     * @throws IOException if the journal cannot be opened.
+     * @throws IllegalArgumentException if the segment cannot hold at least one record.
+     */
+    public EventJournal(Path directory, long segmentSize) throws IOException {
+        if (segmentSize < HEADER_SIZE + RECORD_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize - (segmentSize - HEADER_SIZE) % RECORD_SIZE;
+        this.deviceIds = new HashMap<>();
+        this.messageCodes = new HashMap<>();
+
+        Files.createDirectories(directory);
+        long dictionaryLength = loadDictionary(directory,
+                (kind, id, text) -> (kind == KIND_DEVICE ? deviceIds : messageCodes).put(text, id));
+        this.dictionary = FileChannel.open(directory.resolve(DICTIONARY_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Drop a torn entry, so that new entries follow the last one that can be read back
+        dictionary.truncate(dictionaryLength);
+        dictionary.position(dictionaryLength);
+
+        int lastSegment = findLastSegment(directory);
+        openSegment(Math.max(lastSegment, 0));
+        seekToEnd();
+    }
+
+    @Override
+    public synchronized void update(String deviceName, boolean status, String message) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        Instant now = Instant.now();
+        append(now.getEpochSecond() * 1_000_000_000L + now.getNano(), deviceName, status, message);
+    }
+
+    @Override
+    public synchronized void updateBatch(NotificationBatch batch) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        Instant now = Instant.now();
+        long epochNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        for (int i = 0; i < batch.size(); i++) {
+            append(epochNanos, batch.getDeviceName(i), batch.getStatus(i), batch.getMessage());
+        }
+    }
+
+    /**
+     * Appends a record with an explicit timestamp.
+     * @param epochNanos The event time in nanoseconds since the epoch.
+     * @param deviceName The name of the device that changed.
+     * @param status The new status of the device.
+     * @param message Additional information about the state change.
+     */
+    public synchronized void append(long epochNanos, String deviceName, boolean status, String message) {
+        if (epochNanos == 0) {
+            epochNanos = 1; // Zero is reserved as the end-of-segment marker
+        }
+        try {
+            int deviceId = intern(deviceIds, KIND_DEVICE, deviceName);
+            int messageCode = intern(messageCodes, KIND_MESSAGE, message);
+
+            if (segment.remaining() < RECORD_SIZE) {
+                openSegment(segmentIndex + 1);
+            }
+            segment.putLong(epochNanos);
+            segment.putInt(deviceId);
+            segment.putInt(status ? messageCode | STATUS_BIT : messageCode);
+            recordCount++;
+        } catch (IOException e) {
+            ConsoleOutput.error("Error writing to event journal: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the number of records in the journal, including those from earlier sessions.
+     * @return The total record count.
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Gets the directory this journal writes to.
+     * @return The journal directory.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Forces written records and dictionary entries to disk.
+     * @throws IOException if the data cannot be written.
+     */
+    public synchronized void force() throws IOException {
+        segment.force();
+        dictionary.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        force();
+        dictionary.close();
+        closed = true;
+    }
+
+    /**
+     * Looks up the id of a name or message, assigning and persisting a new one if needed.
+     * A new entry is forced to disk before it is returned, so no record on disk can
+     * reference an id that the dictionary lost in a crash.
+     */
+    private int intern(Map<String, Integer> ids, byte kind, String text) throws IOException {
+        Integer id = ids.get(text);
+        if (id != null) {
+            return id;
+        }
+        int newId = ids.size();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(1 + 4 + 4 + bytes.length);
+        entry.put(kind).putInt(newId).putInt(bytes.length).put(bytes).flip();
+        while (entry.hasRemaining()) {
+            dictionary.write(entry);
+        }
+        dictionary.force(false);
+        ids.put(text, newId);
+        return newId;
+    }
+
+    /**
+     * Maps the segment file with the given index, creating and initializing it if needed.
+     */
+    private void openSegment(int index) throws IOException {
+        Path file = segmentPath(directory, index);
+        boolean existing = Files.exists(file);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = existing ? channel.size() : segmentSize;
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        if (!existing) {
+            segment.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_SIZE).putInt(index);
+        } else if (segment.getInt(0) != MAGIC) {
+            throw new IOException("Not a journal segment: " + file);
+        }
+        segment.position(HEADER_SIZE);
+        segmentIndex = index;
+    }
+
+    /**
+     * Positions the current segment after its last record and counts all existing records.
+     */
+    private void seekToEnd() throws IOException {
+        recordCount = 0;
+        for (int index = 0; index < segmentIndex; index++) {
+            recordCount += (Files.size(segmentPath(directory, index)) - HEADER_SIZE) / RECORD_SIZE;
+        }
+        int position = HEADER_SIZE;
+        while (position + RECORD_SIZE <= segment.limit() && segment.getLong(position) != 0) {
+            position += RECORD_SIZE;
+            recordCount++;
+        }
+        segment.position(position);
+    }
+
+    /**
+     * Gets the path of the segment file with the given index.
+     * @param directory The journal directory.
+     * @param index The segment index.
+     * @return The segment path.
+     */
+    static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format("segment-%08d.journal", index));
+    }
+
+    /**
+     * Finds the highest segment index present in a journal directory.
+     * @param directory The journal directory.
+     * @return The highest segment index, or -1 if there are no segments.
+     */
+    static int findLastSegment(Path directory) {
+        int index = -1;
+        while (Files.exists(segmentPath(directory, index + 1))) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Reads all entries of a journal dictionary file, up to the first entry that is
+     * incomplete or malformed, as a write torn by a crash leaves it.
+     * @param directory The journal directory.
+     * @param consumer Receives each entry in the order it was written.
+     * @return The length in bytes of the entries that were read.
+     * @throws IOException if the dictionary cannot be read.
+     */
+    static long loadDictionary(Path directory, DictionaryConsumer consumer) throws IOException {
+        Path file = directory.resolve(DICTIONARY_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        while (buffer.remaining() >= 9) {
+            int start = buffer.position();
+            byte kind = buffer.get();
+            int id = buffer.getInt();
+            int length = buffer.getInt();
+            if ((kind != KIND_DEVICE && kind != KIND_MESSAGE) || id < 0 || length < 0 || buffer.remaining() < length) {
+                buffer.position(start);
+                break; // Torn write at the end of the file
+            }
+            String text = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            consumer.accept(kind, id, text);
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Receives dictionary entries while a journal dictionary is loaded.
+     */
+    interface DictionaryConsumer {
+        void accept(byte kind, int id, String text);
+    }
+}
@@ -0,0 +1,70 @@
+package smarthome;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Command line tool that exports a binary event journal in the text log format,
+ * one "[yyyy-MM-dd HH:mm:ss] name is ON - message" line per record. Ids missing from
+ * the journal's dictionary are written as "device #id" and "message #code".
+ *
+ * Usage: {@code java -cp core/target/smart-home-core-1.0-SNAPSHOT.jar smarthome.EventJournalExporter <journal-dir> [output-file]}.
+ * Without an output file the lines are written to standard output.
+ */
+public class EventJournalExporter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java -cp <jar> smarthome.EventJournalExporter <journal-dir> [output-file]");
+            System.exit(1);
+        }
+
+        EventJournalReader reader = new EventJournalReader(Path.of(args[0]));
+        if (args.length == 2) {
+            try (Writer out = Files.newBufferedWriter(Path.of(args[1]), StandardCharsets.UTF_8)) {
+                long count = export(reader, out);
+                System.out.println("Exported " + count + " events to " + args[1]);
+            }
+        } else {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            export(reader, out);
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes every journal record as a text log line.
+     * @param reader The journal to export.
+     * @param out The writer to write the lines to.
+     * @return The number of lines written.
+     * @throws IOException if the journal cannot be read or the output cannot be written.
+     */
+    public static long export(EventJournalReader reader, Writer out) throws IOException {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        try {
+            return reader.scan((epochNanos, deviceId, status, messageCode) -> {
+                String timestamp = dateFormat.format(new Date(epochNanos / 1_000_000));
+                String deviceName = reader.getDeviceName(deviceId);
+                String message = reader.getMessage(messageCode);
+                try {
+                    out.write(String.format("[%s] %s is %s - %s", timestamp,
+                            deviceName != null ? deviceName : "device #" + deviceId, status ? "ON" : "OFF",
+                            message != null ? message : "message #" + messageCode));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package smarthome;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads an event journal written by {@link EventJournal}.
+ * Records can be scanned as raw primitives or replayed into the observers of a subject.
+ * A journal copied while it was being written can have records whose ids are not in
+ * its dictionary yet; their names read as null and replay skips them.
+ */
+public class EventJournalReader {
+    private final Path directory;
+    private final List<String> deviceNames;
+    private final List<String> messages;
+
+    /**
+     * Receives journal records as primitives, without allocating per record.
+     */
+    public interface RecordVisitor {
+        /**
+         * Called once for every record, in the order the records were written.
+         * @param epochNanos The event time in nanoseconds since the epoch.
+         * @param deviceId The interned device id, see {@link #getDeviceName(int)}.
+         * @param status The status of the device.
+         * @param messageCode The interned message code, see {@link #getMessage(int)}.
+         */
+        void visit(long epochNanos, int deviceId, boolean status, int messageCode);
+    }
+
+    /**
+     * Opens the journal in the given directory for reading.
+     * @param directory The journal directory.
+     * @throws IOException if the dictionary cannot be read.
+     */
+    public EventJournalReader(Path directory) throws IOException {
+        this.directory = directory;
+        this.deviceNames = new ArrayList<>();
+        this.messages = new ArrayList<>();
+        EventJournal.loadDictionary(directory, (kind, id, text) -> {
+            List<String> target = kind == EventJournal.KIND_DEVICE ? deviceNames : messages;
+            while (target.size() <= id) {
+                target.add(null);
+            }
+            target.set(id, text);
+        });
+    }
+
+    /**
+     * Gets the device name for an interned device id.
+     * @param deviceId The device id from a record.
+     * @return The device name, or null if the dictionary has no entry for the id.
+     */
+    public String getDeviceName(int deviceId) {
+        return lookup(deviceNames, deviceId);
+    }
+
+    /**
+     * Gets the message text for an interned message code.
+     * @param messageCode The message code from a record.
+     * @return The message text, or null if the dictionary has no entry for the code.
+     */
+    public String getMessage(int messageCode) {
+        return lookup(messages, messageCode);
+    }
+
+    /**
+     * Visits every record in the journal.
+     * @param visitor The visitor to call for each record.
+     * @return The number of records visited.
+     * @throws IOException if a segment cannot be read.
+     */
+    public long scan(RecordVisitor visitor) throws IOException {
+        return scan(Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visits the records whose timestamps fall in the given range.
+     * @param fromNanos The earliest timestamp to include, in nanoseconds since the epoch.
+     * @param toNanos The latest timestamp to include, in nanoseconds since the epoch.
+     * @param visitor The visitor to call for each matching record.
+     * @return The number of records visited.
+     * @throws IOException if a segment cannot be read.
+     */
+    public long scan(long fromNanos, long toNanos, RecordVisitor visitor) throws IOException {
+        long visited = 0;
+        int lastSegment = EventJournal.findLastSegment(directory);
+        for (int index = 0; index <= lastSegment; index++) {
+            MappedByteBuffer segment = mapSegment(index);
+            int limit = segment.limit() - EventJournal.RECORD_SIZE;
+            for (int position = EventJournal.HEADER_SIZE; position <= limit; position += EventJournal.RECORD_SIZE) {
+                long epochNanos = segment.getLong(position);
+                if (epochNanos == 0) {
+                    break;
+                }
+                if (epochNanos < fromNanos || epochNanos > toNanos) {
+                    continue;
+                }
+                int deviceId = segment.getInt(position + 8);
+                int codeAndStatus = segment.getInt(position + 12);
+                visitor.visit(epochNanos, deviceId, (codeAndStatus & EventJournal.STATUS_BIT) != 0,
+                        codeAndStatus & ~EventJournal.STATUS_BIT);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Replays every record into the observers of the given subject, for example
+     * to rebuild an observer's state from the history kept in the journal.
+     * Records whose device or message is missing from the dictionary are skipped.
+     * @param subject The subject whose observers should receive the events.
+     * @return The number of records replayed.
+     * @throws IOException if a segment cannot be read.
+     */
+    public long replay(Subject subject) throws IOException {
+        long[] skipped = new long[1];
+        long visited = scan((epochNanos, deviceId, status, messageCode) -> {
+            String deviceName = getDeviceName(deviceId);
+            String message = getMessage(messageCode);
+            if (deviceName == null || message == null) {
+                skipped[0]++;
+                return;
+            }
+            subject.notifyObservers(deviceName, status, message);
+        });
+        return visited - skipped[0];
+    }
+
+    /**
+     * Gets a dictionary entry by id.
+     * @return The entry, or null if there is none.
+     */
+    private static String lookup(List<String> entries, int id) {
+        return id >= 0 && id < entries.size() ? entries.get(id) : null;
+    }
+
+    /**
+     * Maps a segment file read-only and checks its header.
+     */
+    private MappedByteBuffer mapSegment(int index) throws IOException {
+        Path file = EventJournal.segmentPath(directory, index);
+        MappedByteBuffer segment;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (segment.getInt(0) != EventJournal.MAGIC || segment.getShort(4) != EventJournal.VERSION) {
+            throw new IOException("Unsupported journal segment: " + file);
+        }
+        return segment;
+    }
+}
@@ -0,0 +1,108 @@
+package smarthome;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent-hash ring that assigns homes to cluster nodes.
+ *
+ * Every node is placed on the ring at a number of pseudo-random points (virtual
+ * nodes), and a home belongs to the first node point at or after the home's hash.
+ * Adding or removing a node therefore only moves the homes next to that node's
+ * points, about 1/n of all homes, and the virtual nodes keep the shares even.
+ * Changes return a new ring, so routers can swap rings without locking lookups.
+ */
+final class HashRing {
+    private final int virtualNodes;
+    private final NavigableMap<Long, String> points;
+    private final Set<String> nodes;
+
+    /**
+     * Creates an empty ring.
+     * @param virtualNodes The number of points each node gets on the ring.
+     * @throws IllegalArgumentException if the number of virtual nodes is not positive.
+     */
+    HashRing(int virtualNodes) {
+        this(virtualNodes, new TreeMap<>(), new TreeSet<>());
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Virtual node count must be positive: " + virtualNodes);
+        }
+    }
+
+    private HashRing(int virtualNodes, NavigableMap<Long, String> points, Set<String> nodes) {
+        this.virtualNodes = virtualNodes;
+        this.points = points;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Returns a ring with one more node.
+     * @param node The node id.
+     * @return The new ring.
+     */
+    HashRing with(String node) {
+        TreeMap<Long, String> copy = new TreeMap<>(points);
+        for (int i = 0; i < virtualNodes; i++) {
+            copy.put(hash(node + "#" + i), node);
+        }
+        Set<String> copyNodes = new TreeSet<>(nodes);
+        copyNodes.add(node);
+        return new HashRing(virtualNodes, copy, copyNodes);
+    }
+
+    /**
+     * Returns a ring without a node.
+     * @param node The node id.
+     * @return The new ring.
+     */
+    HashRing without(String node) {
+        TreeMap<Long, String> copy = new TreeMap<>(points);
+        copy.values().removeIf(node::equals);
+        Set<String> copyNodes = new TreeSet<>(nodes);
+        copyNodes.remove(node);
+        return new HashRing(virtualNodes, copy, copyNodes);
+    }
+
+    /**
+     * Gets the node a home belongs to.
+     * @param homeId The home id.
+     * @return The owning node's id, or null if the ring is empty.
+     */
+    String ownerOf(String homeId) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = points.ceilingEntry(hash(homeId));
+        return entry != null ? entry.getValue() : points.firstEntry().getValue();
+    }
+
+    /**
+     * Gets the nodes on the ring.
+     * @return The node ids, sorted.
+     */
+    Set<String> getNodes() {
+        return Collections.unmodifiableSet(nodes);
+    }
+
+    /**
+     * Hashes a key with 64-bit FNV-1a followed by the MurmurHash3 finalizer,
+     * which spreads similar keys such as "home-1" and "home-2" over the whole ring.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
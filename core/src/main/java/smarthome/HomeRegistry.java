@@ -0,0 +1,267 @@
+package smarthome;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Hosts many independent homes in one process, each with its own controller.
+ *
+ * Homes are partitioned by id onto a fixed set of shards. Each shard is a single
+ * thread with its own queue, and {@link #submit(String, Function)} runs a command on
+ * the shard of its home, so the commands of one home run one at a time, in order,
+ * and never contend with each other for device locks. A busy or slow home only
+ * delays the other homes on its shard; homes on other shards are not affected.
+ *
+ * The default home, {@link SmartHomeController#getInstance()}, is registered in every
+ * registry as {@value #DEFAULT_HOME_ID}. The shared registry from {@link #getInstance()}
+ * has one shard per processor unless the system property {@code smarthome.shards}
+ * says otherwise.
+ */
+public class HomeRegistry implements AutoCloseable {
+    /**
+     * The id of the default home.
+     */
+    public static final String DEFAULT_HOME_ID = "default";
+
+    private final ConcurrentMap<String, SmartHomeController> homes = new ConcurrentHashMap<>();
+    private final Shard[] shards;
+
+    /**
+     * Lazily creates the shared registry.
+     */
+    private static class InstanceHolder {
+        private static final HomeRegistry INSTANCE = new HomeRegistry(
+                Integer.getInteger("smarthome.shards", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Creates a registry with its own shard threads.
+     * @param shardCount The number of shards.
+     * @throws IllegalArgumentException if the shard count is not positive.
+     */
+    public HomeRegistry(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+        homes.put(DEFAULT_HOME_ID, SmartHomeController.getInstance());
+    }
+
+    /**
+     * Gets the shared registry.
+     * @return The registry shared by the whole process.
+     */
+    public static HomeRegistry getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Creates a new, empty home.
+     * @param homeId The id of the home.
+     * @return The home's controller.
+     * @throws IllegalArgumentException if a home with that id already exists.
+     */
+    public SmartHomeController createHome(String homeId) {
+        SmartHomeController controller = new SmartHomeController(homeId);
+        if (homes.putIfAbsent(homeId, controller) != null) {
+            throw new IllegalArgumentException("Home already exists: " + homeId);
+        }
+        ConsoleOutput.debug("Home created: {}", homeId);
+        return controller;
+    }
+
+    /**
+     * Gets a home, creating it if it does not exist yet.
+     * @param homeId The id of the home.
+     * @return The home's controller.
+     */
+    public SmartHomeController getOrCreateHome(String homeId) {
+        return homes.computeIfAbsent(homeId, SmartHomeController::new);
+    }
+
+    /**
+     * Gets a home.
+     * @param homeId The id of the home.
+     * @return The home's controller, or null if not found.
+     */
+    public SmartHomeController getHome(String homeId) {
+        return homes.get(homeId);
+    }
+
+    /**
+     * Removes a home from the registry. Commands already queued for it still run.
+     * The default home cannot be removed.
+     * @param homeId The id of the home.
+     * @return true if the home was removed, false if it didn't exist.
+     * @throws IllegalArgumentException if the id is the default home's.
+     */
+    public boolean removeHome(String homeId) {
+        if (DEFAULT_HOME_ID.equals(homeId)) {
+            throw new IllegalArgumentException("The default home cannot be removed");
+        }
+        return homes.remove(homeId) != null;
+    }
+
+    /**
+     * Gets the ids of all homes.
+     * @return A read-only live view of the home ids.
+     */
+    public Set<String> getHomeIds() {
+        return Collections.unmodifiableSet(homes.keySet());
+    }
+
+    /**
+     * Gets the number of shards.
+     * @return The shard count.
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Gets the shard a home's commands run on.
+     * The shard depends only on the id and the shard count, so a home keeps its shard.
+     * @param homeId The id of the home.
+     * @return The shard index, from 0 to {@link #getShardCount()} - 1.
+     */
+    public int shardOf(String homeId) {
+        int hash = homeId.hashCode();
+        hash ^= hash >>> 16; // Mix the high bits in, as HashMap does
+        return Math.floorMod(hash * 0x9E3779B9, shards.length);
+    }
+
+    /**
+     * Runs a command against a home on the home's shard thread.
+     * @param homeId The id of the home.
+     * @param command The command, given the home's controller.
+     * @param <T> The type of the command's result.
+     * @return A future completed with the command's result; an unknown home completes
+     *         exceptionally with IllegalArgumentException, and a closed registry with
+     *         RejectedExecutionException.
+     */
+    public <T> CompletableFuture<T> submit(String homeId, Function<SmartHomeController, T> command) {
+        SmartHomeController controller = homes.get(homeId);
+        if (controller == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Home not found: " + homeId));
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            shards[shardOf(homeId)].execute(() -> {
+                try {
+                    future.complete(command.apply(controller));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Gets the statistics of every shard.
+     * Utilization is measured since the previous call, or since the registry was created.
+     * @return One entry per shard, in shard order.
+     */
+    public List<ShardStats> getShardStats() {
+        int[] homeCounts = new int[shards.length];
+        for (String homeId : homes.keySet()) {
+            homeCounts[shardOf(homeId)]++;
+        }
+        List<ShardStats> stats = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            stats.add(shard.stats(homeCounts[shard.index]));
+        }
+        return stats;
+    }
+
+    /**
+     * Runs the commands already queued and stops the shard threads.
+     * The homes are kept, but no more commands can be submitted.
+     */
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.shutdown();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * A snapshot of one shard's load.
+     * @param shard The shard index.
+     * @param homes The number of homes on the shard.
+     * @param queueDepth The number of commands waiting to run.
+     * @param completed The number of commands run since the registry was created.
+     * @param utilization The share of time the shard thread spent running commands
+     *                    since the previous snapshot, from 0 to 1.
+     */
+    public record ShardStats(int shard, int homes, int queueDepth, long completed, double utilization) {
+        @Override
+        public String toString() {
+            return String.format("shard %d: %d homes, queue %d, %d completed, %.1f%% busy",
+                    shard, homes, queueDepth, completed, utilization * 100);
+        }
+    }
+
+    /**
+     * A single-threaded executor that keeps track of the time it spends running commands.
+     */
+    private static final class Shard extends ThreadPoolExecutor {
+        private final int index;
+        private long taskStart; // Only touched by the shard thread
+        private volatile long busyNanos;
+        private long lastBusyNanos;
+        private long lastSampleNanos = System.nanoTime();
+
+        Shard(int index) {
+            super(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "smart-home-shard-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.index = index;
+        }
+
+        @Override
+        protected void beforeExecute(Thread thread, Runnable task) {
+            taskStart = System.nanoTime();
+        }
+
+        @Override
+        protected void afterExecute(Runnable task, Throwable error) {
+            busyNanos += System.nanoTime() - taskStart; // Single writer, so the update is not lost
+        }
+
+        synchronized ShardStats stats(int homes) {
+            long now = System.nanoTime();
+            long busy = busyNanos;
+            double utilization = now > lastSampleNanos
+                    ? Math.min(1.0, (double) (busy - lastBusyNanos) / (now - lastSampleNanos)) : 0;
+            lastBusyNanos = busy;
+            lastSampleNanos = now;
+            return new ShardStats(index, homes, getQueue().size(), getCompletedTaskCount(), utilization);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package smarthome;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes the binary snapshot of a home used by
+ * {@link SmartHomeController#saveSnapshot(Path)} and {@link SmartHomeController#restoreSnapshot(Path)}.
+ *
+ * File layout (all numbers big-endian):
+ * <ul>
+ *   <li>Header: magic "SHS1" (int), format version (short), device count (int).</li>
+ *   <li>One entry per device: name, decorator count (byte), one tag per decorator from
+ *       the outermost inwards with its settings, then the base device kind and state.</li>
+ *   <li>Room count (int), then per room: name, device count (int), device table indexes (int each).</li>
+ *   <li>CRC32 of everything before it (int).</li>
+ * </ul>
+ * Strings are stored as a length (int) followed by UTF-8 bytes.
+ *
+ * Pending motion sensor timers and the current automation mode are not part of the snapshot;
+ * a {@link CommandLog} checkpoint logs the mode next to it.
+ */
+final class HomeSnapshot {
+    static final int MAGIC = 0x53485331; // "SHS1"
+    static final short VERSION = 1;
+
+    private static final byte DECORATOR_ENERGY_SAVER = 1;
+    private static final byte DECORATOR_MOTION_SENSOR = 2;
+    private static final byte KIND_LIGHT = 1;
+    private static final byte KIND_AIR_CONDITIONER = 2;
+    private static final byte KIND_DOOR = 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final List<Device> devices;
+    private final Map<String, List<Device>> rooms;
+
+    private HomeSnapshot(List<Device> devices, Map<String, List<Device>> rooms) {
+        this.devices = devices;
+        this.rooms = rooms;
+    }
+
+    /**
+     * Gets the restored devices, in the order they were written.
+     * @return The restored devices.
+     */
+    List<Device> getDevices() {
+        return devices;
+    }
+
+    /**
+     * Gets the restored rooms.
+     * @return The devices of each room, keyed by room name.
+     */
+    Map<String, List<Device>> getRooms() {
+        return rooms;
+    }
+
+    /**
+     * Writes a snapshot of the given devices and rooms.
+     * The file is written next to the target, forced to disk and moved into place, and
+     * the directory is forced too, so a crash leaves either the old or the new snapshot.
+     * @param file The snapshot file.
+     * @param devices All devices of the home.
+     * @param rooms All rooms of the home.
+     * @throws IOException if the file cannot be written.
+     * @throws IllegalArgumentException if a device or decorator type cannot be stored.
+     */
+    static void write(Path file, Collection<Device> devices, Collection<Room> rooms) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(Channels.newOutputStream(channel), devices, rooms);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Forces a directory's entries to disk, so files created, renamed or deleted in it
+     * survive a power loss. Does nothing where directories cannot be opened, as on Windows.
+     * @param directory The directory.
+     * @throws IOException if the directory cannot be forced.
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the given devices and rooms to a stream, for example to hand a home over to another node.
+     * @param target The stream to write to; it is flushed but not closed.
+     * @param devices All devices of the home.
+     * @param rooms All rooms of the home.
+     * @throws IOException if the stream cannot be written.
+     * @throws IllegalArgumentException if a device or decorator type cannot be stored.
+     */
+    static void write(OutputStream target, Collection<Device> devices, Collection<Room> rooms) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(
+                new CheckedOutputStream(new BufferedOutputStream(target, BUFFER_SIZE), crc));
+        Map<Device, Integer> table = new IdentityHashMap<>(devices.size() * 2);
+        List<Device> ordered = new ArrayList<>(devices);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(ordered.size());
+        for (Device device : ordered) {
+            table.put(device, table.size());
+            writeDevice(out, device);
+        }
+
+        out.writeInt(rooms.size());
+        for (Room room : rooms) {
+            List<Integer> indexes = new ArrayList<>(room.getDevices().size());
+            for (Device device : room.getDevices()) {
+                Integer index = table.get(device);
+                if (index != null) { // Devices removed from the home but still in a room are dropped
+                    indexes.add(index);
+                }
+            }
+            writeString(out, room.getName());
+            out.writeInt(indexes.size());
+            for (int index : indexes) {
+                out.writeInt(index);
+            }
+        }
+
+        out.flush();
+        // The checksum itself is written past the checked stream
+        DataOutputStream trailer = new DataOutputStream(target);
+        trailer.writeInt((int) crc.getValue());
+        trailer.flush();
+    }
+
+    /**
+     * Reads a snapshot file in one pass over its bytes.
+     * @param file The snapshot file.
+     * @param store The store to keep device state in, or null to create standalone devices.
+     * @param scheduler The scheduler for restored motion sensors.
+     * @return The restored devices and rooms.
+     * @throws IOException if the file cannot be read, is corrupt, or has an unsupported version.
+     */
+    static HomeSnapshot read(Path file, DeviceStateStore store, Scheduler scheduler) throws IOException {
+        return read(Files.readAllBytes(file), file.toString(), store, scheduler);
+    }
+
+    /**
+     * Reads a snapshot from its bytes.
+     * @param bytes The snapshot, as written by {@link #write(OutputStream, Collection, Collection)}.
+     * @param file Where the bytes came from, for error messages.
+     * @param store The store to keep device state in, or null to create standalone devices.
+     * @param scheduler The scheduler for restored motion sensors.
+     * @return The restored devices and rooms.
+     * @throws IOException if the bytes are corrupt or have an unsupported version.
+     */
+    static HomeSnapshot read(byte[] bytes, String file, DeviceStateStore store, Scheduler scheduler) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.remaining() < 14 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a home snapshot: " + file);
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + buffer.getShort(4) + ": " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.limit() - 4);
+        if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)) {
+            throw new IOException("Snapshot checksum mismatch: " + file);
+        }
+        buffer.limit(buffer.limit() - 4).position(6);
+
+        try {
+            int deviceCount = buffer.getInt();
+            List<Device> devices = new ArrayList<>(deviceCount);
+            for (int i = 0; i < deviceCount; i++) {
+                devices.add(readDevice(buffer, store, scheduler));
+            }
+
+            int roomCount = buffer.getInt();
+            Map<String, List<Device>> rooms = new LinkedHashMap<>();
+            for (int i = 0; i < roomCount; i++) {
+                String name = readString(buffer);
+                int size = buffer.getInt();
+                List<Device> roomDevices = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    roomDevices.add(devices.get(buffer.getInt()));
+                }
+                rooms.put(name, roomDevices);
+            }
+            return new HomeSnapshot(devices, rooms);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * Writes one device with its decorator chain and state.
+     */
+    static void writeDevice(DataOutputStream out, Device device) throws IOException {
+        writeString(out, device.getName());
+        List<DeviceDecorator> decorators = new ArrayList<>();
+        Device base = device;
+        while (base instanceof DeviceDecorator decorator) {
+            decorators.add(decorator);
+            base = decorator.getDecoratedDevice();
+        }
+
+        out.writeByte(decorators.size());
+        for (DeviceDecorator decorator : decorators) {
+            switch (decorator) {
+                case EnergySaverDecorator energySaver -> {
+                    out.writeByte(DECORATOR_ENERGY_SAVER);
+                    out.writeBoolean(energySaver.isEnergySaverModeEnabled());
+                }
+                case MotionSensorDecorator motionSensor -> {
+                    out.writeByte(DECORATOR_MOTION_SENSOR);
+                    out.writeInt(motionSensor.getAutoOffDelay());
+                }
+                default -> throw new IllegalArgumentException(
+                        "Cannot snapshot decorator type: " + decorator.getClass().getName());
+            }
+        }
+
+        writeState(out, base);
+    }
+
+    /**
+     * Writes the kind and the absolute state of an undecorated device.
+     * @param out The stream to write to.
+     * @param base The device, without decorators.
+     * @throws IOException if the stream cannot be written.
+     * @throws IllegalArgumentException if the device type cannot be stored.
+     */
+    static void writeState(DataOutputStream out, Device base) throws IOException {
+        switch (base) {
+            case LightDevice light -> {
+                out.writeByte(KIND_LIGHT);
+                out.writeBoolean(light.isOn());
+                out.writeByte(light.getBrightness());
+            }
+            case AirConditionerDevice ac -> {
+                out.writeByte(KIND_AIR_CONDITIONER);
+                out.writeBoolean(ac.isOn());
+                out.writeByte(ac.getTemperature());
+                out.writeByte(AirConditioner.MODES.indexOf(ac.getMode()));
+            }
+            case DoorDevice door -> {
+                out.writeByte(KIND_DOOR);
+                out.writeBoolean(door.isOn());
+                out.writeBoolean(door.isLocked());
+            }
+            default -> throw new IllegalArgumentException(
+                    "Cannot snapshot device type: " + base.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads the kind and state written by {@link #writeState}.
+     * @param in The buffer to read from.
+     * @param name The device name, for error messages.
+     * @return The state.
+     * @throws IOException if the kind is unknown.
+     */
+    static DeviceState readState(ByteBuffer in, String name) throws IOException {
+        byte kind = in.get();
+        boolean on = in.get() != 0;
+        return switch (kind) {
+            case KIND_LIGHT -> new DeviceState(kind, on, in.get(), 0, false);
+            case KIND_AIR_CONDITIONER -> new DeviceState(kind, on, in.get(), in.get(), false);
+            case KIND_DOOR -> new DeviceState(kind, on, 0, 0, in.get() != 0);
+            default -> throw new IOException("Unknown device kind " + kind + " for " + name);
+        };
+    }
+
+    /**
+     * Reads one device and rebuilds its decorator chain from the inside out.
+     */
+    static Device readDevice(ByteBuffer in, DeviceStateStore store, Scheduler scheduler) throws IOException {
+        String name = readString(in);
+        int decoratorCount = in.get();
+        byte[] tags = new byte[decoratorCount];
+        int[] settings = new int[decoratorCount];
+        for (int i = 0; i < decoratorCount; i++) {
+            tags[i] = in.get();
+            settings[i] = switch (tags[i]) {
+                case DECORATOR_ENERGY_SAVER -> in.get();
+                case DECORATOR_MOTION_SENSOR -> in.getInt();
+                default -> throw new IOException("Unknown decorator tag " + tags[i] + " for " + name);
+            };
+        }
+
+        DeviceState state = readState(in, name);
+        Device device = switch (state.kind()) {
+            case KIND_LIGHT -> {
+                if (store == null) {
+                    yield new Light(name, state.on(), state.level());
+                }
+                StoredLight light = store.newLight(name);
+                store.setOn(light.getStoreId(), state.on());
+                store.setBrightness(light.getStoreId(), state.level());
+                yield light;
+            }
+            case KIND_AIR_CONDITIONER -> {
+                if (store == null) {
+                    yield new AirConditioner(name, state.on(), state.level(), state.mode());
+                }
+                StoredAirConditioner ac = store.newAirConditioner(name);
+                store.setOn(ac.getStoreId(), state.on());
+                store.setTemperature(ac.getStoreId(), state.level());
+                store.setModeOrdinal(ac.getStoreId(), state.mode());
+                yield ac;
+            }
+            default -> {
+                if (store == null) {
+                    yield new Door(name, state.on(), state.locked());
+                }
+                StoredDoor door = store.newDoor(name);
+                store.setOn(door.getStoreId(), state.on());
+                store.setLocked(door.getStoreId(), state.locked());
+                yield door;
+            }
+        };
+
+        for (int i = decoratorCount - 1; i >= 0; i--) {
+            device = tags[i] == DECORATOR_ENERGY_SAVER
+                    ? new EnergySaverDecorator(device, settings[i] != 0)
+                    : new MotionSensorDecorator(device, settings[i], scheduler);
+        }
+        return device;
+    }
+
+    /**
+     * The absolute state of one undecorated device, as stored in snapshots and command log records.
+     * @param kind The device kind.
+     * @param on Whether the device is on (for a door, open).
+     * @param level The brightness of a light or the temperature of an air conditioner.
+     * @param mode The air conditioner mode, as an index into {@link AirConditioner#MODES}.
+     * @param locked Whether a door is locked.
+     */
+    record DeviceState(byte kind, boolean on, int level, int mode, boolean locked) {
+        /**
+         * Sets a device to this state, whatever its state was before.
+         * @param base The device, without decorators, of the same kind.
+         * @throws IllegalArgumentException if the device is of another kind.
+         */
+        void applyTo(Device base) {
+            switch (base) {
+                case LightDevice light when kind == KIND_LIGHT -> {
+                    light.setBrightness(level);
+                    setOn(light);
+                }
+                case AirConditionerDevice ac when kind == KIND_AIR_CONDITIONER -> {
+                    ac.setTemperature(level);
+                    ac.setMode(AirConditioner.MODES.get(mode));
+                    setOn(ac);
+                }
+                case DoorDevice door when kind == KIND_DOOR -> {
+                    if (!locked) {
+                        door.unlock();
+                    }
+                    setOn(door);
+                    if (locked) {
+                        door.lock();
+                    }
+                }
+                default -> throw new IllegalArgumentException(
+                        base.getName() + " is not of device kind " + kind);
+            }
+        }
+
+        private void setOn(Device base) {
+            if (on) {
+                base.turnOn();
+            } else {
+                base.turnOff();
+            }
+        }
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
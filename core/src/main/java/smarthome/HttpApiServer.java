@@ -0,0 +1,679 @@
+package smarthome;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP front end for a {@link SmartHomeController} on the JDK's built-in HTTP server,
+ * with every exchange handled on its own virtual thread.
+ *
+ * JSON resources:
+ * <ul>
+ *   <li>{@code GET /devices} and {@code GET /devices/<name>} - device state: name, type
+ *       (light, airconditioner or door, as in {@link DeviceFactory}), on,
+ *       and brightness, temperature and mode, or locked, depending on the type.</li>
+ *   <li>{@code POST /devices/<name>/<action>} where the action is {@code on}, {@code off},
+ *       {@code lock}, {@code unlock}, {@code brightness?value=N}, {@code temperature?value=N}
+ *       or {@code ac-mode?value=COOL|HEAT|FAN} - replies with the new device state.</li>
+ *   <li>{@code GET /rooms}, {@code GET /rooms/<name>} and {@code POST /rooms/<name>/on|off}.</li>
+ *   <li>{@code GET /mode}, {@code PUT /mode/<name>} with a built-in mode name, and {@code DELETE /mode}.</li>
+ * </ul>
+ * Unknown devices and rooms answer 404, bad actions and values 400, and errors carry
+ * an {@code {"error": ...}} body.
+ *
+ * {@code GET /events} is a Server-Sent Events stream of observer notifications, one
+ * {@code device} event per state change with the device, its new state and the message.
+ * Instead of polling, a client reads the state once and then follows the stream.
+ * Each subscriber has a bounded buffer of events; a subscriber that falls so far behind
+ * that its buffer fills is sent an {@code overflow} event and disconnected, so it should
+ * reconnect and read the state again. Notifications are encoded once, whatever the
+ * number of subscribers, and an idle subscriber costs a parked virtual thread and its
+ * buffer; a comment line is sent every {@link #HEARTBEAT_SECONDS} seconds to find
+ * dead clients. Beyond {@code maxSubscribers}, new streams are refused with 503.
+ */
+public class HttpApiServer implements AutoCloseable {
+    /**
+     * The default limit on open event streams.
+     */
+    public static final int DEFAULT_MAX_SUBSCRIBERS = 10_000;
+
+    /**
+     * The default number of events a subscriber may have waiting to be written.
+     */
+    public static final int DEFAULT_SUBSCRIBER_BUFFER = 256;
+
+    /**
+     * The time between heartbeat comments on an idle event stream.
+     */
+    static final int HEARTBEAT_SECONDS = 15;
+
+    private static final int BACKLOG = 1024;
+    private static final byte[] CONNECTED = ascii(": connected\n\n");
+    private static final byte[] HEARTBEAT = ascii(": heartbeat\n\n");
+    private static final Events OVERFLOW = new Events(ascii("event: overflow\ndata: {}\n\n"), 0);
+    private static final Events END = new Events(new byte[0], 0); // Ends a stream when the server closes
+
+    static {
+        // The JDK server writes headers and body separately; without this, Nagle's algorithm
+        // holds the body back until the client's delayed ACK, about 40 ms per response.
+        // Read once, when the first HttpServer is created, so set it before that.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final SmartHomeController controller;
+    private final int maxSubscribers;
+    private final int subscriberBuffer;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AutomationMode[] modes = {new NightMode(), new MovieMode(), new VacationMode()};
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final LongAdder publishedEvents = new LongAdder();
+    private final LongAdder deliveredEvents = new LongAdder();
+    private final LongAdder overflowedSubscribers = new LongAdder();
+    private final EventFanout eventFanout = new EventFanout();
+    private volatile boolean running = true;
+
+    /**
+     * Starts a server for a home on the loopback interface, with the default limits.
+     * @param controller The home to serve.
+     * @param port The port, or 0 to pick a free one.
+     * @throws IOException if the port cannot be bound.
+     */
+    public HttpApiServer(SmartHomeController controller, int port) throws IOException {
+        this(controller, new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                DEFAULT_MAX_SUBSCRIBERS, DEFAULT_SUBSCRIBER_BUFFER);
+    }
+
+    /**
+     * Starts a server for a home.
+     * @param controller The home to serve.
+     * @param address The address to bind.
+     * @param maxSubscribers The most event streams open at once.
+     * @param subscriberBuffer The most events a subscriber may have waiting before it is disconnected.
+     * @throws IOException if the address cannot be bound.
+     * @throws IllegalArgumentException if a limit is not positive.
+     */
+    public HttpApiServer(SmartHomeController controller, InetSocketAddress address,
+                         int maxSubscribers, int subscriberBuffer) throws IOException {
+        if (maxSubscribers <= 0 || subscriberBuffer <= 0) {
+            throw new IllegalArgumentException("Limits must be positive: " + maxSubscribers + ", " + subscriberBuffer);
+        }
+        this.controller = controller;
+        this.maxSubscribers = maxSubscribers;
+        this.subscriberBuffer = subscriberBuffer;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.server.setExecutor(executor);
+        this.server.createContext("/devices", exchange -> handle(exchange, this::devices));
+        this.server.createContext("/rooms", exchange -> handle(exchange, this::rooms));
+        this.server.createContext("/mode", exchange -> handle(exchange, this::mode));
+        this.server.createContext("/events", this::events);
+        controller.registerObserver(eventFanout);
+        this.server.start();
+        ConsoleOutput.info("HTTP API listening on {}", getAddress());
+    }
+
+    /**
+     * Gets the address clients connect to.
+     * @return The bound address, with the actual port.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Gets the number of open event streams.
+     * @return The subscriber count.
+     */
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * Gets the number of notifications published to the event streams.
+     * @return The published event count, counted once however many subscribers received it.
+     */
+    public long getPublishedEventCount() {
+        return publishedEvents.sum();
+    }
+
+    /**
+     * Gets the number of events written to subscribers, counted once per subscriber.
+     * @return The delivered event count.
+     */
+    public long getDeliveredEventCount() {
+        return deliveredEvents.sum();
+    }
+
+    /**
+     * Gets the number of subscribers disconnected because their buffer filled.
+     * @return The overflowed subscriber count.
+     */
+    public long getOverflowedSubscriberCount() {
+        return overflowedSubscribers.sum();
+    }
+
+    /**
+     * Ends every event stream and stops the server, waiting up to a second for
+     * requests in progress.
+     */
+    @Override
+    public void close() {
+        running = false;
+        controller.removeObserver(eventFanout);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.end(END);
+        }
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs a resource handler and turns its result or failure into the response.
+     */
+    private void handle(HttpExchange exchange, Resource resource) throws IOException {
+        try (exchange) {
+            Response response;
+            try {
+                String[] path = segments(exchange.getRequestURI().getRawPath());
+                response = resource.handle(exchange.getRequestMethod(), path, exchange.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                response = Response.error(400, e.getMessage());
+            } catch (RuntimeException e) {
+                ConsoleOutput.error("HTTP request failed: {}", String.valueOf(e));
+                response = Response.error(500, "Internal error");
+            }
+            if (response.status() == 405) {
+                exchange.getResponseHeaders().set("Allow", response.body());
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.status(), body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    /**
+     * {@code /devices}, {@code /devices/<name>} and {@code /devices/<name>/<action>}.
+     */
+    private Response devices(String method, String[] path, String query) {
+        if (path.length == 1) {
+            if (!method.equals("GET")) {
+                return Response.notAllowed("GET");
+            }
+            return Response.ok(devicesJson(controller.getAllDevices()));
+        }
+        String name = path[1];
+        if (path.length == 2) {
+            if (!method.equals("GET")) {
+                return Response.notAllowed("GET");
+            }
+            Device device = controller.getDevice(name);
+            return device == null ? Response.error(404, "Device not found: " + name) : Response.ok(deviceJson(device));
+        }
+        if (path.length > 3) {
+            return Response.error(404, "No such resource");
+        }
+        if (!method.equals("POST")) {
+            return Response.notAllowed("POST");
+        }
+        boolean found = switch (path[2]) {
+            case "on" -> controller.turnOnDevice(name);
+            case "off" -> controller.turnOffDevice(name);
+            case "lock" -> perform(name, ActionPlan.Operation.LOCK, 0);
+            case "unlock" -> perform(name, ActionPlan.Operation.UNLOCK, 0);
+            case "brightness" -> perform(name, ActionPlan.Operation.SET_BRIGHTNESS, intValue(query));
+            case "temperature" -> perform(name, ActionPlan.Operation.SET_TEMPERATURE, intValue(query));
+            case "ac-mode" -> {
+                int mode = AirConditioner.MODES.indexOf(value(query));
+                if (mode < 0) {
+                    throw new IllegalArgumentException("Unknown AC mode: " + value(query));
+                }
+                yield perform(name, ActionPlan.Operation.SET_MODE, mode);
+            }
+            default -> throw new IllegalArgumentException("Unknown action: " + path[2]);
+        };
+        Device device = found ? controller.getDevice(name) : null;
+        return device == null ? Response.error(404, "Device not found: " + name) : Response.ok(deviceJson(device));
+    }
+
+    private boolean perform(String deviceName, ActionPlan.Operation operation, int argument) {
+        return controller.performOperation(deviceName, operation, argument);
+    }
+
+    /**
+     * {@code /rooms}, {@code /rooms/<name>} and {@code /rooms/<name>/on|off}.
+     */
+    private Response rooms(String method, String[] path, String query) {
+        if (path.length == 1) {
+            if (!method.equals("GET")) {
+                return Response.notAllowed("GET");
+            }
+            StringBuilder json = new StringBuilder("[");
+            for (Room room : controller.getAllRooms()) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                roomJson(json, room);
+            }
+            return Response.ok(json.append(']').toString());
+        }
+        String name = path[1];
+        if (path.length == 2) {
+            if (!method.equals("GET")) {
+                return Response.notAllowed("GET");
+            }
+            Room room = controller.getRoom(name);
+            return room == null ? Response.error(404, "Room not found: " + name)
+                    : Response.ok(roomJson(new StringBuilder(), room).toString());
+        }
+        if (path.length > 3) {
+            return Response.error(404, "No such resource");
+        }
+        if (!method.equals("POST")) {
+            return Response.notAllowed("POST");
+        }
+        boolean found = switch (path[2]) {
+            case "on" -> controller.turnOnRoom(name);
+            case "off" -> controller.turnOffRoom(name);
+            default -> throw new IllegalArgumentException("Unknown action: " + path[2]);
+        };
+        Room room = found ? controller.getRoom(name) : null;
+        return room == null ? Response.error(404, "Room not found: " + name)
+                : Response.ok(roomJson(new StringBuilder(), room).toString());
+    }
+
+    /**
+     * {@code /mode} and {@code /mode/<name>}.
+     */
+    private Response mode(String method, String[] path, String query) {
+        if (path.length > 2) {
+            return Response.error(404, "No such resource");
+        }
+        if (path.length == 2) {
+            if (!method.equals("PUT")) {
+                return Response.notAllowed("PUT");
+            }
+            AutomationMode mode = modeNamed(path[1]);
+            if (mode == null) {
+                return Response.error(404, "Mode not found: " + path[1]);
+            }
+            controller.setAutomationMode(mode);
+        } else if (method.equals("DELETE")) {
+            controller.setAutomationMode(null);
+        } else if (!method.equals("GET")) {
+            return Response.notAllowed("GET, DELETE");
+        }
+        AutomationMode current = controller.getCurrentMode();
+        StringBuilder json = new StringBuilder("{\"mode\":");
+        if (current == null) {
+            json.append("null");
+        } else {
+            quote(json, current.getName());
+        }
+        json.append(",\"available\":[");
+        for (int i = 0; i < modes.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            quote(json, modes[i].getName());
+        }
+        return Response.ok(json.append("]}").toString());
+    }
+
+    /**
+     * Reuses one object per built-in mode, so every request shares the mode's cached plan.
+     */
+    private AutomationMode modeNamed(String name) {
+        for (AutomationMode mode : modes) {
+            if (mode.getName().equals(name)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@code GET /events}: streams events to one subscriber until it disconnects,
+     * overflows or the server closes. Runs on the exchange's virtual thread for the
+     * whole life of the stream.
+     */
+    private void events(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (subscriberCount.incrementAndGet() > maxSubscribers || !running) {
+                subscriberCount.decrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            Subscriber subscriber = new Subscriber(subscriberBuffer);
+            subscribers.add(subscriber);
+            try {
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                exchange.sendResponseHeaders(200, 0);
+                stream(subscriber, exchange.getResponseBody());
+            } catch (IOException e) {
+                ConsoleOutput.debug("Event stream closed: {}", e.getMessage());
+            } finally {
+                subscribers.remove(subscriber);
+                subscriberCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Writes a subscriber's events as they arrive, everything buffered in one flush.
+     */
+    private void stream(Subscriber subscriber, OutputStream body) throws IOException {
+        body.write(CONNECTED);
+        body.flush();
+        BlockingQueue<Events> events = subscriber.events;
+        while (true) {
+            Events event;
+            try {
+                event = events.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (event == null) {
+                body.write(HEARTBEAT);
+            }
+            int written = 0;
+            boolean last = false;
+            for (; event != null && !last; event = events.poll()) {
+                last = event == END || event == OVERFLOW;
+                body.write(event.sse());
+                written += event.count();
+            }
+            body.flush();
+            deliveredEvents.add(written);
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Offers an encoded event to every subscriber, disconnecting those whose buffer is full.
+     */
+    private void publish(Events event) {
+        publishedEvents.add(event.count());
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.events.offer(event)) {
+                subscribers.remove(subscriber);
+                subscriber.end(OVERFLOW);
+                overflowedSubscribers.increment();
+            }
+        }
+    }
+
+    private static void appendEvent(StringBuilder sse, String deviceName, boolean status, String message) {
+        sse.append("event: device\ndata: {\"device\":");
+        quote(sse, deviceName);
+        sse.append(",\"on\":").append(status).append(",\"message\":");
+        quote(sse, message);
+        sse.append("}\n\n");
+    }
+
+    private static String devicesJson(Collection<Device> devices) {
+        StringBuilder json = new StringBuilder("[");
+        for (Device device : devices) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            deviceJson(json, device);
+        }
+        return json.append(']').toString();
+    }
+
+    private static String deviceJson(Device device) {
+        return deviceJson(new StringBuilder(), device).toString();
+    }
+
+    private static StringBuilder deviceJson(StringBuilder json, Device device) {
+        Device base = DeviceDecorator.getBaseDevice(device);
+        json.append("{\"name\":");
+        quote(json, device.getName());
+        json.append(",\"type\":");
+        quote(json, typeName(base));
+        json.append(",\"on\":").append(device.isOn());
+        switch (base) {
+            case LightDevice light -> json.append(",\"brightness\":").append(light.getBrightness());
+            case AirConditionerDevice ac -> {
+                json.append(",\"temperature\":").append(ac.getTemperature()).append(",\"mode\":");
+                quote(json, ac.getMode());
+            }
+            case DoorDevice door -> json.append(",\"locked\":").append(door.isLocked());
+            default -> {
+            }
+        }
+        return json.append('}');
+    }
+
+    /**
+     * Gets the device type as clients see it, the same for standalone devices and store views.
+     */
+    private static String typeName(Device base) {
+        return switch (base) {
+            case LightDevice light -> "light";
+            case AirConditionerDevice ac -> "airconditioner";
+            case DoorDevice door -> "door";
+            default -> base.getClass().getSimpleName().toLowerCase(Locale.ROOT);
+        };
+    }
+
+    private static StringBuilder roomJson(StringBuilder json, Room room) {
+        json.append("{\"name\":");
+        quote(json, room.getName());
+        json.append(",\"devices\":[");
+        boolean first = true;
+        for (Device device : room.getDevices()) {
+            if (!first) {
+                json.append(',');
+            }
+            quote(json, device.getName());
+            first = false;
+        }
+        return json.append("]}");
+    }
+
+    /**
+     * Appends a string as a JSON string literal.
+     */
+    static void quote(StringBuilder json, String text) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Splits a raw path into its decoded segments, so names may hold escaped slashes and spaces.
+     */
+    private static String[] segments(String rawPath) {
+        String[] segments = rawPath.replaceAll("^/+|/+$", "").split("/+");
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = URLDecoder.decode(segments[i].replace("+", "%2B"), StandardCharsets.UTF_8);
+        }
+        return segments;
+    }
+
+    private static String value(String rawQuery) {
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                if (parameter.startsWith("value=")) {
+                    return URLDecoder.decode(parameter.substring("value=".length()), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        throw new IllegalArgumentException("Missing value parameter");
+    }
+
+    private static int intValue(String rawQuery) {
+        String value = value(rawQuery);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * A resource's answer to one request.
+     * @param status The HTTP status.
+     * @param body The JSON body, or for 405 the allowed methods.
+     */
+    private record Response(int status, String body) {
+        static Response ok(String json) {
+            return new Response(200, json);
+        }
+
+        static Response notAllowed(String allowed) {
+            return new Response(405, allowed);
+        }
+
+        static Response error(int status, String message) {
+            StringBuilder json = new StringBuilder("{\"error\":");
+            quote(json, message);
+            return new Response(status, json.append('}').toString());
+        }
+    }
+
+    /**
+     * One notification or batch, encoded once and shared by every subscriber.
+     * @param sse The encoded events.
+     * @param count The number of device events in it.
+     */
+    private record Events(byte[] sse, int count) {
+    }
+
+    @FunctionalInterface
+    private interface Resource {
+        Response handle(String method, String[] path, String rawQuery);
+    }
+
+    /**
+     * One event stream's buffer. Producers only offer, so a slow subscriber never
+     * blocks a command; once the buffer is full the subscriber is ended instead.
+     */
+    private static final class Subscriber {
+        private final BlockingQueue<Events> events;
+
+        Subscriber(int capacity) {
+            this.events = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * Discards the waiting events and queues the last thing the stream writes.
+         */
+        void end(Events last) {
+            events.clear();
+            events.offer(last);
+        }
+    }
+
+    /**
+     * Encodes each notification, or each batch as a run of events, once for every subscriber.
+     */
+    private final class EventFanout implements BatchObserver {
+        @Override
+        public void update(String deviceName, boolean status, String message) {
+            if (subscribers.isEmpty()) {
+                return;
+            }
+            StringBuilder sse = new StringBuilder(128);
+            appendEvent(sse, deviceName, status, message);
+            publish(new Events(sse.toString().getBytes(StandardCharsets.UTF_8), 1));
+        }
+
+        @Override
+        public void updateBatch(NotificationBatch batch) {
+            if (subscribers.isEmpty() || batch.isEmpty()) {
+                return;
+            }
+            StringBuilder sse = new StringBuilder(batch.size() * 96);
+            for (int i = 0; i < batch.size(); i++) {
+                appendEvent(sse, batch.getDeviceName(i), batch.getStatus(i), batch.getMessage());
+            }
+            publish(new Events(sse.toString().getBytes(StandardCharsets.UTF_8), batch.size()));
+        }
+    }
+
+    /**
+     * Serves the default home until the process is stopped.
+     * Options: {@code --port=N} (default 8080), {@code --max-subscribers=N},
+     * {@code --subscriber-buffer=N} and {@code --snapshot=FILE} to restore the home from a snapshot first.
+     * @param args The command-line options.
+     * @throws IOException if the snapshot cannot be read or the port cannot be bound.
+     * @throws InterruptedException if the main thread is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = 8080;
+        int maxSubscribers = DEFAULT_MAX_SUBSCRIBERS;
+        int subscriberBuffer = DEFAULT_SUBSCRIBER_BUFFER;
+        SmartHomeController controller = SmartHomeController.getInstance();
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--max-subscribers=")) {
+                maxSubscribers = Integer.parseInt(arg.substring("--max-subscribers=".length()));
+            } else if (arg.startsWith("--subscriber-buffer=")) {
+                subscriberBuffer = Integer.parseInt(arg.substring("--subscriber-buffer=".length()));
+            } else if (arg.startsWith("--snapshot=")) {
+                controller.restoreSnapshot(Path.of(arg.substring("--snapshot=".length())), null);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        new HttpApiServer(controller, new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                maxSubscribers, subscriberBuffer);
+        Thread.currentThread().join();
+    }
+}
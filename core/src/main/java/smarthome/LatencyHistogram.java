@@ -0,0 +1,207 @@
+package smarthome;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets.
+ *
+ * Values (normally nanoseconds) are grouped by their highest set bit, and each of those
+ * power-of-two ranges is split into {@value #SUB_BUCKETS} linear sub-buckets, so every
+ * recorded value is kept with a relative error of about 3% whatever its magnitude.
+ * Recording is one array index computation and one atomic increment, with no allocation;
+ * the maximum is only written when it grows. The mean is estimated from the bucket
+ * midpoints, with the same precision as the percentiles.
+ *
+ * Percentiles are read from a {@link Snapshot}. {@link #snapshotAndReset()} drains the
+ * counts bucket by bucket, so values recorded concurrently are counted in either the
+ * returned snapshot or the next one, never lost.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one value.
+     * @param value The value, for example a latency in nanoseconds. Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        long clamped = Math.max(value, 0);
+        counts.getAndIncrement(indexOf(clamped));
+        if (clamped > max.get()) {
+            max.accumulateAndGet(clamped, Math::max);
+        }
+    }
+
+    /**
+     * Records the time elapsed since a start time taken from {@link System#nanoTime()}.
+     * @param startNanos The start time.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Adds the values of a snapshot, for example to accumulate interval snapshots into a run total.
+     * @param snapshot The snapshot to add.
+     */
+    public void add(Snapshot snapshot) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (snapshot.counts[i] != 0) {
+                counts.getAndAdd(i, snapshot.counts[i]);
+            }
+        }
+        max.accumulateAndGet(snapshot.max, Math::max);
+    }
+
+    /**
+     * Copies the current counts without changing them.
+     * @return A snapshot of everything recorded so far.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, max.get());
+    }
+
+    /**
+     * Takes the current counts and starts over from zero.
+     * @return A snapshot of everything recorded since the last reset.
+     */
+    public Snapshot snapshotAndReset() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.getAndSet(i, 0);
+        }
+        return new Snapshot(copy, max.getAndSet(0));
+    }
+
+    /**
+     * Clears all counts.
+     */
+    public void reset() {
+        snapshotAndReset();
+    }
+
+    /**
+     * Gets the bucket index of a value.
+     * Values below {@value #SUB_BUCKETS} get a bucket each; above that, the index is the
+     * position of the highest set bit followed by the next {@code SUB_BUCKET_BITS} bits.
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Gets the highest value that falls into a bucket.
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Gets the middle of the range of values that fall into a bucket.
+     */
+    static double midpointOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return highestValueOf(index) - ((1L << shift) - 1) / 2.0;
+    }
+
+    /**
+     * An immutable copy of a histogram's counts.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final double total;
+        private final long max;
+
+        private Snapshot(long[] counts, long max) {
+            long count = 0;
+            double total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    count += counts[i];
+                    total += counts[i] * midpointOf(i);
+                }
+            }
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /**
+         * Gets the number of recorded values.
+         * @return The value count.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the mean of the recorded values, within the bucket precision.
+         * @return The mean, or 0 if nothing was recorded.
+         */
+        public double getMean() {
+            return count == 0 ? 0 : Math.min(total / count, max);
+        }
+
+        /**
+         * Gets the largest recorded value.
+         * @return The exact maximum, or 0 if nothing was recorded.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Gets the value below which the given share of the recorded values fall.
+         * @param percentile The percentile, from 0 to 100, for example 99.9.
+         * @return The value at that percentile, within the bucket precision, or 0 if nothing was recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Returns the count and the common percentiles, in microseconds for nanosecond values.
+         * @return A one-line summary.
+         */
+        @Override
+        public String toString() {
+            return String.format("count=%d p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus",
+                    count, getValueAtPercentile(50) / 1000.0, getValueAtPercentile(99) / 1000.0,
+                    getValueAtPercentile(99.9) / 1000.0, max / 1000.0);
+        }
+    }
+}
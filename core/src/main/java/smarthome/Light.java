@@ -0,0 +1,86 @@
+package smarthome;
+
+/**
+ * Implementation of a smart light device.
+ * See {@link StoredLight} for a light whose state is kept in a {@link DeviceStateStore}.
+ */
+public class Light implements LightDevice {
+    private final String name;
+    private boolean status;
+    private int brightness;
+    
+    /**
+     * Creates a new Light device with the given name.
+     * @param name The name of the light.
+     */
+    public Light(String name) {
+        this.name = name;
+        this.status = false;
+        this.brightness = 50; // Default brightness is 50%
+    }
+    
+    /**
+     * Creates a standalone light with restored state, without console output.
+     * @param name The name of the light.
+     * @param status The restored status.
+     * @param brightness The restored brightness level (0-100).
+     */
+    Light(String name, boolean status, int brightness) {
+        this.name = name;
+        this.status = status;
+        this.brightness = brightness;
+    }
+    
+    @Override
+    public void turnOn() {
+        this.status = true;
+        ConsoleOutput.info("{} light turned on with brightness {}%", name, brightness);
+    }
+    
+    @Override
+    public void turnOff() {
+        this.status = false;
+        ConsoleOutput.info("{} light turned off", name);
+    }
+    
+    @Override
+    public boolean isOn() {
+        return status;
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Sets the brightness level for the light.
+     * @param brightness The brightness level (0-100).
+     */
+    @Override
+    public void setBrightness(int brightness) {
+        this.brightness = clampBrightness(brightness);
+        
+        if (status) {
+            ConsoleOutput.info("{} brightness set to {}%", name, this.brightness);
+        }
+    }
+    
+    /**
+     * Gets the current brightness level.
+     * @return The current brightness level.
+     */
+    @Override
+    public int getBrightness() {
+        return brightness;
+    }
+    
+    /**
+     * Limits a brightness level to the supported range.
+     * @param brightness The requested brightness level.
+     * @return The brightness level the light would actually use (0-100).
+     */
+    static int clampBrightness(int brightness) {
+        return Math.max(0, Math.min(100, brightness));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,19 @@
+package smarthome;
+
+/**
+ * A light, whether it keeps its own state ({@link Light}) or is a view over a
+ * state store ({@link StoredLight}).
+ */
+public interface LightDevice extends Device {
+    /**
+     * Sets the brightness level for the light.
+     * @param brightness The brightness level (0-100).
+     */
+    void setBrightness(int brightness);
+    
+    /**
+     * Gets the current brightness level.
+     * @return The current brightness level.
+     */
+    int getBrightness();
+}
@@ -0,0 +1,35 @@
+package smarthome;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for the {@link Logger} writing entries to its log file.
+ */
+@Name("smarthome.LogWrite")
+@Label("Log Write")
+@Category({"Smart Home", "Observers"})
+@Description("The logger writing device events to its log file")
+final class LogWriteEvent extends jdk.jfr.Event {
+    @Label("Entries")
+    int entries;
+
+    @Label("Asynchronous")
+    @Description("Whether the entries were written by the background writer thread")
+    boolean asynchronous;
+
+    /**
+     * Fills in the fields and commits the event if the recording wants it.
+     * @param count The number of log entries written.
+     * @param background Whether the background writer thread wrote them.
+     */
+    void commit(int count, boolean background) {
+        if (shouldCommit()) {
+            entries = count;
+            asynchronous = background;
+            commit();
+        }
+    }
+}
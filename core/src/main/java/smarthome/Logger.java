@@ -0,0 +1,502 @@
+package smarthome;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logger implementation of the Observer interface.
+ * Logs all device state changes to console and a log file.
+ * Batches of changes are written as one block.
+ *
+ * By default every event is written synchronously on the caller's thread.
+ * The asynchronous constructor instead enqueues events into a bounded queue
+ * that a background thread drains in batches through one long-lived writer.
+ * A notification batch takes one queue slot, but flush thresholds, overflow
+ * sampling and the dropped count are all measured in log entries (lines).
+ */
+public class Logger implements BatchObserver {
+    private static final String LOG_FILE = "smart_home.log";
+    private static final int SAMPLE_RATE = 10; // Keep 1 in 10 entries while the queue is full
+    private static final OperationStats UPDATE = Metrics.sampledOperation("logger.update");
+    private static final OperationStats UPDATE_BATCH = Metrics.sampledOperation("logger.updateBatch");
+    private final DateTimeFormatter dateFormat; // Thread-safe, callers may log concurrently
+
+    // Asynchronous mode state (queue is null in synchronous mode)
+    private final BlockingQueue<LogEvent> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final OverflowPolicy overflowPolicy;
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Object writerLock = new Object();
+    private FileChannel channel;
+    private Writer writer;
+    private Thread writerThread;
+    private Thread shutdownHook;
+    private volatile boolean running;
+    private boolean closed; // Guarded by writerLock; set once the file has been closed
+
+    /**
+     * What an asynchronous logger does when its queue is full.
+     */
+    public enum OverflowPolicy {
+        /** The caller waits until the writer has made room. */
+        BLOCK,
+        /** The oldest queued event is discarded to make room. */
+        DROP_OLDEST,
+        /** Only every 10th overflowing event is kept, replacing the oldest. */
+        SAMPLE
+    }
+
+    /**
+     * Creates a new Logger that writes every event synchronously.
+     */
+    public Logger() {
+        this.dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+        this.queue = null;
+        this.batchSize = 1;
+        this.flushIntervalMillis = 0;
+        this.overflowPolicy = OverflowPolicy.BLOCK;
+    }
+
+    /**
+     * Creates a new asynchronous Logger.
+     * Events are queued by the caller and written by a background thread.
+     * @param queueCapacity The maximum number of events waiting to be written; a notification batch is one event.
+     * @param batchSize The number of written entries after which the writer is flushed.
+     * @param flushIntervalMillis The maximum time in milliseconds a written event may sit unflushed.
+     * @param overflowPolicy What to do when the queue is full.
+     * @throws IllegalArgumentException if a size or interval is not positive.
+     */
+    public Logger(int queueCapacity, int batchSize, long flushIntervalMillis, OverflowPolicy overflowPolicy) {
+        if (queueCapacity <= 0 || batchSize <= 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Queue capacity, batch size and flush interval must be positive");
+        }
+        this.dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.overflowPolicy = overflowPolicy;
+
+        try {
+            openLogChannel();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open log file: " + e.getMessage(), e);
+        }
+
+        this.running = true;
+        this.writerThread = new Thread(this::drainLoop, "smart-home-logger");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+
+        // Make sure queued events reach the file when the JVM exits
+        this.shutdownHook = new Thread(this::flushAndStop, "smart-home-logger-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    @Override
+    public void update(String deviceName, boolean status, String message) {
+        long start = UPDATE.start();
+        if (queue == null) {
+            writeEntries(List.of(formatEntry(System.currentTimeMillis(), deviceName, status, message)));
+        } else {
+            enqueue(new LogEvent(System.currentTimeMillis(), deviceName, status, message, null));
+        }
+        UPDATE.stop(start);
+    }
+
+    @Override
+    public void updateBatch(NotificationBatch batch) {
+        long start = UPDATE_BATCH.start();
+        long timestamp = System.currentTimeMillis();
+        if (queue == null) {
+            List<String> logMessages = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                logMessages.add(formatEntry(timestamp, batch.getDeviceName(i), batch.getStatus(i), batch.getMessage()));
+            }
+            writeEntries(logMessages);
+        } else {
+            // The caller may keep adding to its batch, so queue a copy
+            enqueue(new LogEvent(timestamp, null, false, null, batch.copy()));
+        }
+        UPDATE_BATCH.stop(start);
+    }
+
+    /**
+     * Clears the log file.
+     * In asynchronous mode, events still waiting in the queue are discarded as well
+     * and counted as dropped.
+     */
+    public void clearLog() {
+        if (queue != null) {
+            synchronized (writerLock) {
+                discardQueued();
+                if (!closed) {
+                    try {
+                        writer.flush();
+                        channel.truncate(0);
+                        ConsoleOutput.info("Log file cleared.");
+                    } catch (IOException e) {
+                        ConsoleOutput.error("Error clearing log file: {}", e.getMessage());
+                    }
+                    return;
+                }
+            }
+            // Shut down: the file is closed, so clear it directly
+        }
+
+        try (FileWriter writer = new FileWriter(LOG_FILE, false)) {
+            writer.write(""); // Write empty string to clear file
+            ConsoleOutput.info("Log file cleared.");
+        } catch (IOException e) {
+            ConsoleOutput.error("Error clearing log file: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes all queued events and stops the background writer.
+     * Has no effect on a synchronous logger or one that is already shut down.
+     */
+    public void shutdown() {
+        if (shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // The JVM is already shutting down and the hook will run anyway
+            }
+        }
+        flushAndStop();
+    }
+
+    /**
+     * Checks if this logger writes events on a background thread.
+     * @return true in asynchronous mode, false otherwise.
+     */
+    public boolean isAsynchronous() {
+        return queue != null;
+    }
+
+    /**
+     * Gets the number of events that have not been written yet.
+     * @return The current queue depth, or 0 in synchronous mode.
+     */
+    public int getPendingCount() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Gets the number of entries that arrived while the queue was full.
+     * @return The overflow count since this logger was created.
+     */
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    /**
+     * Gets the number of entries that were never written: discarded by the overflow
+     * policy or by {@link #clearLog()}, or logged after the logger was shut down.
+     * @return The dropped entry count since this logger was created.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Puts an event into the queue, applying the overflow policy if it is full.
+     * @param event The event to enqueue.
+     */
+    private void enqueue(LogEvent event) {
+        offer(event);
+        // The logger may have stopped between the check and the offer
+        if (!running) {
+            reclaimAfterStop();
+        }
+    }
+
+    /**
+     * Offers an event to the queue, applying the overflow policy if it is full.
+     * @param event The event to enqueue.
+     */
+    private void offer(LogEvent event) {
+        int entries = event.entries();
+        if (!running) {
+            droppedCount.addAndGet(entries);
+            return;
+        }
+        if (queue.offer(event)) {
+            return;
+        }
+
+        long overflow = overflowCount.addAndGet(entries);
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    queue.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedCount.addAndGet(entries);
+                }
+            }
+            case DROP_OLDEST -> replaceOldest(event);
+            case SAMPLE -> {
+                // Keep the event if its entries cross a multiple of the sample rate
+                if (overflow / SAMPLE_RATE != (overflow - entries) / SAMPLE_RATE) {
+                    replaceOldest(event);
+                } else {
+                    droppedCount.addAndGet(entries);
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards queued events from the head until the given event fits.
+     * @param event The event to enqueue.
+     */
+    private void replaceOldest(LogEvent event) {
+        while (!queue.offer(event)) {
+            LogEvent oldest = queue.poll();
+            if (oldest != null) {
+                droppedCount.addAndGet(oldest.entries());
+            }
+        }
+    }
+
+    /**
+     * Counts events queued after the logger stopped as dropped, once the file is closed.
+     * Until then they are left for the final drain in {@link #flushAndStop()} to write.
+     */
+    private void reclaimAfterStop() {
+        synchronized (writerLock) {
+            if (closed) {
+                discardQueued();
+            }
+        }
+    }
+
+    /**
+     * Empties the queue and counts its entries as dropped.
+     * Must be called while holding the writer lock.
+     */
+    private void discardQueued() {
+        List<LogEvent> discarded = new ArrayList<>(queue.size());
+        queue.drainTo(discarded);
+        for (LogEvent event : discarded) {
+            droppedCount.addAndGet(event.entries());
+        }
+    }
+
+    /**
+     * Body of the background writer thread.
+     * Drains the queue in batches and flushes whenever a batch size worth of entries
+     * has been written or the flush interval has elapsed.
+     */
+    private void drainLoop() {
+        List<LogEvent> batch = new ArrayList<>(batchSize);
+        long lastFlush = System.currentTimeMillis();
+        int unflushed = 0;
+
+        while (running || !queue.isEmpty()) {
+            long waitMillis = Math.max(1, flushIntervalMillis - (System.currentTimeMillis() - lastFlush));
+            LogEvent first;
+            try {
+                first = queue.poll(waitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            synchronized (writerLock) {
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    unflushed += writeBatch(batch);
+                    batch.clear();
+                }
+
+                long now = System.currentTimeMillis();
+                if (unflushed > 0 && (unflushed >= batchSize || now - lastFlush >= flushIntervalMillis)) {
+                    flushWriter();
+                    unflushed = 0;
+                }
+                if (unflushed == 0) {
+                    lastFlush = now;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a batch of events to the console and the log writer.
+     * Must be called while holding the writer lock.
+     * @param batch The events to write.
+     * @return The number of entries written.
+     */
+    private int writeBatch(List<LogEvent> batch) {
+        LogWriteEvent writeEvent = new LogWriteEvent();
+        writeEvent.begin();
+        int entries = 0;
+        try {
+            for (LogEvent event : batch) {
+                NotificationBatch notifications = event.batch();
+                if (notifications == null) {
+                    writeLine(formatEntry(event.timestamp(), event.deviceName(), event.status(), event.message()));
+                    entries++;
+                    continue;
+                }
+                for (int i = 0; i < notifications.size(); i++) {
+                    writeLine(formatEntry(event.timestamp(), notifications.getDeviceName(i),
+                            notifications.getStatus(i), notifications.getMessage()));
+                    entries++;
+                }
+            }
+        } catch (IOException e) {
+            ConsoleOutput.error("Error writing to log file: {}", e.getMessage());
+        }
+        writeEvent.commit(entries, true);
+        return entries;
+    }
+
+    /**
+     * Writes one log line to the console and the log writer.
+     * Must be called while holding the writer lock.
+     * @param logMessage The formatted log line.
+     * @throws IOException if the line cannot be written.
+     */
+    private void writeLine(String logMessage) throws IOException {
+        ConsoleOutput.info("LOG: {}", logMessage);
+        writer.write(logMessage);
+        writer.write('\n');
+    }
+
+    /**
+     * Flushes buffered log lines to the file.
+     * Must be called while holding the writer lock.
+     */
+    private void flushWriter() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            ConsoleOutput.error("Error writing to log file: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the background writer after it has drained the queue, writes any events
+     * that were queued while it was exiting, then closes the file.
+     */
+    private synchronized void flushAndStop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            // Not interrupted: that would close the channel mid-write. The writer
+            // notices the flag within one flush interval.
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (writerLock) {
+            List<LogEvent> leftovers = new ArrayList<>(queue.size());
+            queue.drainTo(leftovers);
+            if (!leftovers.isEmpty()) {
+                writeBatch(leftovers);
+            }
+            closed = true;
+            try {
+                writer.close(); // Also flushes and closes the underlying channel
+            } catch (IOException e) {
+                ConsoleOutput.error("Error closing log file: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Opens the long-lived append channel used in asynchronous mode.
+     * @throws IOException if the log file cannot be opened.
+     */
+    private void openLogChannel() throws IOException {
+        channel = FileChannel.open(Path.of(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    /**
+     * Writes formatted entries synchronously on the caller's thread,
+     * as one console write and one file write.
+     * @param logMessages The formatted log lines.
+     */
+    private void writeEntries(List<String> logMessages) {
+        LogWriteEvent event = new LogWriteEvent();
+        event.begin();
+        StringBuilder block = new StringBuilder();
+        for (String logMessage : logMessages) {
+            block.append(logMessage).append('\n');
+        }
+
+        // Log to console, as one write, only if anyone is going to see it
+        if (ConsoleOutput.isEnabled(ConsoleOutput.Level.INFO)) {
+            StringBuilder console = new StringBuilder();
+            for (String logMessage : logMessages) {
+                if (console.length() > 0) {
+                    console.append(System.lineSeparator());
+                }
+                console.append("LOG: ").append(logMessage);
+            }
+            ConsoleOutput.log(ConsoleOutput.Level.INFO, console.toString());
+        }
+
+        // Log to file
+        try (FileWriter writer = new FileWriter(LOG_FILE, true)) {
+            writer.write(block.toString());
+        } catch (IOException e) {
+            ConsoleOutput.error("Error writing to log file: {}", e.getMessage());
+        }
+        event.commit(logMessages.size(), false);
+    }
+
+    /**
+     * Formats a log line as "[timestamp] device is ON/OFF - message".
+     * @param timestamp The event time in milliseconds since the epoch.
+     * @param deviceName The name of the device that changed.
+     * @param status The new status of the device.
+     * @param message Additional information about the state change.
+     * @return The formatted log line.
+     */
+    private String formatEntry(long timestamp, String deviceName, boolean status, String message) {
+        String statusText = status ? "ON" : "OFF";
+        return String.format("[%s] %s is %s - %s", dateFormat.format(Instant.ofEpochMilli(timestamp)), deviceName, statusText, message);
+    }
+
+    /**
+     * A device event or batch of events captured on the caller's thread, waiting to be written.
+     * For a batch, only the timestamp and the batch are set.
+     */
+    private record LogEvent(long timestamp, String deviceName, boolean status, String message,
+                            NotificationBatch batch) {
+        /**
+         * Gets the number of log entries this event produces.
+         * @return 1 for a single event, the batch size for a batch.
+         */
+        int entries() {
+            return batch == null ? 1 : batch.size();
+        }
+    }
+}
@@ -1,3 +1,5 @@
+package smarthome;
+
 // File: SmartHomeController.java
 //import java.util.List;
 
@@ -0,0 +1,198 @@
+package smarthome;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registry of the latency statistics of instrumented operations.
+ *
+ * Every {@link OperationStats} is published as a JMX MBean named
+ * {@code smarthome:type=Operation,name="<operation>"}, and this registry itself as
+ * {@code smarthome:type=Metrics}, where instrumentation can be switched on and off and
+ * all statistics reset. Operation names are dotted: {@code controller.turnOnDevice},
+ * {@code device.Light.turnOn}, {@code mode.Night Mode.apply}, {@code logger.update}.
+ *
+ * Instrumentation is on unless the system property {@code smarthome.metrics} is
+ * {@code false}. Switched off, an instrumented call costs one volatile read.
+ * Hot per-device operations are sampled at {@code smarthome.metrics.sampleRate}
+ * (default {@value #DEFAULT_SAMPLE_RATE}); see {@link OperationStats}.
+ */
+public final class Metrics implements MetricsMBean {
+    /**
+     * The device types statistics are kept for, in {@link #deviceTypeIndex(Device)} order.
+     */
+    private static final String[] DEVICE_TYPES = {"Light", "AirConditioner", "Door", "Other"};
+    private static final String DOMAIN = "smarthome";
+    private static final int DEFAULT_SAMPLE_RATE = 8;
+    private static final Metrics INSTANCE = new Metrics();
+
+    private static volatile boolean enabled = !"false".equalsIgnoreCase(System.getProperty("smarthome.metrics"));
+    private static volatile int sampleMask = toMask(Integer.getInteger("smarthome.metrics.sampleRate", DEFAULT_SAMPLE_RATE));
+
+    private final ConcurrentMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+    static {
+        register(INSTANCE, DOMAIN + ":type=Metrics");
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Gets the registry, for example to reset statistics from code.
+     * @return The registry.
+     */
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Checks if instrumented operations are timed.
+     * @return true if instrumentation is on.
+     */
+    public static boolean isOn() {
+        return enabled;
+    }
+
+    /**
+     * Gets the mask applied to a random number to decide whether a sampled call is timed.
+     * @return The sample rate minus one.
+     */
+    static int sampleMask() {
+        return sampleMask;
+    }
+
+    /**
+     * Gets the statistics of an operation that times every call, creating and publishing
+     * them on first use. Meant for coarse operations such as room, mass and mode actions.
+     * Callers look their statistics up once and keep them in a field.
+     * @param name The dotted operation name.
+     * @return The statistics of the operation.
+     */
+    public static OperationStats operation(String name) {
+        return operation(name, false);
+    }
+
+    /**
+     * Gets the statistics of an operation that times only a sample of its calls,
+     * for hot per-device operations.
+     * @param name The dotted operation name.
+     * @return The statistics of the operation.
+     */
+    public static OperationStats sampledOperation(String name) {
+        return operation(name, true);
+    }
+
+    private static OperationStats operation(String name, boolean sampled) {
+        OperationStats stats = INSTANCE.operations.get(name);
+        if (stats != null) {
+            return stats;
+        }
+        return INSTANCE.operations.computeIfAbsent(name, n -> {
+            OperationStats created = new OperationStats(n, sampled);
+            register(created, DOMAIN + ":type=Operation,name=" + ObjectName.quote(n));
+            return created;
+        });
+    }
+
+    /**
+     * Gets the statistics of an action for each device type, named {@code device.<Type>.<action>}.
+     * @param action The action name, for example {@code turnOn}.
+     * @return The statistics, indexed by {@link #deviceTypeIndex(Device)}.
+     */
+    public static OperationStats[] byDeviceType(String action) {
+        OperationStats[] stats = new OperationStats[DEVICE_TYPES.length];
+        for (int i = 0; i < DEVICE_TYPES.length; i++) {
+            stats[i] = sampledOperation("device." + DEVICE_TYPES[i] + "." + action);
+        }
+        return stats;
+    }
+
+    /**
+     * Gets the index of a device's type in the arrays returned by {@link #byDeviceType(String)}.
+     * @param device The device, possibly decorated.
+     * @return The type index.
+     */
+    public static int deviceTypeIndex(Device device) {
+        return switch (DeviceDecorator.getBaseDevice(device)) {
+            case LightDevice light -> 0;
+            case AirConditionerDevice ac -> 1;
+            case DoorDevice door -> 2;
+            default -> 3;
+        };
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleMask + 1;
+    }
+
+    /**
+     * Sets how many calls of a sampled operation share one timed call.
+     * @param sampleRate The sample rate, rounded up to a power of two; 1 times every call.
+     */
+    @Override
+    public void setSampleRate(int sampleRate) {
+        sampleMask = toMask(sampleRate);
+    }
+
+    @Override
+    public List<String> getOperationNames() {
+        List<String> names = new ArrayList<>(operations.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    @Override
+    public void resetAll() {
+        for (OperationStats stats : operations.values()) {
+            stats.reset();
+        }
+    }
+
+    /**
+     * Gets the statistics of every operation created so far.
+     * @return The statistics, sorted by name.
+     */
+    public List<OperationStats> getOperations() {
+        List<OperationStats> all = new ArrayList<>(operations.values());
+        all.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return all;
+    }
+
+    private static int toMask(int sampleRate) {
+        if (sampleRate < 1 || sampleRate > 1 << 30) {
+            throw new IllegalArgumentException("Invalid sample rate: " + sampleRate);
+        }
+        return Integer.highestOneBit(sampleRate * 2 - 1) - 1;
+    }
+
+    private static void register(Object mbean, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(mbean, objectName);
+            }
+        } catch (JMException e) {
+            ConsoleOutput.warn("Could not publish {} over JMX", name);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package smarthome;
+
+import java.util.List;
+
+/**
+ * JMX control of the controller's instrumentation.
+ */
+public interface MetricsMBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * Gets how many calls of a sampled operation share one timed call.
+     * @return The sample rate, a power of two; 1 times every call.
+     */
+    int getSampleRate();
+
+    void setSampleRate(int sampleRate);
+
+    List<String> getOperationNames();
+
+    /**
+     * Clears the statistics of every operation.
+     */
+    void resetAll();
+}
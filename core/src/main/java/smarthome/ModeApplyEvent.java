@@ -0,0 +1,40 @@
+package smarthome;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one application of an automation mode.
+ */
+@Name("smarthome.ModeApply")
+@Label("Automation Mode Apply")
+@Category({"Smart Home", "Automation"})
+@Description("An automation mode applying its action plan")
+final class ModeApplyEvent extends jdk.jfr.Event {
+    @Label("Mode")
+    String mode;
+
+    @Label("Planned Devices")
+    @Description("The number of devices the mode's plan has actions for")
+    int plannedDevices;
+
+    @Label("Devices Touched")
+    @Description("The number of devices that were sent at least one command")
+    int devicesTouched;
+
+    /**
+     * Fills in the fields and commits the event if the recording wants it.
+     * @param plan The plan that was executed.
+     * @param touched The number of devices that were sent a command.
+     */
+    void commit(ActionPlan plan, int touched) {
+        if (shouldCommit()) {
+            mode = plan.getModeName();
+            plannedDevices = plan.getDeviceCount();
+            devicesTouched = touched;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package smarthome;
+
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Adds motion sensor functionality to a device.
+ * The device will automatically turn on when motion is detected and turn off after a delay.
+ * Auto-off deadlines are tracked by a {@link Scheduler}, by default the shared
+ * {@link TimingWheelScheduler}, so a motion sensor never owns a thread and a
+ * retrigger only moves its deadline. Once the controller guards its commands with the
+ * device's lock, an expired deadline hands the turn-off to the controller's executor,
+ * so a device held by a slow command never stalls the scheduler thread.
+ */
+public class MotionSensorDecorator extends DeviceDecorator {
+    private static final OperationStats MOTION_DETECTED = Metrics.sampledOperation("decorator.motionSensor.motionDetected");
+    private static final OperationStats AUTO_OFF = Metrics.sampledOperation("decorator.motionSensor.autoOff");
+    
+    private final ScheduledTimer autoOffTimer;
+    private volatile int autoOffDelay; // in seconds
+    private volatile Consumer<Runnable> commandGuard; // Set by the controller to take the device's lock
+    private volatile Executor timerExecutor; // Runs guarded auto-offs off the scheduler thread
+    
+    /**
+     * Creates a new MotionSensorDecorator.
+     * @param device The device to decorate.
+     * @param autoOffDelay Delay in seconds before the device automatically turns off after motion stops.
+     */
+    public MotionSensorDecorator(Device device, int autoOffDelay) {
+        this(device, autoOffDelay, TimingWheelScheduler.getShared());
+    }
+    
+    /**
+     * Creates a new MotionSensorDecorator whose auto-off timer runs on the given scheduler.
+     * @param device The device to decorate.
+     * @param autoOffDelay Delay in seconds before the device automatically turns off after motion stops.
+     * @param scheduler The scheduler that tracks the auto-off deadline.
+     */
+    public MotionSensorDecorator(Device device, int autoOffDelay, Scheduler scheduler) {
+        super(device);
+        this.autoOffDelay = autoOffDelay;
+        this.autoOffTimer = scheduler.newTimer(this::autoOff);
+    }
+    
+    /**
+     * Simulates motion detection.
+     * When motion is detected, the device is turned on and a timer is started to turn it off later.
+     */
+    public void motionDetected() {
+        long start = MOTION_DETECTED.start();
+        ConsoleOutput.info("Motion detected near {}", device.getName());
+        guarded(() -> {
+            // Turn on the device if it's not already on
+            if (!device.isOn()) {
+                device.turnOn();
+            }
+            
+            // Reset the timer to turn off after delay
+            resetTimer();
+        });
+        MOTION_DETECTED.stop(start);
+    }
+    
+    /**
+     * Resets the auto-off timer.
+     * Moves the pending deadline to the current auto-off delay from now.
+     */
+    private void resetTimer() {
+        autoOffTimer.schedule(autoOffDelay * 1000L); // Convert seconds to milliseconds
+    }
+    
+    /**
+     * Called on the scheduler thread once no motion has been detected for the auto-off delay.
+     * A guarded turn-off may wait for the device's lock, so it runs on the timer executor.
+     */
+    private void autoOff() {
+        Consumer<Runnable> guard = commandGuard;
+        Executor executor = timerExecutor;
+        if (guard == null || executor == null) {
+            turnOffIfIdle();
+            return;
+        }
+        executor.execute(() -> guard.accept(this::turnOffIfIdle));
+    }
+    
+    /**
+     * Turns the device off, unless motion was detected again after the deadline passed.
+     */
+    private void turnOffIfIdle() {
+        if (autoOffTimer.isPending()) {
+            return; // Motion while the turn-off waited for the lock moved the deadline
+        }
+        MotionTimerEvent event = new MotionTimerEvent();
+        event.begin();
+        boolean on = device.isOn();
+        if (on) {
+            long start = AUTO_OFF.start();
+            ConsoleOutput.info("No motion detected for {} seconds. Turning off {}", autoOffDelay, device.getName());
+            device.turnOff();
+            AUTO_OFF.stop(start);
+        }
+        event.commit(device.getName(), autoOffDelay, on);
+    }
+    
+    /**
+     * Runs a command on the device through the command guard, if one is set.
+     * @param command The command.
+     */
+    private void guarded(Runnable command) {
+        Consumer<Runnable> guard = commandGuard;
+        if (guard != null) {
+            guard.accept(command);
+        } else {
+            command.run();
+        }
+    }
+    
+    /**
+     * Sets how motion and auto-off commands are run. The controller sets a guard that
+     * takes the device's lock, so the timer never races other commands, and an executor
+     * that runs guarded auto-offs so the scheduler thread never waits for that lock.
+     * @param guard Runs each command, or null to run commands directly.
+     * @param executor Runs guarded auto-offs, or null to run them on the scheduler thread.
+     */
+    void setCommandGuard(Consumer<Runnable> guard, Executor executor) {
+        this.timerExecutor = executor;
+        this.commandGuard = guard;
+    }
+    
+    /**
+     * Cancels a pending auto-off, for example when the device is removed from the home.
+     */
+    public void cancelAutoOff() {
+        autoOffTimer.cancel();
+    }
+    
+    /**
+     * Checks if an auto-off is pending.
+     * @return true if the device will be turned off when the deadline passes, false otherwise.
+     */
+    public boolean isAutoOffPending() {
+        return autoOffTimer.isPending();
+    }
+    
+    /**
+     * Sets the auto-off delay.
+     * A pending deadline is kept; the new delay applies from the next motion event.
+     * @param seconds Delay in seconds before the device turns off after no motion is detected.
+     */
+    public void setAutoOffDelay(int seconds) {
+        this.autoOffDelay = seconds;
+        ConsoleOutput.info("Auto-off delay for {} set to {} seconds", device.getName(), seconds);
+    }
+    
+    /**
+     * Gets the current auto-off delay.
+     * @return The current auto-off delay in seconds.
+     */
+    public int getAutoOffDelay() {
+        return autoOffDelay;
+    }
+}
\ No newline at end of file
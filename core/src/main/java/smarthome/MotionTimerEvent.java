@@ -0,0 +1,42 @@
+package smarthome;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for a motion sensor's auto-off timer firing.
+ */
+@Name("smarthome.MotionTimer")
+@Label("Motion Timer Fired")
+@Category({"Smart Home", "Devices"})
+@Description("A motion sensor's auto-off deadline passing")
+final class MotionTimerEvent extends jdk.jfr.Event {
+    @Label("Device")
+    String device;
+
+    @Label("Auto-Off Delay")
+    @Timespan(Timespan.SECONDS)
+    long delay;
+
+    @Label("Turned Off")
+    @Description("Whether the device was still on and got turned off")
+    boolean turnedOff;
+
+    /**
+     * Fills in the fields and commits the event if the recording wants it.
+     * @param deviceName The name of the decorated device.
+     * @param delaySeconds The auto-off delay in seconds.
+     * @param off Whether the device was turned off.
+     */
+    void commit(String deviceName, int delaySeconds, boolean off) {
+        if (shouldCommit()) {
+            device = deviceName;
+            delay = delaySeconds;
+            turnedOff = off;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package smarthome;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Movie Mode automation strategy.
+ * Dims lights, sets a comfortable viewing temperature, and can lock doors.
+ */
+public class MovieMode implements AutomationMode {
+    private static final int MOVIE_TEMPERATURE = 23; // Comfortable movie watching temperature in Celsius
+    private static final int LIGHT_BRIGHTNESS = 20; // Dim but not dark
+    private static final int COOL = AirConditioner.MODES.indexOf("COOL");
+    
+    @Override
+    public String getName() {
+        return "Movie Mode";
+    }
+    
+    @Override
+    public void apply(SmartHomeController controller) {
+        ConsoleOutput.info("Applying Movie Mode...");
+        ModeApplyEvent event = new ModeApplyEvent();
+        event.begin();
+        ActionPlan plan = controller.getActionPlan(this);
+        int touched = plan.execute(controller);
+        event.commit(plan, touched);
+    }
+    
+    @Override
+    public ActionPlan compile(SmartHomeController controller) {
+        ActionPlan.Builder plan = ActionPlan.builder(getName());
+        
+        // Check if we have a living room or media room
+        Room targetRoom = null;
+        for (Room room : controller.getAllRooms()) {
+            String roomName = room.getName().toLowerCase();
+            if (roomName.contains("living") || roomName.contains("media") || roomName.contains("theater")) {
+                targetRoom = room;
+                break;
+            }
+        }
+        
+        // Resolve room membership up front so the device pass needs no room lookups
+        Set<Device> targetDevices = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<Device, Room> otherRoomLights = new IdentityHashMap<>();
+        if (targetRoom != null) {
+            plan.announce("Setting up " + targetRoom.getName() + " for movie watching");
+            targetDevices.addAll(targetRoom.getDevices());
+            for (Room room : controller.getAllRooms()) {
+                if (room != targetRoom) {
+                    for (Device light : room.getDevicesOfBaseType(Light.class)) {
+                        otherRoomLights.putIfAbsent(light, room);
+                    }
+                }
+            }
+        } else {
+            plan.announce("No dedicated movie room found. Applying general movie settings.");
+        }
+        Collection<Device> kitchenDevices = controller.getDevicesByTag("kitchen");
+        Collection<Device> bathroomDevices = controller.getDevicesByTag("bathroom");
+        Collection<Device> livingDevices = controller.getDevicesByTag("living");
+        Collection<Device> frontDevices = controller.getDevicesByTag("front");
+        
+        // One pass over all devices
+        for (Device device : controller.getAllDevices()) {
+            switch (DeviceDecorator.getBaseDevice(device)) {
+                case LightDevice light -> {
+                    if (targetRoom != null) {
+                        // Dim the lights in the target room, turn off lights in the other rooms
+                        if (targetDevices.contains(device)) {
+                            dim(plan, device);
+                        }
+                        Room room = otherRoomLights.get(device);
+                        if (room != null) {
+                            plan.add(device, ActionPlan.Operation.TURN_OFF)
+                                    .report(device, "Turned off " + device.getName() + " in " + room.getName());
+                        }
+                    } else if (kitchenDevices.contains(device) || bathroomDevices.contains(device)) {
+                        plan.add(device, ActionPlan.Operation.TURN_OFF) // Keep these lights off
+                                .report(device, "Turned off " + device.getName());
+                    } else {
+                        dim(plan, device);
+                    }
+                }
+                case AirConditionerDevice ac -> {
+                    // Set the movie room AC (or the living room AC) to a comfortable temperature
+                    boolean inMovieRoom = targetRoom != null ? targetDevices.contains(device) : livingDevices.contains(device);
+                    if (inMovieRoom) {
+                        plan.add(device, ActionPlan.Operation.SET_TEMPERATURE, MOVIE_TEMPERATURE)
+                                .add(device, ActionPlan.Operation.SET_MODE, COOL)
+                                .add(device, ActionPlan.Operation.TURN_ON)
+                                .report(device, "Set " + device.getName() + " to " + MOVIE_TEMPERATURE + "°C");
+                    }
+                }
+                case DoorDevice door -> {
+                    // Lock the front door for security during the movie
+                    if (frontDevices.contains(device)) {
+                        plan.add(device, ActionPlan.Operation.LOCK)
+                                .report(device, "Locked " + device.getName() + " for movie time security");
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return plan.build();
+    }
+    
+    private static void dim(ActionPlan.Builder plan, Device device) {
+        plan.add(device, ActionPlan.Operation.SET_BRIGHTNESS, LIGHT_BRIGHTNESS)
+                .add(device, ActionPlan.Operation.TURN_ON)
+                .report(device, "Dimmed " + device.getName() + " to " + LIGHT_BRIGHTNESS + "%");
+    }
+}
@@ -0,0 +1,77 @@
+package smarthome;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Night Mode automation strategy.
+ * Turns off most lights, locks doors, and sets a comfortable sleeping temperature.
+ */
+public class NightMode implements AutomationMode {
+    private static final int NIGHT_TEMPERATURE = 20; // in Celsius
+    private static final int BEDROOM_TEMPERATURE = 19; // Bedrooms get slightly cooler
+    private static final int NIGHT_LIGHT_BRIGHTNESS = 20;
+    
+    @Override
+    public String getName() {
+        return "Night Mode";
+    }
+    
+    @Override
+    public void apply(SmartHomeController controller) {
+        ConsoleOutput.info("Applying Night Mode...");
+        ModeApplyEvent event = new ModeApplyEvent();
+        event.begin();
+        ActionPlan plan = controller.getActionPlan(this);
+        int touched = plan.execute(controller);
+        event.commit(plan, touched);
+    }
+    
+    @Override
+    public ActionPlan compile(SmartHomeController controller) {
+        ActionPlan.Builder plan = ActionPlan.builder(getName());
+        
+        // Resolve the room rule first so the device pass needs no room lookups
+        Set<Device> bedroomDevices = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Room room : controller.getAllRooms()) {
+            if (room.getName().toLowerCase().contains("bedroom")) {
+                bedroomDevices.addAll(room.getDevicesOfBaseType(AirConditioner.class));
+            }
+        }
+        Collection<Device> nightDevices = controller.getDevicesByTag("night");
+        Collection<Device> securityDevices = controller.getDevicesByTag("security");
+        
+        // One pass over all devices
+        for (Device device : controller.getAllDevices()) {
+            switch (DeviceDecorator.getBaseDevice(device)) {
+                case LightDevice light -> {
+                    // Dim night and security lights, turn off regular lights
+                    if (nightDevices.contains(device) || securityDevices.contains(device)) {
+                        plan.add(device, ActionPlan.Operation.TURN_ON)
+                                .add(device, ActionPlan.Operation.SET_BRIGHTNESS, NIGHT_LIGHT_BRIGHTNESS)
+                                .report(device, "Dimmed " + device.getName() + " to " + NIGHT_LIGHT_BRIGHTNESS + "%");
+                    } else {
+                        plan.add(device, ActionPlan.Operation.TURN_OFF)
+                                .report(device, "Turned off " + device.getName());
+                    }
+                }
+                case AirConditionerDevice ac -> {
+                    if (bedroomDevices.contains(device)) {
+                        plan.add(device, ActionPlan.Operation.SET_TEMPERATURE, BEDROOM_TEMPERATURE)
+                                .report(device, "Set bedroom " + device.getName() + " to " + BEDROOM_TEMPERATURE + "°C");
+                    } else {
+                        plan.add(device, ActionPlan.Operation.SET_TEMPERATURE, NIGHT_TEMPERATURE)
+                                .report(device, "Set " + device.getName() + " to " + NIGHT_TEMPERATURE + "°C");
+                    }
+                }
+                case DoorDevice door -> plan.add(device, ActionPlan.Operation.LOCK)
+                        .report(device, "Locked " + device.getName());
+                default -> {
+                }
+            }
+        }
+        return plan.build();
+    }
+}
@@ -0,0 +1,107 @@
+package smarthome;
+
+import java.util.Arrays;
+
+/**
+ * A compact group of device state changes that share one message,
+ * such as the result of a mass action, a room action or an automation mode.
+ * Device names and statuses are kept in parallel arrays instead of one object per change.
+ */
+public class NotificationBatch {
+    private final String message;
+    private String[] deviceNames;
+    private long[] statusBits;
+    private int size;
+    
+    /**
+     * Creates an empty batch.
+     * @param message The message shared by all changes in the batch.
+     * @param expectedSize The expected number of changes, used to size the arrays.
+     */
+    public NotificationBatch(String message, int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        this.message = message;
+        this.deviceNames = new String[capacity];
+        this.statusBits = new long[(capacity + 63) >>> 6];
+    }
+    
+    /**
+     * Adds a device state change to the batch.
+     * @param deviceName The name of the device that changed.
+     * @param status The new status of the device.
+     */
+    public void add(String deviceName, boolean status) {
+        if (size == deviceNames.length) {
+            deviceNames = Arrays.copyOf(deviceNames, size * 2);
+            statusBits = Arrays.copyOf(statusBits, (size * 2 + 63) >>> 6);
+        }
+        deviceNames[size] = deviceName;
+        if (status) {
+            statusBits[size >>> 6] |= 1L << size;
+        }
+        size++;
+    }
+    
+    /**
+     * Gets the message shared by all changes in the batch.
+     * @return The message.
+     */
+    public String getMessage() {
+        return message;
+    }
+    
+    /**
+     * Gets the number of changes in the batch.
+     * @return The batch size.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Checks if the batch has no changes.
+     * @return true if the batch is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Gets the device name of a change.
+     * @param index The index of the change, from 0 to size() - 1.
+     * @return The name of the device that changed.
+     */
+    public String getDeviceName(int index) {
+        checkIndex(index);
+        return deviceNames[index];
+    }
+    
+    /**
+     * Gets the new status of a change.
+     * @param index The index of the change, from 0 to size() - 1.
+     * @return The new status of the device.
+     */
+    public boolean getStatus(int index) {
+        checkIndex(index);
+        return (statusBits[index >>> 6] & (1L << index)) != 0;
+    }
+    
+    /**
+     * Creates an independent copy of the batch, so later additions to this batch
+     * do not show up in the copy. Used by observers that keep a batch after returning.
+     * @return A copy holding the changes added so far.
+     */
+    public NotificationBatch copy() {
+        NotificationBatch copy = new NotificationBatch(message, size);
+        System.arraycopy(deviceNames, 0, copy.deviceNames, 0, size);
+        System.arraycopy(statusBits, 0, copy.statusBits, 0, (size + 63) >>> 6);
+        copy.size = size;
+        return copy;
+    }
+    
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for batch of " + size);
+        }
+    }
+}
@@ -1,3 +1,5 @@
+package smarthome;
+
 /**
  * Observer interface for the Observer design pattern.
  * Classes implementing this interface can receive updates on state changes.
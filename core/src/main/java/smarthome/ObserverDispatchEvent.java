@@ -0,0 +1,36 @@
+package smarthome;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one observer handling one notification or batch on the command thread.
+ */
+@Name("smarthome.ObserverDispatch")
+@Label("Observer Dispatch")
+@Category({"Smart Home", "Observers"})
+@Description("An observer handling a device notification on the thread that sent the command")
+final class ObserverDispatchEvent extends jdk.jfr.Event {
+    @Label("Observer Class")
+    Class<?> observerClass;
+
+    @Label("Changes")
+    @Description("The number of device changes delivered")
+    int changes;
+
+    /**
+     * Fills in the fields and commits the event if the recording wants it.
+     * @param observer The observer, unwrapped if it is a {@link BatchObserverAdapter}.
+     * @param count The number of device changes delivered.
+     */
+    void commit(BatchObserver observer, int count) {
+        if (shouldCommit()) {
+            observerClass = observer instanceof BatchObserverAdapter adapter
+                    ? adapter.getObserver().getClass() : observer.getClass();
+            changes = count;
+            commit();
+        }
+    }
+}
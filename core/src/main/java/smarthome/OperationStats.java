@@ -0,0 +1,180 @@
+package smarthome;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency statistics of one instrumented operation, kept in a lock-free
+ * {@link LatencyHistogram}. Timing is done with a start/stop pair:
+ * <pre>
+ * long start = stats.start();
+ * try {
+ *     ...
+ * } finally {
+ *     stats.stop(start);
+ * }
+ * </pre>
+ * While {@link Metrics} is disabled, {@link #start()} returns 0 without reading the
+ * clock and {@link #stop(long)} does nothing.
+ *
+ * Statistics of hot per-device operations are sampled: only one call in
+ * {@link Metrics#getSampleRate()} is timed, picked at random, which keeps the average
+ * overhead to a few nanoseconds per call. Reading the clock twice costs more than the
+ * operations being measured otherwise. Percentiles stay representative; the count is
+ * the number of timed calls, while a separate call counter sees every call.
+ *
+ * The JMX getters read one shared snapshot that is at most {@value #JMX_SNAPSHOT_MILLIS} ms
+ * old, so the attributes a JMX client reads together describe the same calls.
+ */
+public class OperationStats implements OperationStatsMBean {
+    private static final long JMX_SNAPSHOT_MILLIS = 1000;
+    
+    private final String name;
+    private final boolean sampled;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder calls = new LongAdder();
+    private volatile JmxSnapshot jmxSnapshot;
+
+    OperationStats(String name, boolean sampled) {
+        this.name = name;
+        this.sampled = sampled;
+    }
+
+    /**
+     * Starts timing one call.
+     * @return The start time to pass to {@link #stop(long)}, or 0 if this call is not timed.
+     */
+    public long start() {
+        if (!Metrics.isOn()) {
+            return 0;
+        }
+        calls.increment();
+        if (sampled && (ThreadLocalRandom.current().nextInt() & Metrics.sampleMask()) != 0) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time since a call to {@link #start()}.
+     * @param start The value returned by {@link #start()}.
+     * @return The recorded time in nanoseconds, or 0 if instrumentation was off,
+     *         so it can be passed on to {@link #record(long)} of related statistics without reading the clock again.
+     */
+    public long stop(long start) {
+        if (start == 0) {
+            return 0;
+        }
+        long elapsed = System.nanoTime() - start;
+        histogram.record(elapsed);
+        return elapsed;
+    }
+
+    /**
+     * Records a call timed elsewhere, for example by {@link #stop(long)} of another operation.
+     * The call is counted even if it was not timed.
+     * @param elapsedNanos The time in nanoseconds; 0 (not timed) only counts the call.
+     */
+    public void record(long elapsedNanos) {
+        if (Metrics.isOn()) {
+            calls.increment();
+        }
+        if (elapsedNanos != 0) {
+            histogram.record(elapsedNanos);
+        }
+    }
+
+    /**
+     * Gets the statistics recorded since the last reset without resetting them.
+     * @return A snapshot of the latencies in nanoseconds.
+     */
+    public LatencyHistogram.Snapshot getSnapshot() {
+        return histogram.snapshot();
+    }
+
+    /**
+     * Clears the statistics.
+     */
+    public void reset() {
+        histogram.reset();
+        calls.reset();
+        jmxSnapshot = null;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    @Override
+    public long getCalls() {
+        return jmxSnapshot().calls();
+    }
+
+    @Override
+    public long getCount() {
+        return jmxSnapshot().latencies().getCount();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return jmxSnapshot().latencies().getMean() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return jmxSnapshot().latencies().getValueAtPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return jmxSnapshot().latencies().getValueAtPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return jmxSnapshot().latencies().getValueAtPercentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return jmxSnapshot().latencies().getMax() / 1000.0;
+    }
+
+    @Override
+    public String snapshotAndReset() {
+        jmxSnapshot = null;
+        return name + ": calls=" + calls.sumThenReset() + " " + histogram.snapshotAndReset();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": calls=" + calls.sum() + " " + histogram.snapshot();
+    }
+
+    /**
+     * Gets the snapshot shared by the JMX getters, taking a new one if it is too old.
+     * @return A snapshot at most {@value #JMX_SNAPSHOT_MILLIS} ms old.
+     */
+    private JmxSnapshot jmxSnapshot() {
+        long now = System.nanoTime();
+        JmxSnapshot current = jmxSnapshot;
+        if (current == null || now - current.takenAt() > TimeUnit.MILLISECONDS.toNanos(JMX_SNAPSHOT_MILLIS)) {
+            current = new JmxSnapshot(now, calls.sum(), histogram.snapshot());
+            jmxSnapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * The call count and latencies read together for the JMX getters.
+     */
+    private record JmxSnapshot(long takenAt, long calls, LatencyHistogram.Snapshot latencies) {
+    }
+}
@@ -0,0 +1,43 @@
+package smarthome;
+
+/**
+ * JMX view of the latency statistics of one operation.
+ * Attributes cover everything recorded since the last reset; times are in microseconds.
+ */
+public interface OperationStatsMBean {
+    String getName();
+
+    /**
+     * Checks if only a sample of the calls is timed, see {@link MetricsMBean#getSampleRate()}.
+     * @return true for sampled operations.
+     */
+    boolean isSampled();
+
+    /**
+     * Gets the number of calls, timed or not.
+     * @return The call count.
+     */
+    long getCalls();
+
+    /**
+     * Gets the number of timed calls.
+     * @return The count of recorded latencies.
+     */
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    /**
+     * Takes the statistics recorded since the last reset and starts over.
+     * @return A one-line summary of the statistics that were taken.
+     */
+    String snapshotAndReset();
+}
@@ -0,0 +1,105 @@
+package smarthome;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which device commands actually need to be sent.
+ * Modes and bulk operations describe the state they want; when reconciliation is
+ * enabled, the reconciler compares that with each device's current state and
+ * suppresses commands that would change nothing, such as turning on a light that
+ * is already on. This saves radio traffic on real hardware.
+ *
+ * Counters of issued and suppressed commands show how much traffic was saved.
+ * Reconciliation is disabled by default, in which case every command is issued.
+ * Issued commands are also appended to the controller's {@link CommandLog}, if it has one.
+ */
+public class Reconciler {
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private volatile boolean enabled;
+    private volatile CommandLog commandLog;
+    
+    /**
+     * Sends an operation to a device unless reconciliation is enabled and the
+     * device is already in the desired state. The caller holds the device's lock.
+     * @param device The device as registered with the controller, possibly decorated.
+     * @param operation The operation describing the desired state.
+     * @param argument The operation's argument, or 0 if it takes none.
+     * @return true if the command was sent, false if it was suppressed.
+     */
+    public boolean apply(Device device, ActionPlan.Operation operation, int argument) {
+        if (enabled && operation.isSatisfied(device, argument)) {
+            suppressed.increment();
+            return false;
+        }
+        operation.perform(device, argument);
+        issued.increment();
+        CommandLog log = commandLog;
+        if (log != null) {
+            log.appendDeviceState(device);
+        }
+        return true;
+    }
+    
+    /**
+     * Sets the write-ahead log that every issued command is appended to.
+     * @param commandLog The log, or null to stop logging.
+     */
+    void setCommandLog(CommandLog commandLog) {
+        this.commandLog = commandLog;
+    }
+    
+    /**
+     * Enables or disables reconciliation.
+     * @param enabled true to skip commands that would not change a device's state.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        ConsoleOutput.info("Command reconciliation {}", enabled ? "enabled" : "disabled");
+    }
+    
+    /**
+     * Checks if reconciliation is enabled.
+     * @return true if no-op commands are suppressed, false otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Gets the number of commands sent to devices.
+     * @return The issued command count.
+     */
+    public long getIssuedCount() {
+        return issued.sum();
+    }
+    
+    /**
+     * Gets the number of commands skipped because the device was already in the desired state.
+     * @return The suppressed command count.
+     */
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+    
+    /**
+     * Resets both counters to zero.
+     */
+    public void resetCounters() {
+        issued.reset();
+        suppressed.reset();
+    }
+    
+    /**
+     * Returns a string representation of the counters.
+     * @return The issued and suppressed counts and the share of commands saved.
+     */
+    @Override
+    public String toString() {
+        long sent = issued.sum();
+        long skipped = suppressed.sum();
+        long total = sent + skipped;
+        return "Commands issued: " + sent + ", suppressed: " + skipped
+                + (total > 0 ? String.format(" (%.1f%% saved)", 100.0 * skipped / total) : "");
+    }
+}
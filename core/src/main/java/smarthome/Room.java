@@ -0,0 +1,242 @@
+package smarthome;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Represents a room in a smart home, containing multiple devices.
+ * Allows for collective control of all devices in the room.
+ *
+ * Devices are indexed by name and by type, so lookups cost the same for a
+ * bedroom with two devices as for an office floor with thousands. The device
+ * lists returned are live read-only views rather than copies, in the order the
+ * devices were added.
+ */
+public class Room {
+    private static final OperationStats TURN_ON_ALL = Metrics.operation("room.turnOnAllDevices");
+    private static final OperationStats TURN_OFF_ALL = Metrics.operation("room.turnOffAllDevices");
+    
+    private final String name;
+    private final Map<String, Device> devices;
+    private final DeviceList deviceList; // All devices in insertion order
+    private final DeviceIndex<Class<? extends Device>> devicesByBaseType;
+    private final DeviceIndex<Class<?>> devicesByQueriedType;
+    private final Set<Class<?>> queriedTypes;
+    private final AtomicLong topologyVersion;
+    
+    /**
+     * Creates a new room with the given name.
+     * @param name The name of the room.
+     */
+    public Room(String name) {
+        this(name, new AtomicLong());
+    }
+    
+    /**
+     * Creates a new room that reports membership changes to a shared version counter.
+     * @param name The name of the room.
+     * @param topologyVersion The counter to increment whenever a device is added or removed.
+     */
+    Room(String name, AtomicLong topologyVersion) {
+        this.name = name;
+        this.topologyVersion = topologyVersion;
+        this.devices = new ConcurrentHashMap<>();
+        this.deviceList = new DeviceList();
+        this.devicesByBaseType = new DeviceIndex<>();
+        this.devicesByQueriedType = new DeviceIndex<>();
+        this.queriedTypes = ConcurrentHashMap.newKeySet();
+    }
+    
+    /**
+     * Gets the name of the room.
+     * @return The room name.
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Adds a device to this room.
+     * A device with the same name already in the room is replaced.
+     * @param device The device to add.
+     */
+    public void addDevice(Device device) {
+        synchronized (this) {
+            Device previous = devices.put(device.getName(), device);
+            if (previous != null) {
+                unindexDevice(previous);
+            }
+            indexDevice(device);
+            topologyVersion.incrementAndGet();
+        }
+        ConsoleOutput.info("{} added to {}", device.getName(), name);
+    }
+    
+    /**
+     * Adds many devices at once without console output, for example while restoring a snapshot.
+     * @param newDevices The devices to add.
+     */
+    synchronized void addDevicesQuietly(Collection<Device> newDevices) {
+        for (Device device : newDevices) {
+            Device previous = devices.put(device.getName(), device);
+            if (previous != null) {
+                unindexDevice(previous);
+            }
+            indexDevice(device);
+        }
+        topologyVersion.incrementAndGet();
+    }
+    
+    /**
+     * Removes a device from this room.
+     * @param device The device to remove.
+     * @return true if the device was removed, false if it wasn't in the room.
+     */
+    public boolean removeDevice(Device device) {
+        boolean removed;
+        synchronized (this) {
+            removed = devices.remove(device.getName(), device);
+            if (removed) {
+                unindexDevice(device);
+                topologyVersion.incrementAndGet();
+            }
+        }
+        if (removed) {
+            ConsoleOutput.info("{} removed from {}", device.getName(), name);
+        }
+        return removed;
+    }
+    
+    /**
+     * Gets all devices in this room.
+     * @return A live read-only list of all devices.
+     */
+    public List<Device> getDevices() {
+        return deviceList.view();
+    }
+    
+    /**
+     * Gets a specific device by name.
+     * @param deviceName The name of the device.
+     * @return The device, or null if not found.
+     */
+    public Device getDevice(String deviceName) {
+        return devices.get(deviceName);
+    }
+    
+    /**
+     * Turns on all devices in the room.
+     */
+    public void turnOnAllDevices() {
+        turnOnAllDevices(Device::turnOn);
+    }
+    
+    /**
+     * Turns on all devices in the room, sending each command through the given action.
+     * The controller uses this to run each command under the device's lock.
+     * @param turnOn Turns on one device.
+     */
+    void turnOnAllDevices(Consumer<Device> turnOn) {
+        long start = TURN_ON_ALL.start();
+        ConsoleOutput.info("Turning on all devices in {}", name);
+        for (Device device : deviceList.view()) {
+            turnOn.accept(device);
+        }
+        TURN_ON_ALL.stop(start);
+    }
+    
+    /**
+     * Turns off all devices in the room.
+     */
+    public void turnOffAllDevices() {
+        turnOffAllDevices(Device::turnOff);
+    }
+    
+    /**
+     * Turns off all devices in the room, sending each command through the given action.
+     * The controller uses this to run each command under the device's lock.
+     * @param turnOff Turns off one device.
+     */
+    void turnOffAllDevices(Consumer<Device> turnOff) {
+        long start = TURN_OFF_ALL.start();
+        ConsoleOutput.info("Turning off all devices in {}", name);
+        for (Device device : deviceList.view()) {
+            turnOff.accept(device);
+        }
+        TURN_OFF_ALL.stop(start);
+    }
+    
+    /**
+     * Gets a specific type of devices from the room.
+     * Only devices that are themselves instances of the class match, so a decorated
+     * light is not returned for {@code Light.class}; see {@link #getDevicesOfBaseType(Class)}.
+     * The first query for a class builds its index, later queries are O(1).
+     * @param deviceClass The class of devices to get.
+     * @return A live read-only list of the devices of the specified type.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Device> List<T> getDevicesOfType(Class<T> deviceClass) {
+        if (!queriedTypes.contains(deviceClass)) {
+            synchronized (this) {
+                if (queriedTypes.add(deviceClass)) {
+                    for (Device device : deviceList.view()) {
+                        if (deviceClass.isInstance(device)) {
+                            devicesByQueriedType.add(deviceClass, device);
+                        }
+                    }
+                }
+            }
+        }
+        return (List<T>) (List<?>) devicesByQueriedType.get(deviceClass);
+    }
+    
+    /**
+     * Gets the devices of a concrete type, looking through decorators.
+     * The devices are returned as added, so commands still go through their decorators.
+     * @param type The concrete device class, such as Light, AirConditioner or Door.
+     * @return A live read-only list of the matching devices.
+     */
+    public List<Device> getDevicesOfBaseType(Class<? extends Device> type) {
+        return devicesByBaseType.get(type);
+    }
+    
+    /**
+     * Adds a device to the device list and the type indexes. Must be called while holding the room's lock.
+     * @param device The device to index.
+     */
+    private void indexDevice(Device device) {
+        deviceList.add(device);
+        devicesByBaseType.add(StoredDevice.typeOf(DeviceDecorator.getBaseDevice(device)), device);
+        for (Class<?> type : queriedTypes) {
+            if (type.isInstance(device)) {
+                devicesByQueriedType.add(type, device);
+            }
+        }
+    }
+    
+    /**
+     * Removes a device from the device list and the type indexes. Must be called while holding the room's lock.
+     * @param device The device to remove.
+     */
+    private void unindexDevice(Device device) {
+        deviceList.remove(device);
+        devicesByBaseType.remove(StoredDevice.typeOf(DeviceDecorator.getBaseDevice(device)), device);
+        for (Class<?> type : queriedTypes) {
+            devicesByQueriedType.remove(type, device);
+        }
+    }
+    
+    /**
+     * Returns a string representation of the room.
+     * @return A string representation including the room name and device count.
+     */
+    @Override
+    public String toString() {
+        return name + " (" + devices.size() + " devices)";
+    }
+}
@@ -0,0 +1,23 @@
+package smarthome;
+
+/**
+ * A reusable timer handle created by a {@link Scheduler}.
+ */
+public interface ScheduledTimer {
+    /**
+     * Schedules the task to run after the given delay, replacing any pending deadline.
+     * @param delayMillis The delay in milliseconds.
+     */
+    void schedule(long delayMillis);
+    
+    /**
+     * Cancels the pending deadline, if any. The timer can be scheduled again later.
+     */
+    void cancel();
+    
+    /**
+     * Checks if this timer is waiting to expire.
+     * @return true if a deadline is pending, false otherwise.
+     */
+    boolean isPending();
+}
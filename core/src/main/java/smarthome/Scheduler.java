@@ -0,0 +1,51 @@
+package smarthome;
+
+/**
+ * Source of time and delayed execution for automation components.
+ * Lets motion sensors and automation modes run either in real time or on a
+ * virtual clock driven by a {@link SimulationScheduler}.
+ */
+public interface Scheduler {
+    /**
+     * Gets the current time according to this scheduler.
+     * @return The current time in milliseconds since the epoch.
+     */
+    long currentTimeMillis();
+    
+    /**
+     * Creates a reusable timer for the given task.
+     * The timer is idle until {@link ScheduledTimer#schedule(long)} is called.
+     * @param task The task to run when the timer expires.
+     * @return A new timer.
+     */
+    ScheduledTimer newTimer(Runnable task);
+    
+    /**
+     * Runs a task once after the given delay.
+     * @param task The task to run.
+     * @param delayMillis The delay in milliseconds.
+     * @return The timer, which can be used to cancel the task.
+     */
+    default ScheduledTimer schedule(Runnable task, long delayMillis) {
+        ScheduledTimer timer = newTimer(task);
+        timer.schedule(delayMillis);
+        return timer;
+    }
+    
+    /**
+     * Runs a task repeatedly, first after the initial delay and then once every period.
+     * @param task The task to run.
+     * @param initialDelayMillis The delay before the first run in milliseconds.
+     * @param periodMillis The time between runs in milliseconds.
+     * @return The timer, which can be used to cancel all further runs.
+     */
+    default ScheduledTimer scheduleAtFixedRate(Runnable task, long initialDelayMillis, long periodMillis) {
+        ScheduledTimer[] timer = new ScheduledTimer[1];
+        timer[0] = newTimer(() -> {
+            timer[0].schedule(periodMillis); // Before running, so the task can cancel itself
+            task.run();
+        });
+        timer[0].schedule(initialDelayMillis);
+        return timer[0];
+    }
+}
@@ -0,0 +1,174 @@
+package smarthome;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Discrete-event simulation implementation of the Scheduler interface.
+ * Time only moves when the simulation is advanced, and it jumps straight to the
+ * next pending event, so weeks of automation run as fast as the tasks themselves.
+ *
+ * All tasks run on the thread that advances the simulation, in deadline order;
+ * tasks with the same deadline run in the order they were scheduled. Together with
+ * the seeded {@link #getRandom()} this makes every run reproducible.
+ */
+public class SimulationScheduler implements Scheduler {
+    private final PriorityQueue<Event> events;
+    private final Random random;
+    private long now;
+    private long sequence;
+    private long executedCount;
+
+    /**
+     * Creates a simulation starting at the given virtual time.
+     * @param startTimeMillis The initial virtual time in milliseconds since the epoch.
+     * @param seed The seed of the random generator handed to simulated components.
+     */
+    public SimulationScheduler(long startTimeMillis, long seed) {
+        this.events = new PriorityQueue<>();
+        this.random = new Random(seed);
+        this.now = startTimeMillis;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public ScheduledTimer newTimer(Runnable task) {
+        return new SimulatedTimer(task);
+    }
+
+    /**
+     * Gets the seeded random generator shared by the components of this simulation.
+     * @return The random generator.
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * Runs the next pending event, moving the clock to its deadline.
+     * @return true if an event was run, false if nothing is pending.
+     */
+    public boolean step() {
+        Event event;
+        while ((event = events.poll()) != null) {
+            if (event.isCurrent()) {
+                run(event);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs every event due up to the given time and then moves the clock there.
+     * @param timeMillis The virtual time to advance to, in milliseconds since the epoch.
+     * @return The number of events run.
+     */
+    public long runUntil(long timeMillis) {
+        long executed = 0;
+        Event next;
+        while ((next = events.peek()) != null && next.deadline <= timeMillis) {
+            events.poll();
+            if (next.isCurrent()) {
+                run(next);
+                executed++;
+            }
+        }
+        now = Math.max(now, timeMillis);
+        return executed;
+    }
+
+    /**
+     * Advances the simulation by the given duration.
+     * @param durationMillis The virtual time to advance, in milliseconds.
+     * @return The number of events run.
+     */
+    public long runFor(long durationMillis) {
+        return runUntil(now + durationMillis);
+    }
+
+    /**
+     * Moves the clock to an event's deadline and runs its task.
+     */
+    private void run(Event event) {
+        now = Math.max(now, event.deadline);
+        event.timer.pending = false;
+        executedCount++;
+        event.timer.task.run();
+    }
+
+    /**
+     * Gets the number of timers waiting to expire.
+     * @return The pending timer count.
+     */
+    public int getPendingCount() {
+        int pending = 0;
+        for (Event event : events) {
+            if (event.isCurrent()) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Gets the number of events run since the simulation started.
+     * @return The executed event count.
+     */
+    public long getExecutedCount() {
+        return executedCount;
+    }
+
+    /**
+     * A timer on the virtual clock.
+     * Rescheduling leaves the old queue entry behind; it is skipped when it comes up.
+     */
+    private class SimulatedTimer implements ScheduledTimer {
+        private final Runnable task;
+        private long generation;
+        private boolean pending;
+
+        private SimulatedTimer(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void schedule(long delayMillis) {
+            generation++;
+            pending = true;
+            events.add(new Event(now + Math.max(0, delayMillis), sequence++, this, generation));
+        }
+
+        @Override
+        public void cancel() {
+            generation++;
+            pending = false;
+        }
+
+        @Override
+        public boolean isPending() {
+            return pending;
+        }
+    }
+
+    /**
+     * A queue entry for one scheduling of a timer.
+     */
+    private record Event(long deadline, long sequence, SimulatedTimer timer, long generation)
+            implements Comparable<Event> {
+
+        boolean isCurrent() {
+            return timer.generation == generation;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byDeadline = Long.compare(deadline, other.deadline);
+            return byDeadline != 0 ? byDeadline : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,1237 @@
+package smarthome;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Main controller for the smart home system.
+ * Implements the Singleton pattern for the default home; a {@link HomeRegistry}
+ * hosts further, independent homes in the same process.
+ * Also implements the Subject interface to provide observer pattern functionality.
+ *
+ * The controller is safe to use from multiple threads. Devices and rooms live in
+ * concurrent maps, observers in a copy-on-write list, and every device command runs
+ * under that device's own lock, so commands to different devices never contend
+ * while commands to the same device are applied one at a time. Automation modes,
+ * the occupancy simulation and motion sensor timers of registered devices take
+ * the same locks. Calling methods on a device object directly bypasses them.
+ *
+ * The asynchronous command methods fan out to virtual threads, one per device,
+ * bounded by a per-home in-flight limit and a per-command timeout.
+ *
+ * Observers are notified on the command thread by default. After
+ * {@link #enableEventBus(int, WaitStrategy)}, notifications are published to a
+ * ring-buffer {@link EventBus} instead, and each observer runs on its own thread.
+ *
+ * After {@link #openCommandLog(Path, Duration)}, every command is written to a
+ * {@link CommandLog} and the command methods return once it is on disk.
+ */
+public class SmartHomeController implements Subject {
+    private static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    private static final long DEFAULT_COMMAND_TIMEOUT_MILLIS = 5_000;
+    // Name keywords the automation modes look for; matched anywhere in a device name
+    private static final String[] NAME_TAGS = {
+        "night", "security", "front", "living", "kitchen", "bathroom", "bedroom"
+    };
+    private static final OperationStats TURN_ON_DEVICE = Metrics.sampledOperation("controller.turnOnDevice");
+    private static final OperationStats TURN_OFF_DEVICE = Metrics.sampledOperation("controller.turnOffDevice");
+    private static final OperationStats[] TURN_ON_BY_TYPE = Metrics.byDeviceType("turnOn");
+    private static final OperationStats[] TURN_OFF_BY_TYPE = Metrics.byDeviceType("turnOff");
+    private static final OperationStats TURN_ON_ROOM = Metrics.operation("controller.turnOnRoom");
+    private static final OperationStats TURN_OFF_ROOM = Metrics.operation("controller.turnOffRoom");
+    private static final OperationStats TURN_ON_ALL = Metrics.operation("controller.turnOnAllDevices");
+    private static final OperationStats TURN_OFF_ALL = Metrics.operation("controller.turnOffAllDevices");
+    private static final OperationStats SET_AUTOMATION_MODE = Metrics.operation("controller.setAutomationMode");
+    private static final OperationStats NOTIFY_OBSERVERS = Metrics.sampledOperation("controller.notifyObservers");
+    
+    private final String homeId;
+    private final Map<String, Device> devices;
+    private final DeviceIndex<Class<? extends Device>> devicesByType;
+    private final DeviceIndex<String> devicesByTag;
+    private final Map<String, Room> rooms;
+    private final List<BatchObserver> observers;
+    private final Map<String, ReentrantLock> deviceLocks;
+    private final ExecutorService commandExecutor;
+    private final AtomicLong topologyVersion;
+    private final Reconciler reconciler;
+    private final Map<AutomationMode, CachedPlan> plans;
+    private final Object modeLock = new Object(); // Orders mode changes with their SET_MODE records
+    private volatile Semaphore inFlightPermits;
+    private volatile long commandTimeoutMillis;
+    private volatile AutomationMode currentMode;
+    private volatile EventBus eventBus;
+    private volatile CommandLog commandLog;
+    
+    /**
+     * Lazily creates the singleton instance.
+     * Class initialization guarantees safe publication to every thread.
+     */
+    private static class InstanceHolder {
+        private static final SmartHomeController INSTANCE = new SmartHomeController(HomeRegistry.DEFAULT_HOME_ID);
+    }
+    
+    /**
+     * Creates a controller for one home.
+     * Outside this package, the shared instance comes from {@link #getInstance()} and
+     * further homes from a {@link HomeRegistry}.
+     * @param homeId The id of the home.
+     */
+    SmartHomeController(String homeId) {
+        this.homeId = homeId;
+        this.devices = new ConcurrentHashMap<>();
+        this.devicesByType = new DeviceIndex<>();
+        this.devicesByTag = new DeviceIndex<>();
+        this.rooms = new ConcurrentHashMap<>();
+        this.observers = new CopyOnWriteArrayList<>();
+        this.currentMode = null;
+        this.deviceLocks = new ConcurrentHashMap<>();
+        this.commandExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        this.topologyVersion = new AtomicLong();
+        this.reconciler = new Reconciler();
+        this.plans = Collections.synchronizedMap(new WeakHashMap<>());
+        this.inFlightPermits = new Semaphore(DEFAULT_MAX_IN_FLIGHT);
+        this.commandTimeoutMillis = DEFAULT_COMMAND_TIMEOUT_MILLIS;
+    }
+    
+    /**
+     * Gets the singleton instance of the SmartHomeController.
+     * Creates it if it doesn't exist yet.
+     * This is the default home, also registered in every {@link HomeRegistry}
+     * as {@value HomeRegistry#DEFAULT_HOME_ID}.
+     * @return The singleton instance of SmartHomeController
+     */
+    public static SmartHomeController getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+    
+    /**
+     * Gets the id of the home this controller manages.
+     * @return The home id.
+     */
+    public String getHomeId() {
+        return homeId;
+    }
+    
+    /**
+     * Adds a device to the controller.
+     * @param device The device to add.
+     */
+    public void addDevice(Device device) {
+        devices.compute(device.getName(), (name, previous) -> {
+            CommandLog log = commandLog;
+            if (log != null) {
+                // Logged before the device is visible, so its commands can never precede it in the log
+                log.appendAddDevice(device);
+            }
+            if (previous != null) {
+                unindexDevice(previous);
+            }
+            indexDevice(device);
+            return device;
+        });
+        topologyVersion.incrementAndGet();
+        ConsoleOutput.info("Device added: {}", device.getName());
+        syncCommandLog();
+    }
+    
+    /**
+     * Removes a device from the controller.
+     * @param deviceName The name of the device to remove.
+     * @return true if the device was removed, false if it didn't exist.
+     */
+    public boolean removeDevice(String deviceName) {
+        Device removed = devices.remove(deviceName);
+        if (removed != null) {
+            unindexDevice(removed);
+            // The lock stays: a command may still hold or wait for it, and a second lock for the name would not exclude it
+            cancelMotionTimers(removed);
+            topologyVersion.incrementAndGet();
+            logCommand(CommandLog.REMOVE_DEVICE, deviceName);
+            ConsoleOutput.info("Device removed: {}", deviceName);
+            syncCommandLog();
+            return true;
+        }
+        ConsoleOutput.warn("Device not found: {}", deviceName);
+        return false;
+    }
+    
+    /**
+     * Gets a device by name.
+     * @param deviceName The name of the device to get.
+     * @return The device, or null if not found.
+     */
+    public Device getDevice(String deviceName) {
+        return devices.get(deviceName);
+    }
+    
+    /**
+     * Gets all devices managed by this controller.
+     * @return A list of all devices.
+     */
+    public List<Device> getAllDevices() {
+        return new ArrayList<>(devices.values());
+    }
+    
+    /**
+     * Gets the devices of a concrete type, looking through decorators.
+     * For example, a light wrapped in a motion sensor decorator is returned for {@code Light.class}.
+     * The devices are returned as registered, so commands still go through their decorators;
+     * use {@link DeviceDecorator#getBaseDevice(Device)} to reach type-specific settings.
+     * @param type The concrete device class, such as Light, AirConditioner or Door.
+     * @return A live read-only view of the matching devices.
+     */
+    public Collection<Device> getDevicesOfType(Class<? extends Device> type) {
+        return devicesByType.get(type);
+    }
+    
+    /**
+     * Gets the devices whose name carries the given tag.
+     * Every word of a device name is a tag, and so are the keywords night, security,
+     * front, living, kitchen, bathroom and bedroom wherever they appear in the name.
+     * Tags are case-insensitive.
+     * @param tag The tag to look up.
+     * @return A live read-only view of the matching devices.
+     */
+    public Collection<Device> getDevicesByTag(String tag) {
+        return devicesByTag.get(tag.toLowerCase(Locale.ROOT));
+    }
+    
+    /**
+     * Adds a device to the secondary indexes and runs its motion sensor commands under its lock.
+     * @param device The device to index.
+     */
+    private void indexDevice(Device device) {
+        devicesByType.add(StoredDevice.typeOf(DeviceDecorator.getBaseDevice(device)), device);
+        for (String tag : tagsOf(device.getName())) {
+            devicesByTag.add(tag, device);
+        }
+        guardMotionSensors(device, command -> runLocked(device, d -> command.run()), commandExecutor);
+    }
+    
+    /**
+     * Removes a device from the secondary indexes and stops locking its motion sensor commands.
+     * @param device The device to remove.
+     */
+    private void unindexDevice(Device device) {
+        devicesByType.remove(StoredDevice.typeOf(DeviceDecorator.getBaseDevice(device)), device);
+        for (String tag : tagsOf(device.getName())) {
+            devicesByTag.remove(tag, device);
+        }
+        guardMotionSensors(device, null, null);
+    }
+    
+    /**
+     * Sets how the motion sensors in a device's decorator chain run their commands.
+     * @param device The device, possibly decorated.
+     * @param guard Runs each motion sensor command, or null to run them directly.
+     * @param executor Runs guarded auto-offs off the scheduler thread, or null.
+     */
+    private static void guardMotionSensors(Device device, Consumer<Runnable> guard, Executor executor) {
+        for (Device d = device; d instanceof DeviceDecorator decorator; d = decorator.getDecoratedDevice()) {
+            if (d instanceof MotionSensorDecorator motionSensor) {
+                motionSensor.setCommandGuard(guard, executor);
+            }
+        }
+    }
+    
+    /**
+     * Stops pending motion timers anywhere in a device's decorator chain.
+     * @param device The device, possibly decorated.
+     */
+    private static void cancelMotionTimers(Device device) {
+        for (Device d = device; d instanceof DeviceDecorator decorator; d = decorator.getDecoratedDevice()) {
+            if (d instanceof MotionSensorDecorator motionSensor) {
+                motionSensor.cancelAutoOff();
+            }
+        }
+    }
+    
+    /**
+     * Computes the normalized tags of a device name.
+     * @param deviceName The device name.
+     * @return The words of the name plus the known keywords it contains, in lower case.
+     */
+    private static List<String> tagsOf(String deviceName) {
+        String normalized = deviceName.toLowerCase(Locale.ROOT);
+        List<String> tags = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); ) {
+            int c = i < normalized.length() ? normalized.codePointAt(i) : ' ';
+            boolean wordChar = Character.isLetterOrDigit(c);
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = normalized.substring(start, i);
+                if (!tags.contains(word)) {
+                    tags.add(word);
+                }
+                start = -1;
+            }
+            i += Character.charCount(c);
+        }
+        for (String keyword : NAME_TAGS) {
+            if (normalized.contains(keyword) && !tags.contains(keyword)) {
+                tags.add(keyword);
+            }
+        }
+        return tags;
+    }
+    
+    /**
+     * Turns on a device by name.
+     * @param deviceName The name of the device to turn on.
+     * @return true if the device was turned on, false if not found.
+     */
+    public boolean turnOnDevice(String deviceName) {
+        long start = TURN_ON_DEVICE.start();
+        DeviceCommandEvent event = new DeviceCommandEvent();
+        event.begin();
+        Device device = devices.get(deviceName);
+        if (device != null) {
+            boolean issued;
+            ReentrantLock lock = lockFor(deviceName);
+            lock.lock();
+            try {
+                issued = reconciler.apply(device, ActionPlan.Operation.TURN_ON, 0);
+                if (issued) {
+                    notifyObservers(deviceName, device.isOn(), "Device turned ON");
+                }
+            } finally {
+                lock.unlock();
+            }
+            event.commit(device, ActionPlan.Operation.TURN_ON, issued);
+            syncCommandLog();
+            long elapsed = TURN_ON_DEVICE.stop(start);
+            if (elapsed != 0) {
+                TURN_ON_BY_TYPE[Metrics.deviceTypeIndex(device)].record(elapsed);
+            }
+            return true;
+        }
+        ConsoleOutput.warn("Device not found: {}", deviceName);
+        return false;
+    }
+    
+    /**
+     * Turns off a device by name.
+     * @param deviceName The name of the device to turn off.
+     * @return true if the device was turned off, false if not found.
+     */
+    public boolean turnOffDevice(String deviceName) {
+        long start = TURN_OFF_DEVICE.start();
+        DeviceCommandEvent event = new DeviceCommandEvent();
+        event.begin();
+        Device device = devices.get(deviceName);
+        if (device != null) {
+            boolean issued;
+            ReentrantLock lock = lockFor(deviceName);
+            lock.lock();
+            try {
+                issued = reconciler.apply(device, ActionPlan.Operation.TURN_OFF, 0);
+                if (issued) {
+                    notifyObservers(deviceName, device.isOn(), "Device turned OFF");
+                }
+            } finally {
+                lock.unlock();
+            }
+            event.commit(device, ActionPlan.Operation.TURN_OFF, issued);
+            syncCommandLog();
+            long elapsed = TURN_OFF_DEVICE.stop(start);
+            if (elapsed != 0) {
+                TURN_OFF_BY_TYPE[Metrics.deviceTypeIndex(device)].record(elapsed);
+            }
+            return true;
+        }
+        ConsoleOutput.warn("Device not found: {}", deviceName);
+        return false;
+    }
+    
+    /**
+     * Performs one operation on a device by name, such as setting a light's brightness
+     * or locking a door, through the reconciler and under the device's lock.
+     * Observers are notified if the operation turned the device on or off.
+     * @param deviceName The name of the device.
+     * @param operation The operation.
+     * @param argument The operation's argument, or 0 if it takes none.
+     * @return true if the operation was performed, false if the device was not found.
+     * @throws IllegalArgumentException if the device's type does not support the operation.
+     */
+    public boolean performOperation(String deviceName, ActionPlan.Operation operation, int argument) {
+        Device device = devices.get(deviceName);
+        if (device == null) {
+            ConsoleOutput.warn("Device not found: {}", deviceName);
+            return false;
+        }
+        if (!operation.appliesTo(device)) {
+            throw new IllegalArgumentException(deviceName + " does not support " + operation);
+        }
+        DeviceCommandEvent event = new DeviceCommandEvent();
+        event.begin();
+        boolean issued;
+        ReentrantLock lock = lockFor(deviceName);
+        lock.lock();
+        try {
+            boolean wasOn = device.isOn();
+            issued = reconciler.apply(device, operation, argument);
+            if (issued && device.isOn() != wasOn) {
+                notifyObservers(deviceName, device.isOn(), device.isOn() ? "Device turned ON" : "Device turned OFF");
+            }
+        } finally {
+            lock.unlock();
+        }
+        event.commit(device, operation, issued);
+        syncCommandLog();
+        return true;
+    }
+    
+    /**
+     * Turns on all devices.
+     */
+    public void turnOnAllDevices() {
+        long start = TURN_ON_ALL.start();
+        applyToAll(devices.values(), ActionPlan.Operation.TURN_ON, "Device turned ON (mass action)");
+        syncCommandLog();
+        TURN_ON_ALL.stop(start);
+    }
+    
+    /**
+     * Turns off all devices.
+     */
+    public void turnOffAllDevices() {
+        long start = TURN_OFF_ALL.start();
+        applyToAll(devices.values(), ActionPlan.Operation.TURN_OFF, "Device turned OFF (mass action)");
+        syncCommandLog();
+        TURN_OFF_ALL.stop(start);
+    }
+    
+    /**
+     * Sends an operation to every target device under its lock and reports the
+     * devices that were actually sent a command as one batch.
+     * @param targets The devices to command.
+     * @param operation The operation describing the desired state.
+     * @param message The notification message.
+     */
+    private void applyToAll(Collection<Device> targets, ActionPlan.Operation operation, String message) {
+        NotificationBatch batch = new NotificationBatch(message, targets.size());
+        for (Device device : targets) {
+            applyTo(device, operation, batch);
+        }
+        notifyObservers(batch);
+    }
+    
+    /**
+     * Applies an operation to one device under its lock and adds the device to a batch
+     * if a command was sent.
+     * @param device The target device.
+     * @param operation The operation to apply.
+     * @param batch Collects the devices that were sent a command.
+     */
+    private void applyTo(Device device, ActionPlan.Operation operation, NotificationBatch batch) {
+        DeviceCommandEvent event = new DeviceCommandEvent();
+        event.begin();
+        boolean issued;
+        ReentrantLock lock = lockFor(device.getName());
+        lock.lock();
+        try {
+            issued = reconciler.apply(device, operation, 0);
+            if (issued) {
+                batch.add(device.getName(), device.isOn());
+            }
+        } finally {
+            lock.unlock();
+        }
+        event.commit(device, operation, issued);
+    }
+    
+    /**
+     * Gets the reconciler that decides which device commands are actually sent.
+     * Enable it to skip commands for devices already in the desired state.
+     * @return The controller's reconciler.
+     */
+    public Reconciler getReconciler() {
+        return reconciler;
+    }
+    
+    /**
+     * Creates a new room.
+     * @param roomName The name of the room to create.
+     * @return The newly created room.
+     */
+    public Room createRoom(String roomName) {
+        Room room = new Room(roomName, topologyVersion);
+        rooms.put(roomName, room);
+        topologyVersion.incrementAndGet();
+        logCommand(CommandLog.CREATE_ROOM, roomName);
+        ConsoleOutput.info("Room created: {}", roomName);
+        syncCommandLog();
+        return room;
+    }
+    
+    /**
+     * Gets a room by name.
+     * @param roomName The name of the room.
+     * @return The room, or null if not found.
+     */
+    public Room getRoom(String roomName) {
+        return rooms.get(roomName);
+    }
+    
+    /**
+     * Gets all rooms.
+     * @return A list of all rooms.
+     */
+    public List<Room> getAllRooms() {
+        return new ArrayList<>(rooms.values());
+    }
+    
+    /**
+     * Adds a device to a room.
+     * @param deviceName The name of the device to add.
+     * @param roomName The name of the room to add the device to.
+     * @return true if the device was added, false if the device or room was not found.
+     */
+    public boolean addDeviceToRoom(String deviceName, String roomName) {
+        Device device = devices.get(deviceName);
+        Room room = rooms.get(roomName);
+        
+        if (device == null) {
+            ConsoleOutput.warn("Device not found: {}", deviceName);
+            return false;
+        }
+        
+        if (room == null) {
+            ConsoleOutput.warn("Room not found: {}", roomName);
+            return false;
+        }
+        
+        room.addDevice(device);
+        logCommand(CommandLog.ADD_DEVICE_TO_ROOM, deviceName, roomName);
+        syncCommandLog();
+        return true;
+    }
+    
+    /**
+     * Turns on all devices in a room.
+     * @param roomName The name of the room.
+     * @return true if the room was found, false otherwise.
+     */
+    public boolean turnOnRoom(String roomName) {
+        long start = TURN_ON_ROOM.start();
+        Room room = rooms.get(roomName);
+        if (room == null) {
+            ConsoleOutput.warn("Room not found: {}", roomName);
+            return false;
+        }
+        
+        ConsoleOutput.info("Turning on all devices in room: {}", roomName);
+        NotificationBatch batch = new NotificationBatch("Device turned ON (room: " + roomName + ")", room.getDevices().size());
+        room.turnOnAllDevices(device -> applyTo(device, ActionPlan.Operation.TURN_ON, batch));
+        notifyObservers(batch);
+        syncCommandLog();
+        TURN_ON_ROOM.stop(start);
+        return true;
+    }
+    
+    /**
+     * Turns off all devices in a room.
+     * @param roomName The name of the room.
+     * @return true if the room was found, false otherwise.
+     */
+    public boolean turnOffRoom(String roomName) {
+        long start = TURN_OFF_ROOM.start();
+        Room room = rooms.get(roomName);
+        if (room == null) {
+            ConsoleOutput.warn("Room not found: {}", roomName);
+            return false;
+        }
+        
+        ConsoleOutput.info("Turning off all devices in room: {}", roomName);
+        NotificationBatch batch = new NotificationBatch("Device turned OFF (room: " + roomName + ")", room.getDevices().size());
+        room.turnOffAllDevices(device -> applyTo(device, ActionPlan.Operation.TURN_OFF, batch));
+        notifyObservers(batch);
+        syncCommandLog();
+        TURN_OFF_ROOM.stop(start);
+        return true;
+    }
+    
+    /**
+     * Sets the current automation mode.
+     * @param mode The automation mode to set.
+     */
+    public void setAutomationMode(AutomationMode mode) {
+        long start = SET_AUTOMATION_MODE.start();
+        synchronized (modeLock) {
+            this.currentMode = mode;
+            logCommand(CommandLog.SET_MODE, mode != null ? mode.getName() : "");
+        }
+        if (mode != null) {
+            ConsoleOutput.info("Activating automation mode: {}", mode.getName());
+            mode.apply(this);
+            long elapsed = SET_AUTOMATION_MODE.stop(start);
+            if (elapsed != 0) {
+                Metrics.operation("mode." + mode.getName() + ".apply").record(elapsed);
+            }
+        } else {
+            ConsoleOutput.info("Automation mode disabled");
+        }
+        syncCommandLog();
+    }
+    
+    /**
+     * Gets the current automation mode.
+     * @return The current automation mode, or null if none is active.
+     */
+    public AutomationMode getCurrentMode() {
+        return currentMode;
+    }
+    
+    /**
+     * Gets the compiled action plan of a mode, compiling it on first use.
+     * Plans are cached per mode instance and recompiled only after devices or rooms
+     * have been added or removed since the plan was compiled.
+     * @param mode The automation mode.
+     * @return The current plan, or null if the mode cannot be precompiled.
+     */
+    public ActionPlan getActionPlan(AutomationMode mode) {
+        long version = topologyVersion.get();
+        CachedPlan cached = plans.get(mode);
+        if (cached != null && cached.topologyVersion() == version) {
+            return cached.plan();
+        }
+        // A change during compilation leaves a stale version behind, so the next call recompiles
+        ActionPlan plan = mode.compile(this);
+        if (plan != null) {
+            plans.put(mode, new CachedPlan(plan, version));
+        }
+        return plan;
+    }
+    
+    /**
+     * Recovers the home from a write-ahead command log and logs every command from now on.
+     * The latest checkpoint snapshot in the directory is restored, replacing the current
+     * devices and rooms, and the commands logged after it are replayed without notifying
+     * observers. With no snapshot, the commands are replayed on top of the current home.
+     * Afterwards each command method returns once its changes are on disk; commands
+     * running at the same time share one fsync.
+     * Call {@link #checkpoint()} now and then to bound the log and the recovery time.
+     * Snapshots restored with {@link #restoreSnapshot(Path)} are not logged; take a
+     * checkpoint after restoring one.
+     * @param directory The log directory, created if it does not exist.
+     * @param commitDelay How long to wait for more commands before each fsync, or zero
+     *                    to write as soon as the previous fsync has finished.
+     * @throws IOException if the log cannot be read or written.
+     * @throws IllegalStateException if a command log is already open.
+     */
+    public synchronized void openCommandLog(Path directory, Duration commitDelay) throws IOException {
+        if (commandLog != null) {
+            throw new IllegalStateException("Command log already open: " + commandLog.getDirectory());
+        }
+        int segment = CommandLog.recover(directory, this);
+        AutomationMode mode = currentMode;
+        if (mode != null) {
+            mode.afterPlanApplied(this);
+        }
+        CommandLog log = new CommandLog(directory, segment, commitDelay, CommandLog.DEFAULT_GROUP_BYTES);
+        reconciler.setCommandLog(log);
+        commandLog = log;
+        ConsoleOutput.info("Command log opened in {} (commit delay {} us)", directory, commitDelay.toNanos() / 1000);
+    }
+    
+    /**
+     * Writes a snapshot into the command log directory and deletes the log segments it replaces.
+     * Commands keep running while the snapshot is written.
+     * @throws IOException if the snapshot cannot be written.
+     * @throws IllegalStateException if no command log is open.
+     */
+    public void checkpoint() throws IOException {
+        CommandLog log = commandLog;
+        if (log == null) {
+            throw new IllegalStateException("No command log open");
+        }
+        log.checkpoint(this);
+    }
+    
+    /**
+     * Writes the remaining commands to the log and stops logging.
+     * @throws IOException if the remaining commands could not be written.
+     */
+    public synchronized void closeCommandLog() throws IOException {
+        CommandLog log = commandLog;
+        if (log != null) {
+            reconciler.setCommandLog(null);
+            commandLog = null;
+            log.close();
+        }
+    }
+    
+    /**
+     * Gets the write-ahead command log.
+     * @return The log, or null if commands are not logged.
+     */
+    public CommandLog getCommandLog() {
+        return commandLog;
+    }
+    
+    /**
+     * Sets the current mode without applying it, when replaying a command log.
+     * @param mode The automation mode.
+     */
+    void restoreAutomationMode(AutomationMode mode) {
+        this.currentMode = mode;
+    }
+    
+    /**
+     * Logs the current automation mode again, for a checkpoint that deletes the earlier record.
+     * Mode changes log under the same lock, so a concurrent change is logged after this record.
+     */
+    void logCurrentMode() {
+        synchronized (modeLock) {
+            AutomationMode mode = currentMode;
+            logCommand(CommandLog.SET_MODE, mode != null ? mode.getName() : "");
+        }
+    }
+    
+    /**
+     * Appends a topology or mode command to the command log, if there is one.
+     */
+    private void logCommand(byte type, String... values) {
+        CommandLog log = commandLog;
+        if (log != null) {
+            log.appendStrings(type, values);
+        }
+    }
+    
+    /**
+     * Waits until the commands logged so far are on disk, if commands are logged.
+     */
+    private void syncCommandLog() {
+        CommandLog log = commandLog;
+        if (log != null) {
+            log.sync();
+        }
+    }
+    
+    /**
+     * Writes the devices, their decorator chains and state, and the rooms to a binary snapshot file.
+     * Commands running at the same time may or may not be reflected in the snapshot.
+     * @param file The snapshot file, replaced atomically.
+     * @throws IOException if the file cannot be written.
+     * @throws IllegalArgumentException if a device or decorator type cannot be stored.
+     */
+    public void saveSnapshot(Path file) throws IOException {
+        Collection<Device> allDevices = devices.values();
+        HomeSnapshot.write(file, allDevices, rooms.values());
+        ConsoleOutput.info("Snapshot saved: {} devices, {} rooms", allDevices.size(), rooms.size());
+    }
+    
+    /**
+     * Replaces all devices and rooms with the contents of a snapshot file.
+     * @param file The snapshot file.
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    public void restoreSnapshot(Path file) throws IOException {
+        restoreSnapshot(file, null);
+    }
+    
+    /**
+     * Replaces all devices and rooms with the contents of a snapshot file,
+     * keeping the restored device state in the given store.
+     * Devices are loaded through bulk paths with a single line of console output,
+     * and observers are not notified. Motion sensors use the shared timing wheel.
+     * @param file The snapshot file.
+     * @param store The store for the restored device state, or null for standalone devices.
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    public void restoreSnapshot(Path file, DeviceStateStore store) throws IOException {
+        // Parse everything before touching the current home, so a bad file changes nothing
+        restore(HomeSnapshot.read(file, store, TimingWheelScheduler.getShared()));
+        ConsoleOutput.info("Snapshot restored: {} devices, {} rooms", devices.size(), rooms.size());
+    }
+    
+    /**
+     * Writes the home to a snapshot in memory, for handing it over to another cluster node.
+     * @return The snapshot bytes, in the same format as {@link #saveSnapshot(Path)}.
+     * @throws IllegalArgumentException if a device or decorator type cannot be stored.
+     */
+    byte[] exportSnapshot() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            HomeSnapshot.write(bytes, devices.values(), rooms.values());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown by an in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Replaces all devices and rooms with a snapshot taken by {@link #exportSnapshot()}.
+     * @param snapshot The snapshot bytes.
+     * @throws IOException if the bytes are not a valid snapshot.
+     */
+    void importSnapshot(byte[] snapshot) throws IOException {
+        restore(HomeSnapshot.read(snapshot, "home " + homeId, null, TimingWheelScheduler.getShared()));
+        ConsoleOutput.debug("Home imported: {}", homeId);
+    }
+    
+    /**
+     * Replaces all devices and rooms with the contents of a parsed snapshot.
+     * Replaced devices that are views over a state store release their ids there.
+     * @param snapshot The snapshot.
+     */
+    private void restore(HomeSnapshot snapshot) {
+        for (Device removed : devices.values()) {
+            cancelMotionTimers(removed);
+            if (DeviceDecorator.getBaseDevice(removed) instanceof StoredDevice view) {
+                view.release(); // Frees the id for later devices in the same store
+            }
+        }
+        devices.clear();
+        devicesByType.clear();
+        devicesByTag.clear();
+        rooms.clear();
+        
+        for (Device device : snapshot.getDevices()) {
+            Device previous = devices.put(device.getName(), device);
+            if (previous != null) {
+                unindexDevice(previous);
+            }
+            indexDevice(device);
+        }
+        for (Map.Entry<String, List<Device>> entry : snapshot.getRooms().entrySet()) {
+            Room room = new Room(entry.getKey(), topologyVersion);
+            room.addDevicesQuietly(entry.getValue());
+            rooms.put(room.getName(), room);
+        }
+        topologyVersion.incrementAndGet();
+    }
+    
+    /**
+     * Turns on a device by name without blocking the caller.
+     * @param deviceName The name of the device to turn on.
+     * @return A future completed with the outcome; an unknown device is reported as failed.
+     */
+    public CompletableFuture<CommandResult> turnOnDeviceAsync(String deviceName) {
+        return deviceCommandAsync(deviceName, ActionPlan.Operation.TURN_ON, "Device turned ON");
+    }
+    
+    /**
+     * Turns off a device by name without blocking the caller.
+     * @param deviceName The name of the device to turn off.
+     * @return A future completed with the outcome; an unknown device is reported as failed.
+     */
+    public CompletableFuture<CommandResult> turnOffDeviceAsync(String deviceName) {
+        return deviceCommandAsync(deviceName, ActionPlan.Operation.TURN_OFF, "Device turned OFF");
+    }
+    
+    /**
+     * Turns on all devices in a room concurrently.
+     * @param roomName The name of the room.
+     * @return A future completed once every device has finished or timed out;
+     *         an unknown room completes exceptionally with IllegalArgumentException.
+     */
+    public CompletableFuture<CommandResult> turnOnRoomAsync(String roomName) {
+        Room room = rooms.get(roomName);
+        if (room == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Room not found: " + roomName));
+        }
+        return fanOut("Turn on room " + roomName, room.getDevices(), ActionPlan.Operation.TURN_ON,
+                "Device turned ON (room: " + roomName + ")");
+    }
+    
+    /**
+     * Turns off all devices in a room concurrently.
+     * @param roomName The name of the room.
+     * @return A future completed once every device has finished or timed out;
+     *         an unknown room completes exceptionally with IllegalArgumentException.
+     */
+    public CompletableFuture<CommandResult> turnOffRoomAsync(String roomName) {
+        Room room = rooms.get(roomName);
+        if (room == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Room not found: " + roomName));
+        }
+        return fanOut("Turn off room " + roomName, room.getDevices(), ActionPlan.Operation.TURN_OFF,
+                "Device turned OFF (room: " + roomName + ")");
+    }
+    
+    /**
+     * Turns on all devices concurrently.
+     * @return A future completed once every device has finished or timed out.
+     */
+    public CompletableFuture<CommandResult> turnOnAllDevicesAsync() {
+        return fanOut("Turn on all devices", devices.values(), ActionPlan.Operation.TURN_ON, "Device turned ON (mass action)");
+    }
+    
+    /**
+     * Turns off all devices concurrently.
+     * @return A future completed once every device has finished or timed out.
+     */
+    public CompletableFuture<CommandResult> turnOffAllDevicesAsync() {
+        return fanOut("Turn off all devices", devices.values(), ActionPlan.Operation.TURN_OFF, "Device turned OFF (mass action)");
+    }
+    
+    /**
+     * Sets the current automation mode without blocking the caller.
+     * For a mode with an action plan, each device's actions run on their own virtual
+     * thread and the result reports them per device. Other modes are applied on one
+     * virtual thread and reported under the mode's name.
+     * @param mode The automation mode to set.
+     * @return A future completed once the mode has been applied or timed out.
+     */
+    public CompletableFuture<CommandResult> setAutomationModeAsync(AutomationMode mode) {
+        ActionPlan plan = mode != null ? getActionPlan(mode) : null;
+        if (plan == null) {
+            String target = mode != null ? mode.getName() : "No mode";
+            CompletableFuture<Void> future = submitCommand(() -> setAutomationMode(mode));
+            return collect("Set automation mode " + target, List.of(target), List.of(future));
+        }
+        
+        synchronized (modeLock) {
+            this.currentMode = mode;
+            logCommand(CommandLog.SET_MODE, mode.getName());
+        }
+        ConsoleOutput.info("Activating automation mode: {}", mode.getName());
+        List<Device> targets = new ArrayList<>(plan.getDeviceCount());
+        for (int group = 0; group < plan.getDeviceCount(); group++) {
+            targets.add(plan.getDevice(group));
+        }
+        return fanOut("Set automation mode " + mode.getName(), targets,
+                group -> plan.executeGroup(group, reconciler), "Device updated by " + mode.getName())
+                .thenApply(result -> {
+                    mode.afterPlanApplied(this);
+                    return result;
+                });
+    }
+    
+    /**
+     * Sets how many asynchronous device commands may run at the same time.
+     * Commands already running keep the limit they started with.
+     * @param maxInFlight The maximum number of concurrent commands.
+     * @throws IllegalArgumentException if the limit is not positive.
+     */
+    public void setMaxInFlightCommands(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("In-flight limit must be positive: " + maxInFlight);
+        }
+        this.inFlightPermits = new Semaphore(maxInFlight);
+    }
+    
+    /**
+     * Sets how long an asynchronous command may take, including time spent waiting
+     * for an in-flight slot, before it is reported as timed out.
+     * @param timeout The per-command timeout.
+     * @throws IllegalArgumentException if the timeout is not positive.
+     */
+    public void setCommandTimeout(Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Command timeout must be positive: " + timeout);
+        }
+        this.commandTimeoutMillis = timeout.toMillis();
+    }
+    
+    /**
+     * Runs an operation on one device asynchronously and notifies observers if it was sent.
+     */
+    private CompletableFuture<CommandResult> deviceCommandAsync(String deviceName, ActionPlan.Operation operation,
+                                                                String message) {
+        Device device = devices.get(deviceName);
+        if (device == null) {
+            CommandResult result = new CommandResult(message + ": " + deviceName);
+            result.addFailed(deviceName, new IllegalArgumentException("Device not found: " + deviceName));
+            return CompletableFuture.completedFuture(result);
+        }
+        return fanOut(message + ": " + deviceName, List.of(device), operation, message);
+    }
+    
+    /**
+     * Sends an operation to every target device through the reconciler, each on its own virtual thread.
+     */
+    private CompletableFuture<CommandResult> fanOut(String description, Collection<Device> targets,
+                                                    ActionPlan.Operation operation, String message) {
+        List<Device> list = new ArrayList<>(targets);
+        return fanOut(description, list, index -> reconciler.apply(list.get(index), operation, 0), message);
+    }
+    
+    /**
+     * Runs a command for every target device on its own virtual thread, under the device's lock,
+     * and aggregates the outcomes. Devices that succeeded and were actually sent a command
+     * are reported to observers as one batch.
+     * @param command Runs the command for the target at the given index and returns true if
+     *                anything was sent to the device.
+     */
+    private CompletableFuture<CommandResult> fanOut(String description, List<Device> targets,
+                                                    IntPredicate command, String message) {
+        List<String> names = new ArrayList<>(targets.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(targets.size());
+        Set<String> issued = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < targets.size(); i++) {
+            Device device = targets.get(i);
+            int index = i;
+            names.add(device.getName());
+            futures.add(submitCommand(() -> runLocked(device, d -> {
+                if (command.test(index)) {
+                    issued.add(d.getName());
+                }
+            })));
+        }
+        CompletableFuture<CommandResult> done = collect(description, names, futures).thenApply(result -> {
+            NotificationBatch batch = new NotificationBatch(message, result.getSucceeded().size());
+            for (String name : result.getSucceeded()) {
+                Device device = devices.get(name);
+                if (device != null && issued.contains(name)) {
+                    batch.add(name, device.isOn());
+                }
+            }
+            notifyObservers(batch);
+            return result;
+        });
+        if (commandLog == null) {
+            return done;
+        }
+        // Wait for the log on a virtual thread, never on the thread that completed the last command
+        return done.thenApplyAsync(result -> {
+            syncCommandLog();
+            return result;
+        }, commandExecutor);
+    }
+    
+    /**
+     * Submits a command to a virtual thread, holding an in-flight permit while it runs.
+     * A command still waiting for a permit when it times out is skipped, so a command
+     * reported as timed out never starts later; one already running is not interrupted.
+     * @return A future that completes with the command or times out after the command timeout.
+     */
+    private CompletableFuture<Void> submitCommand(Runnable command) {
+        Semaphore permits = inFlightPermits;
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        commandExecutor.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            if (future.isDone()) {
+                permits.release();
+                return;
+            }
+            try {
+                command.run();
+                future.complete(null);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                permits.release();
+            }
+        });
+        return future.orTimeout(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Waits for all command futures and sorts their targets into a result.
+     */
+    private static CompletableFuture<CommandResult> collect(String description, List<String> names,
+                                                            List<CompletableFuture<Void>> futures) {
+        CompletableFuture<?>[] settled = new CompletableFuture<?>[futures.size()];
+        for (int i = 0; i < settled.length; i++) {
+            settled[i] = futures.get(i).handle((ignored, error) -> null);
+        }
+        return CompletableFuture.allOf(settled).thenApply(ignored -> {
+            CommandResult result = new CommandResult(description);
+            for (int i = 0; i < futures.size(); i++) {
+                CompletableFuture<Void> future = futures.get(i);
+                if (!future.isCompletedExceptionally()) {
+                    result.addSucceeded(names.get(i));
+                    continue;
+                }
+                Throwable error = future.handle((ignoredValue, t) -> t).join();
+                if (error instanceof TimeoutException) {
+                    result.addTimedOut(names.get(i));
+                } else {
+                    result.addFailed(names.get(i), error);
+                }
+            }
+            return result;
+        });
+    }
+    
+    /**
+     * Runs a command on a device while holding the device's lock.
+     * @param device The device.
+     * @param command The command to run.
+     */
+    void runLocked(Device device, Consumer<Device> command) {
+        ReentrantLock lock = lockFor(device.getName());
+        lock.lock();
+        try {
+            command.accept(device);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Gets the lock guarding commands to the named device.
+     * Every device name has its own lock, so a slow command never holds up other devices.
+     * Locks outlive removed devices, so a name always maps to the same lock.
+     * @param deviceName The name of the device.
+     * @return The lock for the device.
+     */
+    private ReentrantLock lockFor(String deviceName) {
+        return deviceLocks.computeIfAbsent(deviceName, name -> new ReentrantLock());
+    }
+    
+    /**
+     * Registers an observer to this controller.
+     * Plain observers are wrapped in a {@link BatchObserverAdapter}, so they receive
+     * the changes of a batch one by one.
+     * @param observer The observer to register.
+     */
+    @Override
+    public void registerObserver(Observer observer) {
+        BatchObserver batchObserver = BatchObserverAdapter.adapt(observer);
+        synchronized (this) {
+            observers.add(batchObserver);
+            if (eventBus != null) {
+                eventBus.subscribe(batchObserver);
+            }
+        }
+    }
+    
+    /**
+     * Removes an observer from this controller.
+     * An observer may remove itself from its own update call, also on an event bus thread.
+     * @param observer The observer to remove.
+     */
+    @Override
+    public void removeObserver(Observer observer) {
+        BatchObserver batchObserver = BatchObserverAdapter.adapt(observer);
+        synchronized (this) {
+            observers.remove(batchObserver);
+            if (eventBus != null) {
+                eventBus.unsubscribe(batchObserver);
+            }
+        }
+    }
+    
+    @Override
+    public void notifyObservers(String deviceName, boolean status, String message) {
+        EventBus bus = eventBus;
+        if (bus != null) {
+            bus.publish(deviceName, status, message);
+            return;
+        }
+        if (observers.isEmpty()) {
+            return;
+        }
+        long start = NOTIFY_OBSERVERS.start();
+        for (BatchObserver observer : observers) {
+            ObserverDispatchEvent event = new ObserverDispatchEvent();
+            event.begin();
+            observer.update(deviceName, status, message);
+            event.commit(observer, 1);
+        }
+        NOTIFY_OBSERVERS.stop(start);
+    }
+    
+    @Override
+    public void notifyObservers(NotificationBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        EventBus bus = eventBus;
+        if (bus != null) {
+            bus.publish(batch);
+            return;
+        }
+        if (observers.isEmpty()) {
+            return;
+        }
+        long start = NOTIFY_OBSERVERS.start();
+        for (BatchObserver observer : observers) {
+            ObserverDispatchEvent event = new ObserverDispatchEvent();
+            event.begin();
+            observer.updateBatch(batch);
+            event.commit(observer, batch.size());
+        }
+        NOTIFY_OBSERVERS.stop(start);
+    }
+    
+    /**
+     * Switches observer notification to a ring-buffer event bus.
+     * Every registered observer gets its own consumer thread, so a slow observer
+     * no longer stalls device commands until the ring is full.
+     * A bus that was already enabled is drained and replaced. The old bus is drained
+     * outside the controller's monitor, so its observers can still register or remove
+     * observers while they finish.
+     * @param capacity The number of event slots in the ring, rounded up to a power of two.
+     * @param waitStrategy How observer threads wait for new events.
+     */
+    public void enableEventBus(int capacity, WaitStrategy waitStrategy) {
+        EventBus bus = new EventBus(capacity, waitStrategy);
+        EventBus previous;
+        synchronized (this) {
+            for (BatchObserver observer : observers) {
+                bus.subscribe(observer);
+            }
+            previous = eventBus;
+            eventBus = bus;
+        }
+        if (previous != null) {
+            previous.shutdown();
+        }
+        ConsoleOutput.info("Event bus enabled with {} slots ({})", bus.getCapacity(), waitStrategy);
+    }
+    
+    /**
+     * Switches back to notifying observers on the command thread.
+     * Events already published are delivered before this method returns.
+     */
+    public void disableEventBus() {
+        EventBus previous;
+        synchronized (this) {
+            previous = eventBus;
+            eventBus = null;
+        }
+        if (previous != null) {
+            previous.shutdown();
+            ConsoleOutput.info("Event bus disabled");
+        }
+    }
+    
+    /**
+     * Gets the event bus observers are notified through.
+     * @return The event bus, or null if observers are notified on the command thread.
+     */
+    public EventBus getEventBus() {
+        return eventBus;
+    }
+    
+    /**
+     * A compiled plan and the topology version it was compiled against.
+     */
+    private record CachedPlan(ActionPlan plan, long topologyVersion) {
+    }
+}
\ No newline at end of file
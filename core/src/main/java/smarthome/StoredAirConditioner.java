@@ -0,0 +1,68 @@
+package smarthome;
+
+/**
+ * An air conditioner whose state is kept in a {@link DeviceStateStore}.
+ * Created through {@link DeviceStateStore#newAirConditioner(String)}.
+ */
+public class StoredAirConditioner extends StoredDevice implements AirConditionerDevice {
+    
+    /**
+     * Creates a view over an air conditioner kept in a state store.
+     * @param store The store holding the air conditioner's state.
+     * @param id The air conditioner's id in the store.
+     */
+    StoredAirConditioner(DeviceStateStore store, int id) {
+        super(store, id);
+    }
+    
+    @Override
+    public void turnOn() {
+        store.setOn(id, true);
+        ConsoleOutput.info("{} AC turned on. Mode: {}, Temperature: {}°C", name, getMode(), getTemperature());
+    }
+    
+    @Override
+    public void turnOff() {
+        store.setOn(id, false);
+        ConsoleOutput.info("{} AC turned off", name);
+    }
+    
+    @Override
+    public void setTemperature(int temperature) {
+        int clamped = AirConditioner.clampTemperature(temperature);
+        store.setTemperature(id, clamped);
+        
+        if (isOn()) {
+            ConsoleOutput.info("{} temperature set to {}°C", name, clamped);
+        }
+    }
+    
+    @Override
+    public int getTemperature() {
+        return store.getTemperature(id);
+    }
+    
+    @Override
+    public void setMode(String mode) {
+        int ordinal = AirConditioner.MODES.indexOf(mode);
+        if (ordinal >= 0) {
+            store.setModeOrdinal(id, ordinal);
+            
+            if (isOn()) {
+                ConsoleOutput.info("{} mode set to {}", name, mode);
+            }
+        } else {
+            ConsoleOutput.warn("Invalid mode. Use COOL, HEAT, or FAN.");
+        }
+    }
+    
+    @Override
+    public String getMode() {
+        return AirConditioner.MODES.get(store.getModeOrdinal(id));
+    }
+    
+    @Override
+    Class<? extends Device> getStandaloneType() {
+        return AirConditioner.class;
+    }
+}
@@ -0,0 +1,63 @@
+package smarthome;
+
+/**
+ * Base class of the thin device views handed out by {@link DeviceStateStore}.
+ * A view holds only its name, the store and its id; all state lives in the store.
+ */
+abstract class StoredDevice implements Device {
+    protected final String name;
+    protected final DeviceStateStore store;
+    protected final int id;
+    
+    /**
+     * Creates a view over a device kept in a state store.
+     * @param store The store holding the device's state.
+     * @param id The device's id in the store.
+     */
+    StoredDevice(DeviceStateStore store, int id) {
+        this.name = store.getName(id);
+        this.store = store;
+        this.id = id;
+    }
+    
+    @Override
+    public boolean isOn() {
+        return store.isOn(id);
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Gets this device's id in its state store.
+     * @return The store id.
+     */
+    int getStoreId() {
+        return id;
+    }
+    
+    /**
+     * Frees this device's id in its store. The view must no longer be used.
+     */
+    void release() {
+        store.release(id);
+    }
+    
+    /**
+     * Gets the standalone class this view stands in for.
+     * @return Light, AirConditioner or Door.
+     */
+    abstract Class<? extends Device> getStandaloneType();
+    
+    /**
+     * Gets the concrete type a device is indexed under, so store views are found
+     * together with the standalone devices of the same kind.
+     * @param base An undecorated device.
+     * @return The standalone class for a store view, otherwise the device's own class.
+     */
+    static Class<? extends Device> typeOf(Device base) {
+        return base instanceof StoredDevice view ? view.getStandaloneType() : base.getClass();
+    }
+}
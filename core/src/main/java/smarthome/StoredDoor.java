@@ -0,0 +1,62 @@
+package smarthome;
+
+/**
+ * A door whose state is kept in a {@link DeviceStateStore}.
+ * Created through {@link DeviceStateStore#newDoor(String)}.
+ */
+public class StoredDoor extends StoredDevice implements DoorDevice {
+    
+    /**
+     * Creates a view over a door kept in a state store.
+     * @param store The store holding the door's state.
+     * @param id The door's id in the store.
+     */
+    StoredDoor(DeviceStateStore store, int id) {
+        super(store, id);
+    }
+    
+    @Override
+    public void turnOn() {
+        // For a door, "on" means open
+        if (isLocked()) {
+            ConsoleOutput.warn("{} door cannot be opened. It is locked.", name);
+            return;
+        }
+        store.setOn(id, true);
+        ConsoleOutput.info("{} door opened", name);
+    }
+    
+    @Override
+    public void turnOff() {
+        // For a door, "off" means closed
+        store.setOn(id, false);
+        ConsoleOutput.info("{} door closed", name);
+    }
+    
+    @Override
+    public void lock() {
+        store.setLocked(id, true);
+        ConsoleOutput.info("{} door locked", name);
+        
+        // Close the door if it's open
+        if (isOn()) {
+            turnOff();
+        }
+    }
+    
+    @Override
+    public void unlock() {
+        store.setLocked(id, false);
+        ConsoleOutput.info("{} door unlocked", name);
+    }
+    
+    @Override
+    public boolean isLocked() {
+        return store.isLocked(id);
+    }
+    
+    @Override
+    Class<? extends Device> getStandaloneType() {
+        return Door.class;
+    }
+}
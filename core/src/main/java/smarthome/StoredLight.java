@@ -0,0 +1,49 @@
+package smarthome;
+
+/**
+ * A light whose state is kept in a {@link DeviceStateStore}.
+ * Created through {@link DeviceStateStore#newLight(String)}.
+ */
+public class StoredLight extends StoredDevice implements LightDevice {
+    
+    /**
+     * Creates a view over a light kept in a state store.
+     * @param store The store holding the light's state.
+     * @param id The light's id in the store.
+     */
+    StoredLight(DeviceStateStore store, int id) {
+        super(store, id);
+    }
+    
+    @Override
+    public void turnOn() {
+        store.setOn(id, true);
+        ConsoleOutput.info("{} light turned on with brightness {}%", name, getBrightness());
+    }
+    
+    @Override
+    public void turnOff() {
+        store.setOn(id, false);
+        ConsoleOutput.info("{} light turned off", name);
+    }
+    
+    @Override
+    public void setBrightness(int brightness) {
+        int clamped = Light.clampBrightness(brightness);
+        store.setBrightness(id, clamped);
+        
+        if (isOn()) {
+            ConsoleOutput.info("{} brightness set to {}%", name, clamped);
+        }
+    }
+    
+    @Override
+    public int getBrightness() {
+        return store.getBrightness(id);
+    }
+    
+    @Override
+    Class<? extends Device> getStandaloneType() {
+        return Light.class;
+    }
+}
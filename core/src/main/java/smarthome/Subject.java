@@ -1,3 +1,5 @@
+package smarthome;
+
 /**
  * Subject interface for the Observer design pattern.
  * Classes implementing this interface can be observed by observers.
@@ -22,4 +24,15 @@ public interface Subject {
      * @param message Additional information about the state change.
      */
     void notifyObservers(String deviceName, boolean status, String message);
+    
+    /**
+     * Notifies all registered observers of a group of state changes caused by one operation.
+     * By default each change is delivered as a separate notification.
+     * @param batch The state changes and their shared message.
+     */
+    default void notifyObservers(NotificationBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            notifyObservers(batch.getDeviceName(i), batch.getStatus(i), batch.getMessage());
+        }
+    }
 }
\ No newline at end of file
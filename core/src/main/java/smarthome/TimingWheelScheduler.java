@@ -0,0 +1,316 @@
+package smarthome;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hierarchical timing wheel shared by all timers that only need coarse precision,
+ * such as motion sensor auto-off deadlines.
+ *
+ * One background thread advances the wheel every tick. Timers are reusable
+ * {@link Timeout} handles that are linked directly into the wheel slots, so
+ * scheduling, rescheduling and cancelling are O(1) and never allocate or create
+ * threads. Pushing a pending deadline further out (the common motion retrigger)
+ * only updates a field; the timer is moved when its old slot comes up.
+ * Expired tasks run outside the lock, and a task is skipped if its timer was
+ * rescheduled or cancelled between expiring and running.
+ *
+ * The wheel has {@value #LEVELS} levels of {@value #SLOTS} slots. With the default
+ * 100 ms tick, level 0 covers 6.4 seconds and level 3 covers about 19 days.
+ * Longer delays are clamped to the wheel's range and re-placed when they come up.
+ */
+public class TimingWheelScheduler implements Scheduler {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long DEFAULT_TICK_MILLIS = 100;
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Timeout[][] wheel;
+    private final Object lock = new Object();
+    private final Thread thread;
+    private final List<Timeout> expired = new ArrayList<>(); // Reused by the scheduler thread
+    private long[] expiredGenerations = new long[16]; // Generation of each expired timer when it was collected
+    private long currentTick; // Written only by the scheduler thread, under the lock
+    private int pendingCount;
+    private volatile long tickLagNanos;
+    private volatile boolean running;
+
+    /**
+     * Lazily creates the shared scheduler.
+     */
+    private static class SharedHolder {
+        private static final TimingWheelScheduler INSTANCE =
+                new TimingWheelScheduler(DEFAULT_TICK_MILLIS, "smart-home-timer-wheel");
+    }
+
+    /**
+     * Gets the scheduler shared by all motion sensors.
+     * @return The shared scheduler with a 100 ms tick.
+     */
+    public static TimingWheelScheduler getShared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Creates a new scheduler and starts its daemon thread.
+     * @param tickMillis The wheel resolution in milliseconds.
+     * @param threadName The name of the scheduler thread.
+     * @throws IllegalArgumentException if the tick is not positive.
+     */
+    public TimingWheelScheduler(long tickMillis, String threadName) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.startNanos = System.nanoTime();
+        this.wheel = new Timeout[LEVELS][SLOTS];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheel[level][slot] = new Timeout(null); // Sentinel of a circular list
+            }
+        }
+
+        this.running = true;
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public ScheduledTimer newTimer(Runnable task) {
+        return newTimeout(task);
+    }
+
+    /**
+     * Creates a reusable timer handle for the given task.
+     * The handle is idle until {@link Timeout#schedule(long)} is called.
+     * @param task The task to run on the scheduler thread when the timer expires.
+     * @return A new timer handle.
+     */
+    public Timeout newTimeout(Runnable task) {
+        return new Timeout(task);
+    }
+
+    /**
+     * Gets the number of timers currently waiting to expire.
+     * @return The pending timer count.
+     */
+    public int getPendingTimerCount() {
+        synchronized (lock) {
+            return pendingCount;
+        }
+    }
+
+    /**
+     * Gets how late the most recent tick was processed.
+     * A growing value means expired tasks are slow or the machine is overloaded.
+     * @return The lag of the last tick in milliseconds.
+     */
+    public long getTickLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickLagNanos);
+    }
+
+    /**
+     * Gets the wheel resolution.
+     * @return The tick length in milliseconds.
+     */
+    public long getTickMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+
+    /**
+     * Stops the scheduler thread. Pending timers never fire.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Body of the scheduler thread.
+     */
+    private void run() {
+        while (running) {
+            long nextTickAt = startNanos + (currentTick + 1) * tickNanos;
+            long wait = nextTickAt - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+
+            synchronized (lock) {
+                currentTick++;
+                tickLagNanos = System.nanoTime() - nextTickAt;
+                advance();
+            }
+
+            // Run tasks outside the lock so they can reschedule timers
+            for (int i = 0; i < expired.size(); i++) {
+                Timeout timeout = expired.get(i);
+                if (!timeout.isCurrent(expiredGenerations[i])) {
+                    continue; // Rescheduled or cancelled after it expired
+                }
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    ConsoleOutput.error("Timer task failed: {}", e.getMessage());
+                }
+            }
+            expired.clear();
+        }
+    }
+
+    /**
+     * Processes the slots that come up at the current tick and collects the expired timers.
+     * Must be called while holding the lock.
+     */
+    private void advance() {
+        // Cascade higher levels whose slot boundary has been reached
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                break;
+            }
+            int slot = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+            replaceAll(wheel[level][slot]);
+        }
+
+        Timeout head = wheel[0][(int) currentTick & SLOT_MASK];
+        while (head.next != head) {
+            Timeout timeout = head.next;
+            unlink(timeout);
+            if (timeout.deadlineTick <= currentTick) {
+                pendingCount--;
+                if (expired.size() == expiredGenerations.length) {
+                    expiredGenerations = Arrays.copyOf(expiredGenerations, expiredGenerations.length * 2);
+                }
+                expiredGenerations[expired.size()] = timeout.generation;
+                expired.add(timeout);
+            } else {
+                place(timeout); // Deadline was pushed out after it was placed
+            }
+        }
+    }
+
+    /**
+     * Moves every timer of a slot to the position matching its current deadline.
+     */
+    private void replaceAll(Timeout head) {
+        while (head.next != head) {
+            Timeout timeout = head.next;
+            unlink(timeout);
+            place(timeout);
+        }
+    }
+
+    /**
+     * Links a timer into the slot matching its deadline.
+     * Must be called while holding the lock.
+     */
+    private void place(Timeout timeout) {
+        // A deadline equal to the current tick only happens while cascading, before level 0 is processed
+        long deadline = Math.max(timeout.deadlineTick, currentTick);
+        long delta = deadline - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        long maxTick = currentTick + (1L << (SLOT_BITS * (level + 1))) - 1;
+        long placedTick = Math.min(deadline, maxTick);
+        int slot = (int) (placedTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+
+        // The tick at which this slot is processed (level 0) or cascaded (higher levels)
+        timeout.visitTick = level == 0 ? placedTick : placedTick & -(1L << (SLOT_BITS * level));
+        Timeout head = wheel[level][slot];
+        timeout.prev = head.prev;
+        timeout.next = head;
+        head.prev.next = timeout;
+        head.prev = timeout;
+        timeout.linked = true;
+    }
+
+    private static void unlink(Timeout timeout) {
+        timeout.prev.next = timeout.next;
+        timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.linked = false;
+    }
+
+    /**
+     * A reusable timer handle owned by one component.
+     * The handle itself is the wheel list node, so no objects are created per schedule.
+     */
+    public final class Timeout implements ScheduledTimer {
+        private final Runnable task;
+        private Timeout prev;
+        private Timeout next;
+        private long deadlineTick;
+        private long visitTick;
+        private long generation; // Bumped by every schedule and cancel
+        private boolean linked;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+            this.prev = this;
+            this.next = this;
+        }
+
+        @Override
+        public void schedule(long delayMillis) {
+            long ticks = Math.max(1, (TimeUnit.MILLISECONDS.toNanos(delayMillis) + tickNanos - 1) / tickNanos);
+            synchronized (lock) {
+                generation++;
+                deadlineTick = currentTick + ticks;
+                if (linked) {
+                    if (deadlineTick >= visitTick) {
+                        return; // Still reached in time; re-placed lazily when its slot comes up
+                    }
+                    unlink(this);
+                } else {
+                    pendingCount++;
+                }
+                place(this);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (lock) {
+                generation++;
+                if (linked) {
+                    unlink(this);
+                    pendingCount--;
+                }
+            }
+        }
+
+        /**
+         * Checks that the timer was neither rescheduled nor cancelled since it expired.
+         * @param expiredGeneration The generation captured when the timer expired.
+         * @return true if the expired task should still run.
+         */
+        private boolean isCurrent(long expiredGeneration) {
+            synchronized (lock) {
+                return generation == expiredGeneration;
+            }
+        }
+
+        @Override
+        public boolean isPending() {
+            synchronized (lock) {
+                return linked;
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package smarthome;
+
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * Vacation Mode automation strategy.
+ * Simulates occupancy by randomly turning lights on and off,
+ * maintains minimal climate control, and ensures security.
+ */
+public class VacationMode implements AutomationMode {
+    private static final int MIN_TEMPERATURE = 16; // Minimum AC temperature in Celsius
+    private static final int MAX_TEMPERATURE = 28; // Maximum AC temperature in Celsius
+    private final Scheduler scheduler;
+    private final Random random;
+    private ScheduledTimer simulationTimer;
+    
+    /**
+     * Creates a Vacation Mode that runs its simulation in real time.
+     */
+    public VacationMode() {
+        this(TimingWheelScheduler.getShared(), new Random());
+    }
+    
+    /**
+     * Creates a Vacation Mode that runs its simulation on the given scheduler.
+     * Pass a {@link SimulationScheduler} and its seeded random generator for reproducible runs.
+     * @param scheduler The scheduler providing the time of day and the simulation timers.
+     * @param random The random generator deciding which lights to turn on.
+     */
+    public VacationMode(Scheduler scheduler, Random random) {
+        this.scheduler = scheduler;
+        this.random = random;
+    }
+    
+    @Override
+    public String getName() {
+        return "Vacation Mode";
+    }
+    
+    @Override
+    public void apply(SmartHomeController controller) {
+        ConsoleOutput.info("Applying Vacation Mode...");
+        ModeApplyEvent event = new ModeApplyEvent();
+        event.begin();
+        ActionPlan plan = controller.getActionPlan(this);
+        int touched = plan.execute(controller);
+        event.commit(plan, touched);
+        afterPlanApplied(controller);
+    }
+    
+    @Override
+    public ActionPlan compile(SmartHomeController controller) {
+        ActionPlan.Builder plan = ActionPlan.builder(getName());
+        for (Device device : controller.getAllDevices()) {
+            switch (DeviceDecorator.getBaseDevice(device)) {
+                // Set minimal climate control: energy saving temperature for the AC's current mode
+                case AirConditionerDevice ac -> plan.add(device, ActionPlan.Operation.SET_COOL_TEMPERATURE, MAX_TEMPERATURE)
+                        .add(device, ActionPlan.Operation.SET_HEAT_TEMPERATURE, MIN_TEMPERATURE)
+                        .report(device, d -> "Set " + d.getName() + " to " + ac.getTemperature() + "°C (" + ac.getMode() + ")");
+                // Lock all doors
+                case DoorDevice door -> plan.add(device, ActionPlan.Operation.LOCK)
+                        .report(device, "Locked " + device.getName() + " for security");
+                // Initially turn off all lights
+                case LightDevice light -> plan.add(device, ActionPlan.Operation.TURN_OFF);
+                default -> {
+                }
+            }
+        }
+        return plan.build();
+    }
+    
+    @Override
+    public void afterPlanApplied(SmartHomeController controller) {
+        // Stop any existing simulation
+        if (simulationTimer != null) {
+            simulationTimer.cancel();
+        }
+        
+        // Set up random light simulation to make the house look occupied
+        simulationTimer = scheduler.scheduleAtFixedRate(() -> simulateOccupancy(controller),
+                0, 30 * 60 * 1000L); // Run every 30 minutes
+        
+        ConsoleOutput.info("Vacation mode activated. Random light patterns will be generated to simulate occupancy.");
+    }
+    
+    /**
+     * Simulates occupancy by randomly turning lights on and off.
+     * Each light is changed under its controller lock, like any other command.
+     * @param controller The smart home controller.
+     */
+    public void simulateOccupancy(SmartHomeController controller) {
+        ConsoleOutput.info("Running occupancy simulation...");
+        
+        // Get time of day (simplified)
+        int hourOfDay = (int) ((scheduler.currentTimeMillis() / (1000 * 60 * 60)) % 24);
+        boolean isNighttime = hourOfDay >= 18 || hourOfDay < 6;
+        
+        // Adjust simulation based on time of day
+        int numLightsToTurnOn = isNighttime ? 2 + random.nextInt(3) : random.nextInt(2);
+        
+        // Turn off all lights first
+        Collection<Device> lights = controller.getDevicesOfType(Light.class);
+        NotificationBatch batch = new NotificationBatch("Device updated by occupancy simulation", lights.size());
+        for (Device device : lights) {
+            controller.runLocked(device, Device::turnOff);
+        }
+        
+        // Turn on random lights
+        int lightsCount = 0;
+        for (Device device : lights) {
+            if (random.nextBoolean() && lightsCount < numLightsToTurnOn) {
+                LightDevice light = (LightDevice) DeviceDecorator.getBaseDevice(device);
+                controller.runLocked(device, d -> {
+                    d.turnOn();
+                    
+                    // Set random brightness
+                    light.setBrightness(40 + random.nextInt(60)); // Between 40% and 100%
+                });
+                
+                ConsoleOutput.info("Simulation turned on {} with brightness {}%", device.getName(), light.getBrightness());
+                lightsCount++;
+            }
+        }
+        
+        // Report every light once with its final state
+        for (Device device : lights) {
+            batch.add(device.getName(), device.isOn());
+        }
+        controller.notifyObservers(batch);
+        
+        // Schedule next change
+        scheduler.schedule(() -> {
+            // Turn off a random light that is on
+            for (Device device : lights) {
+                if (device.isOn() && random.nextBoolean()) {
+                    controller.runLocked(device, Device::turnOff);
+                    ConsoleOutput.info("Simulation turned off {}", device.getName());
+                    controller.notifyObservers(device.getName(), device.isOn(), "Device turned OFF by occupancy simulation");
+                    break;
+                }
+            }
+        }, (10 + random.nextInt(50)) * 60 * 1000L); // Random time between 10 and 60 minutes
+    }
+    
+    /**
+     * Cancels the occupancy simulation.
+     * Should be called when switching to another mode.
+     */
+    public void cancelSimulation() {
+        if (simulationTimer != null) {
+            simulationTimer.cancel();
+            simulationTimer = null;
+            ConsoleOutput.info("Vacation mode simulation canceled");
+        }
+    }
+}
\ No newline at end of file
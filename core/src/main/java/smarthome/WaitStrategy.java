@@ -0,0 +1,28 @@
+package smarthome;
+
+/**
+ * How an {@link EventBus} consumer waits for new events.
+ * The strategies trade latency against CPU usage, from lowest latency to least CPU.
+ */
+public enum WaitStrategy {
+    /**
+     * Spins on the CPU. Lowest latency, but keeps one core busy per observer.
+     */
+    BUSY_SPIN,
+    
+    /**
+     * Spins briefly, then yields the CPU to other threads between checks.
+     */
+    YIELDING,
+    
+    /**
+     * Spins, then yields, then parks for short intervals. A good default for most observers.
+     */
+    SLEEPING,
+    
+    /**
+     * Sleeps on a condition until a producer publishes. Lowest CPU usage,
+     * at the cost of a lock and a signal on the publish path while a consumer waits.
+     */
+    BLOCKING
+}
@@ -0,0 +1,420 @@
+package smarthome;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Compact, versioned binary protocol for remote control of a home, spoken by
+ * {@link CommandServer} next to its text protocol.
+ *
+ * A session starts with the client sending {@link #MAGIC} and {@link #VERSION}. The
+ * server answers with the same two bytes, or with {@link #MAGIC} and 0 before closing
+ * the connection if it does not speak that version. From then on both sides exchange
+ * frames: the payload length as a varint, then the payload, which starts with an
+ * opcode. Integers are unsigned LEB128 varints, signed arguments are zig-zag encoded
+ * first, and names are a varint byte length followed by UTF-8.
+ *
+ * Devices and rooms are addressed by handles negotiated once per session: a
+ * {@link #RESOLVE} request maps up to {@value #MAX_RESOLVE_COUNT} names to small
+ * integers, which replace the names in every later command. Requests are answered
+ * in order, so clients may pipeline them.
+ * <pre>
+ * Request            Payload after the opcode                Reply
+ * RESOLVE            kind, count, count names                HANDLES: count, count handles (0 = unknown)
+ * TURN_ON, TURN_OFF  device handle                           STATUS: status
+ * LOCK, UNLOCK       device handle                           STATUS
+ * SET_BRIGHTNESS     device handle, brightness (zig-zag)     STATUS
+ * SET_TEMPERATURE    device handle, temperature (zig-zag)    STATUS
+ * SET_AC_MODE        device handle, AirConditioner.MODES index (zig-zag)  STATUS
+ * QUERY              device handle                           STATE: status, flags, level, AC mode index
+ * ROOM_ON, ROOM_OFF  room handle                             STATUS
+ * SET_MODE           mode (byte, MODE_*)                     STATUS
+ * SUBSCRIBE          1 to receive events, 0 to stop          STATUS
+ * </pre>
+ * Once subscribed, a session also receives an {@link #EVENT} frame for every observer
+ * notification about a device it has a handle for: handle, flags ({@link #FLAG_ON})
+ * and cause ({@code CAUSE_*}). Events are not replies and may arrive between them,
+ * including before the reply to the command that caused them.
+ *
+ * The codecs read and write at the buffer's position, with no intermediate objects;
+ * only decoding a name creates its string.
+ */
+public final class WireProtocol {
+    /**
+     * The first byte of a binary session, which no text command starts with.
+     */
+    public static final byte MAGIC = (byte) 0xB5;
+
+    /**
+     * The protocol version this class speaks.
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * The largest payload of a frame, in bytes.
+     */
+    public static final int MAX_FRAME_SIZE = 4096;
+
+    /**
+     * The most names a single RESOLVE request may carry.
+     */
+    public static final int MAX_RESOLVE_COUNT = 512;
+
+    // Request opcodes
+    public static final byte RESOLVE = 0x01;
+    public static final byte TURN_ON = 0x02;
+    public static final byte TURN_OFF = 0x03;
+    public static final byte SET_BRIGHTNESS = 0x04;
+    public static final byte SET_TEMPERATURE = 0x05;
+    public static final byte SET_AC_MODE = 0x06;
+    public static final byte LOCK = 0x07;
+    public static final byte UNLOCK = 0x08;
+    public static final byte QUERY = 0x09;
+    public static final byte ROOM_ON = 0x10;
+    public static final byte ROOM_OFF = 0x11;
+    public static final byte SET_MODE = 0x12;
+    public static final byte SUBSCRIBE = 0x20;
+
+    // Reply and event opcodes
+    public static final byte STATUS = (byte) 0x80;
+    public static final byte HANDLES = (byte) 0x81;
+    public static final byte STATE = (byte) 0x82;
+    public static final byte EVENT = (byte) 0xC0;
+
+    // RESOLVE kinds
+    public static final byte KIND_DEVICE = 0;
+    public static final byte KIND_ROOM = 1;
+
+    // Status codes
+    public static final byte OK = 0;
+    public static final byte NOT_FOUND = 1;
+    public static final byte UNSUPPORTED = 2;
+    public static final byte BAD_REQUEST = 3;
+
+    // SET_MODE modes
+    public static final byte MODE_NONE = 0;
+    public static final byte MODE_NIGHT = 1;
+    public static final byte MODE_MOVIE = 2;
+    public static final byte MODE_VACATION = 3;
+
+    // STATE and EVENT flags
+    public static final int FLAG_ON = 1;
+    public static final int FLAG_LOCKED = 2;
+
+    // EVENT causes, derived from the notification message
+    public static final byte CAUSE_DEVICE = 0;
+    public static final byte CAUSE_ROOM = 1;
+    public static final byte CAUSE_ALL = 2;
+    public static final byte CAUSE_MODE = 3;
+    public static final byte CAUSE_OTHER = 4;
+
+    private WireProtocol() {
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint: 7 bits per byte, low bits first.
+     * @param out The buffer to write to.
+     * @param value The value, treated as unsigned.
+     */
+    public static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint.
+     * @param in The buffer to read from.
+     * @return The value.
+     * @throws IllegalArgumentException if the varint is longer than 5 bytes.
+     * @throws java.nio.BufferUnderflowException if the buffer ends inside the varint.
+     */
+    public static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Gets the encoded size of a varint.
+     * @param value The value, treated as unsigned.
+     * @return The size in bytes, from 1 to 5.
+     */
+    public static int varintSize(int value) {
+        return (38 - Integer.numberOfLeadingZeros(value | 1)) / 7; // ceil(significant bits / 7)
+    }
+
+    /**
+     * Maps a signed value to an unsigned one so small magnitudes stay small: 0, -1, 1, -2 become 0, 1, 2, 3.
+     * @param value The signed value.
+     * @return The zig-zag encoded value.
+     */
+    public static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Reverses {@link #zigZag(int)}.
+     * @param value The zig-zag encoded value.
+     * @return The signed value.
+     */
+    public static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Gets the UTF-8 length of a string without encoding it.
+     * @param text The string.
+     * @return The length in bytes.
+     */
+    public static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes a name: its UTF-8 length as a varint, then the UTF-8 bytes, encoded straight into the buffer.
+     * Unpaired surrogates are written as '?'.
+     * @param out The buffer to write to.
+     * @param text The name.
+     */
+    public static void putString(ByteBuffer out, String text) {
+        putVarint(out, utf8Length(text));
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                out.put((byte) (0xF0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Reads a name written by {@link #putString(ByteBuffer, String)}.
+     * @param in The buffer to read from.
+     * @return The name.
+     * @throws IllegalArgumentException if the length is larger than a frame.
+     * @throws java.nio.BufferUnderflowException if the buffer ends inside the name.
+     */
+    public static String getString(ByteBuffer in) {
+        int length = getVarint(in);
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IllegalArgumentException("Invalid name length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks whether a whole frame is in the buffer, without moving its position.
+     * @param in The buffer, positioned at the start of a frame.
+     * @return The frame's total size including its length prefix, or 0 if more bytes are needed.
+     * @throws IllegalArgumentException if the frame is larger than {@value #MAX_FRAME_SIZE} bytes or malformed.
+     */
+    public static int frameLength(ByteBuffer in) {
+        int position = in.position();
+        int payload = 0;
+        for (int i = 0; i < 5; i++) {
+            if (position + i >= in.limit()) {
+                return 0;
+            }
+            byte b = in.get(position + i);
+            payload |= (b & 0x7F) << (7 * i);
+            if (b >= 0) {
+                if (payload <= 0 || payload > MAX_FRAME_SIZE) {
+                    throw new IllegalArgumentException("Invalid frame size: " + payload);
+                }
+                int total = i + 1 + payload;
+                return in.limit() - position >= total ? total : 0;
+            }
+        }
+        throw new IllegalArgumentException("Malformed frame size");
+    }
+
+    /**
+     * Writes the session preamble a client sends first and the server echoes.
+     * @param out The buffer to write to.
+     */
+    public static void putHello(ByteBuffer out) {
+        out.put(MAGIC).put(VERSION);
+    }
+
+    /**
+     * Writes a RESOLVE request for some names of a list.
+     * @param out The buffer to write to.
+     * @param kind {@link #KIND_DEVICE} or {@link #KIND_ROOM}.
+     * @param names The names.
+     * @param from The index of the first name to send.
+     * @param to The index after the last name to send; at most {@value #MAX_RESOLVE_COUNT} names.
+     * @throws IllegalArgumentException if the request would exceed a frame.
+     */
+    public static void putResolve(ByteBuffer out, byte kind, List<String> names, int from, int to) {
+        int payload = 2 + varintSize(to - from);
+        for (int i = from; i < to; i++) {
+            int length = utf8Length(names.get(i));
+            payload += varintSize(length) + length;
+        }
+        if (to - from > MAX_RESOLVE_COUNT || payload > MAX_FRAME_SIZE) {
+            throw new IllegalArgumentException("Too many names for one frame: " + (to - from));
+        }
+        putVarint(out, payload);
+        out.put(RESOLVE).put(kind);
+        putVarint(out, to - from);
+        for (int i = from; i < to; i++) {
+            putString(out, names.get(i));
+        }
+    }
+
+    /**
+     * Writes a request that takes one handle: TURN_ON, TURN_OFF, LOCK, UNLOCK, QUERY, ROOM_ON or ROOM_OFF.
+     * @param out The buffer to write to.
+     * @param opcode The request opcode.
+     * @param handle The device or room handle.
+     */
+    public static void putCommand(ByteBuffer out, byte opcode, int handle) {
+        putVarint(out, 1 + varintSize(handle));
+        out.put(opcode);
+        putVarint(out, handle);
+    }
+
+    /**
+     * Writes a request that takes a handle and an argument: SET_BRIGHTNESS, SET_TEMPERATURE or SET_AC_MODE.
+     * @param out The buffer to write to.
+     * @param opcode The request opcode.
+     * @param handle The device handle.
+     * @param argument The signed argument.
+     */
+    public static void putCommand(ByteBuffer out, byte opcode, int handle, int argument) {
+        int encoded = zigZag(argument);
+        putVarint(out, 1 + varintSize(handle) + varintSize(encoded));
+        out.put(opcode);
+        putVarint(out, handle);
+        putVarint(out, encoded);
+    }
+
+    /**
+     * Writes a SET_MODE request.
+     * @param out The buffer to write to.
+     * @param mode One of the {@code MODE_*} codes.
+     */
+    public static void putSetMode(ByteBuffer out, byte mode) {
+        out.put((byte) 2).put(SET_MODE).put(mode);
+    }
+
+    /**
+     * Writes a SUBSCRIBE request.
+     * @param out The buffer to write to.
+     * @param subscribe true to receive events, false to stop.
+     */
+    public static void putSubscribe(ByteBuffer out, boolean subscribe) {
+        out.put((byte) 2).put(SUBSCRIBE).put((byte) (subscribe ? 1 : 0));
+    }
+
+    /**
+     * Writes a STATUS reply.
+     * @param out The buffer to write to.
+     * @param status One of the status codes.
+     */
+    public static void putStatus(ByteBuffer out, byte status) {
+        out.put((byte) 2).put(STATUS).put(status);
+    }
+
+    /**
+     * Writes a HANDLES reply.
+     * @param out The buffer to write to.
+     * @param handles The handles, in request order; 0 for names that were not found.
+     * @param count The number of handles to write.
+     */
+    public static void putHandles(ByteBuffer out, int[] handles, int count) {
+        int payload = 1 + varintSize(count);
+        for (int i = 0; i < count; i++) {
+            payload += varintSize(handles[i]);
+        }
+        putVarint(out, payload);
+        out.put(HANDLES);
+        putVarint(out, count);
+        for (int i = 0; i < count; i++) {
+            putVarint(out, handles[i]);
+        }
+    }
+
+    /**
+     * Writes a STATE reply.
+     * @param out The buffer to write to.
+     * @param status One of the status codes; the other fields are 0 unless it is {@link #OK}.
+     * @param flags {@link #FLAG_ON} and {@link #FLAG_LOCKED}.
+     * @param level The brightness of a light or the temperature of an air conditioner, else 0.
+     * @param acMode The index of an air conditioner's mode in {@code AirConditioner.MODES}, else 0.
+     */
+    public static void putState(ByteBuffer out, byte status, int flags, int level, int acMode) {
+        int encoded = zigZag(level);
+        putVarint(out, 4 + varintSize(encoded));
+        out.put(STATE).put(status).put((byte) flags);
+        putVarint(out, encoded);
+        out.put((byte) acMode);
+    }
+
+    /**
+     * Writes an EVENT frame.
+     * @param out The buffer to write to.
+     * @param handle The device handle.
+     * @param on The device's new status.
+     * @param cause One of the {@code CAUSE_*} codes.
+     */
+    public static void putEvent(ByteBuffer out, int handle, boolean on, byte cause) {
+        putVarint(out, 3 + varintSize(handle));
+        out.put(EVENT);
+        putVarint(out, handle);
+        out.put((byte) (on ? FLAG_ON : 0)).put(cause);
+    }
+
+    /**
+     * Classifies a notification message by the kind of operation that caused it.
+     * @param message The observer notification message.
+     * @return One of the {@code CAUSE_*} codes.
+     */
+    public static byte causeOf(String message) {
+        if (message.equals("Device turned ON") || message.equals("Device turned OFF")) {
+            return CAUSE_DEVICE;
+        } else if (message.endsWith("(mass action)")) {
+            return CAUSE_ALL;
+        } else if (message.contains("(room: ")) {
+            return CAUSE_ROOM;
+        } else if (message.startsWith("Device updated by ") || message.endsWith("by occupancy simulation")) {
+            return CAUSE_MODE;
+        }
+        return CAUSE_OTHER;
+    }
+}
@@ -0,0 +1,189 @@
+package smarthome;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The server side of one {@link WireProtocol} session: the device and room handles
+ * the client has resolved, and whether it receives events.
+ *
+ * Handles are numbered from 1 in the order names are first resolved and stay valid
+ * for the whole session. A handle names a device rather than pinning it, so a device
+ * that is removed answers {@link WireProtocol#NOT_FOUND} and one added again under
+ * the same name is found again. Only touched by the server's selector thread.
+ */
+final class WireSession {
+    private final SmartHomeController controller;
+    private final AutomationMode[] modes;
+    private final List<String> deviceNames = new ArrayList<>();
+    private final Map<String, Integer> deviceHandles = new HashMap<>();
+    private final List<String> roomNames = new ArrayList<>();
+    private final Map<String, Integer> roomHandles = new HashMap<>();
+    private final int[] resolved = new int[WireProtocol.MAX_RESOLVE_COUNT];
+    private boolean subscribed;
+
+    /**
+     * Starts a session.
+     * @param controller The home the session controls.
+     * @param modes The automation modes by {@code WireProtocol.MODE_*} code, null for none.
+     */
+    WireSession(SmartHomeController controller, AutomationMode[] modes) {
+        this.controller = controller;
+        this.modes = modes;
+    }
+
+    /**
+     * Runs one request and writes its reply.
+     * @param in The request payload, from the opcode to the buffer's limit.
+     * @param out The buffer for the reply, with room for a whole frame.
+     */
+    void execute(ByteBuffer in, ByteBuffer out) {
+        try {
+            byte opcode = in.get();
+            switch (opcode) {
+                case WireProtocol.RESOLVE -> resolve(in, out);
+                case WireProtocol.TURN_ON -> {
+                    String device = device(in);
+                    WireProtocol.putStatus(out, found(device != null && controller.turnOnDevice(device)));
+                }
+                case WireProtocol.TURN_OFF -> {
+                    String device = device(in);
+                    WireProtocol.putStatus(out, found(device != null && controller.turnOffDevice(device)));
+                }
+                case WireProtocol.SET_BRIGHTNESS -> perform(in, out, ActionPlan.Operation.SET_BRIGHTNESS, true);
+                case WireProtocol.SET_TEMPERATURE -> perform(in, out, ActionPlan.Operation.SET_TEMPERATURE, true);
+                case WireProtocol.SET_AC_MODE -> perform(in, out, ActionPlan.Operation.SET_MODE, true);
+                case WireProtocol.LOCK -> perform(in, out, ActionPlan.Operation.LOCK, false);
+                case WireProtocol.UNLOCK -> perform(in, out, ActionPlan.Operation.UNLOCK, false);
+                case WireProtocol.QUERY -> query(in, out);
+                case WireProtocol.ROOM_ON -> {
+                    String room = room(in);
+                    WireProtocol.putStatus(out, found(room != null && controller.turnOnRoom(room)));
+                }
+                case WireProtocol.ROOM_OFF -> {
+                    String room = room(in);
+                    WireProtocol.putStatus(out, found(room != null && controller.turnOffRoom(room)));
+                }
+                case WireProtocol.SET_MODE -> {
+                    byte mode = in.get();
+                    if (mode < 0 || mode >= modes.length) {
+                        WireProtocol.putStatus(out, WireProtocol.BAD_REQUEST);
+                    } else {
+                        controller.setAutomationMode(modes[mode]);
+                        WireProtocol.putStatus(out, WireProtocol.OK);
+                    }
+                }
+                case WireProtocol.SUBSCRIBE -> {
+                    subscribed = in.get() != 0;
+                    WireProtocol.putStatus(out, WireProtocol.OK);
+                }
+                default -> WireProtocol.putStatus(out, WireProtocol.BAD_REQUEST);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // A truncated or malformed payload; nothing has been written for it yet
+            WireProtocol.putStatus(out, WireProtocol.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Checks if the session receives events.
+     * @return true after a SUBSCRIBE request with 1.
+     */
+    boolean isSubscribed() {
+        return subscribed;
+    }
+
+    /**
+     * Gets the session's handle for a device.
+     * @param deviceName The device name.
+     * @return The handle, or 0 if the client never resolved the device.
+     */
+    int handleOf(String deviceName) {
+        Integer handle = deviceHandles.get(deviceName);
+        return handle != null ? handle : 0;
+    }
+
+    private void resolve(ByteBuffer in, ByteBuffer out) {
+        byte kind = in.get();
+        int count = WireProtocol.getVarint(in);
+        if (count < 0 || count > WireProtocol.MAX_RESOLVE_COUNT || (kind != WireProtocol.KIND_DEVICE && kind != WireProtocol.KIND_ROOM)) {
+            WireProtocol.putStatus(out, WireProtocol.BAD_REQUEST);
+            return;
+        }
+        boolean devices = kind == WireProtocol.KIND_DEVICE;
+        List<String> names = devices ? deviceNames : roomNames;
+        Map<String, Integer> handles = devices ? deviceHandles : roomHandles;
+        for (int i = 0; i < count; i++) {
+            String name = WireProtocol.getString(in);
+            Integer handle = handles.get(name);
+            if (handle == null && (devices ? controller.getDevice(name) != null : controller.getRoom(name) != null)) {
+                names.add(name);
+                handle = names.size();
+                handles.put(name, handle);
+            }
+            resolved[i] = handle != null ? handle : 0;
+        }
+        WireProtocol.putHandles(out, resolved, count);
+    }
+
+    private void perform(ByteBuffer in, ByteBuffer out, ActionPlan.Operation operation, boolean hasArgument) {
+        String device = device(in);
+        int argument = hasArgument ? WireProtocol.unZigZag(WireProtocol.getVarint(in)) : 0;
+        if (operation == ActionPlan.Operation.SET_MODE && (argument < 0 || argument >= AirConditioner.MODES.size())) {
+            WireProtocol.putStatus(out, WireProtocol.BAD_REQUEST);
+            return;
+        }
+        if (device == null) {
+            WireProtocol.putStatus(out, WireProtocol.NOT_FOUND);
+            return;
+        }
+        byte status;
+        try {
+            status = found(controller.performOperation(device, operation, argument));
+        } catch (IllegalArgumentException e) {
+            status = WireProtocol.UNSUPPORTED;
+        }
+        WireProtocol.putStatus(out, status);
+    }
+
+    private void query(ByteBuffer in, ByteBuffer out) {
+        String name = device(in);
+        Device device = name != null ? controller.getDevice(name) : null;
+        if (device == null) {
+            WireProtocol.putState(out, WireProtocol.NOT_FOUND, 0, 0, 0);
+            return;
+        }
+        int flags = device.isOn() ? WireProtocol.FLAG_ON : 0;
+        int level = 0;
+        int acMode = 0;
+        switch (DeviceDecorator.getBaseDevice(device)) {
+            case LightDevice light -> level = light.getBrightness();
+            case AirConditionerDevice ac -> {
+                level = ac.getTemperature();
+                acMode = AirConditioner.MODES.indexOf(ac.getMode());
+            }
+            case DoorDevice door -> flags |= door.isLocked() ? WireProtocol.FLAG_LOCKED : 0;
+            default -> {
+            }
+        }
+        WireProtocol.putState(out, WireProtocol.OK, flags, level, acMode);
+    }
+
+    private String device(ByteBuffer in) {
+        int handle = WireProtocol.getVarint(in);
+        return handle >= 1 && handle <= deviceNames.size() ? deviceNames.get(handle - 1) : null;
+    }
+
+    private String room(ByteBuffer in) {
+        int handle = WireProtocol.getVarint(in);
+        return handle >= 1 && handle <= roomNames.size() ? roomNames.get(handle - 1) : null;
+    }
+
+    private static byte found(boolean found) {
+        return found ? WireProtocol.OK : WireProtocol.NOT_FOUND;
+    }
+}